@@ -0,0 +1,67 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pure-Java image hot paths: thumbnail writing and content hashing of a downloaded file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ImageProcessingBenchmark {
+
+    private static final int SIZE = 350;
+
+    private File fixture;
+    private BufferedImage decoded;
+    private File output;
+
+    @Setup
+    public void loadFixture() throws IOException {
+        fixture = new File("test_face.jpg");
+        decoded = ImageIO.read(fixture);
+        output = File.createTempFile("bench-resized-", ".jpg");
+    }
+
+    @TearDown
+    public void deleteOutput() {
+        output.delete();
+    }
+
+    /** Decode, resize and encode, as the old pipeline did for every image. */
+    @Benchmark
+    public File resizeFromFile() throws Exception {
+        ImageResizer.resize(fixture.getPath(), output.getPath(), SIZE, SIZE);
+        return output;
+    }
+
+    /** Resize and encode an image that was already decoded for classification. */
+    @Benchmark
+    public File resizeDecoded() throws Exception {
+        ImageResizer.resize(decoded, output, SIZE, SIZE);
+        return output;
+    }
+
+    @Benchmark
+    public String computeFileHash() throws Exception {
+        return ImageExtractorService.computeFileHash(fixture);
+    }
+}
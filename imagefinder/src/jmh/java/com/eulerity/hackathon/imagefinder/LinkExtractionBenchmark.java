@@ -0,0 +1,67 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Same-domain link extraction from {@link CrawlerService}, on a generated page with a
+ * mix of relative, same-domain, subdomain and external links.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LinkExtractionBenchmark {
+
+    private static final String BASE_URL = "https://example.com/catalog/index.html";
+    private static final String DOMAIN = "example.com";
+
+    @Param({"50", "500"})
+    public int links;
+
+    private String html;
+    private Document document;
+
+    @Setup
+    public void buildPage() {
+        StringBuilder page = new StringBuilder("<html><head><title>Catalog</title></head><body><ul>");
+        for (int i = 0; i < links; i++) {
+            String href;
+            switch (i % 4) {
+                case 0: href = "/products/" + i; break;
+                case 1: href = "https://shop.example.com/item?id=" + i; break;
+                case 2: href = "https://cdn.other.net/asset/" + i; break;
+                default: href = "page-" + i + ".html#section";
+            }
+            page.append("<li><a href=\"").append(href).append("\">Link ").append(i)
+                .append("</a><img src=\"/img/").append(i).append(".jpg\"></li>");
+        }
+        html = page.append("</ul></body></html>").toString();
+        document = Jsoup.parse(html, BASE_URL);
+    }
+
+    @Benchmark
+    public List<String> extractLinks() {
+        return CrawlerService.extractSameDomainLinks(document, DOMAIN);
+    }
+
+    @Benchmark
+    public List<String> parseAndExtractLinks() {
+        return CrawlerService.extractSameDomainLinks(Jsoup.parse(html, BASE_URL), DOMAIN);
+    }
+}
@@ -0,0 +1,91 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * OpenCV classification hot paths on the repository's face photo and logo template.
+ *
+ * Needs the OpenCV native library that {@link FaceDetector} and {@link LogoDetector}
+ * load; exclude this class on machines without it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OpenCvBenchmark {
+
+    private static final String FACE_FIXTURE = "test_face.jpg";
+    private static final String LOGO_FIXTURE = "src/main/resources/templates/logos/test_logo1.png";
+
+    private BufferedImage face;
+    private DecodedImage decodedFace;
+    private DecodedImage decodedLogo;
+
+    @Setup
+    public void loadFixtures() throws IOException {
+        face = ImageIO.read(new File(FACE_FIXTURE));
+        decodedFace = DecodedImage.read(new File(FACE_FIXTURE));
+        decodedLogo = DecodedImage.read(new File(LOGO_FIXTURE));
+        // Build the shared views up front so the benchmarks below measure detection only.
+        decodedFace.gray();
+        decodedLogo.gray();
+    }
+
+    @TearDown
+    public void releaseFixtures() {
+        decodedFace.release();
+        decodedLogo.release();
+    }
+
+    @Benchmark
+    public boolean containsFace() {
+        return FaceDetector.containsFace(face);
+    }
+
+    @Benchmark
+    public boolean containsFaceDecoded() {
+        return FaceDetector.containsFace(decodedFace);
+    }
+
+    @Benchmark
+    public boolean containsLogo() {
+        return LogoDetector.containsLogo(LOGO_FIXTURE);
+    }
+
+    @Benchmark
+    public boolean containsLogoDecoded() {
+        return LogoDetector.containsLogo(decodedLogo);
+    }
+
+    @Benchmark
+    public Mat bufferedImageToMat() throws Exception {
+        Mat mat = OpenCVUtils.bufferedImageToMat(face);
+        mat.release();
+        return mat;
+    }
+
+    @Benchmark
+    public Mat toBgrMat() {
+        Mat mat = OpenCVUtils.toBgrMat(face);
+        mat.release();
+        return mat;
+    }
+}
@@ -0,0 +1,67 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the previous getScaledInstance(SCALE_SMOOTH) resize with {@link ResizeEngine}
+ * on the repository's test photo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ResizeBenchmark {
+
+    private static final int SIZE = 350;
+
+    private BufferedImage source;
+    private ResizeEngine.Spec thumbnail;
+    private List<ResizeEngine.Spec> thumbnailAndRetina;
+
+    @Setup
+    public void loadFixture() throws IOException {
+        source = ImageIO.read(new File("test_face.jpg"));
+        thumbnail = new ResizeEngine.Spec(SIZE, SIZE, ResizeEngine.Mode.FIT);
+        thumbnailAndRetina = Arrays.asList(new ResizeEngine.Spec(SIZE * 2, SIZE * 2, ResizeEngine.Mode.FIT), thumbnail);
+    }
+
+    @Benchmark
+    public BufferedImage legacyScaledInstance() {
+        BufferedImage resizedImage = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = resizedImage.createGraphics();
+        g2d.drawImage(source.getScaledInstance(SIZE, SIZE, Image.SCALE_SMOOTH), 0, 0, SIZE, SIZE, null);
+        g2d.dispose();
+        return resizedImage;
+    }
+
+    @Benchmark
+    public BufferedImage resizeEngineThumbnail() {
+        return ResizeEngine.resize(source, thumbnail);
+    }
+
+    @Benchmark
+    public Map<ResizeEngine.Spec, BufferedImage> resizeEngineThumbnailAndRetina() {
+        return ResizeEngine.resizeAll(source, thumbnailAndRetina);
+    }
+}
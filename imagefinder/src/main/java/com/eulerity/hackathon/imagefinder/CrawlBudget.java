@@ -0,0 +1,180 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits of one crawl and what it has used so far: wall-clock time, pages, images,
+ * downloaded bytes and browser render time.
+ *
+ * Every limit is checked when new work would start. The first limit that runs out is
+ * recorded as the {@link StopReason}; from then on {@link #isExhausted()} is true and the
+ * crawl stops scheduling pages. Unless only the page limit was hit, the work already in
+ * flight is skipped too, so the crawl ends quickly with the images found so far.
+ */
+public class CrawlBudget {
+    public static final long DEFAULT_MAX_SECONDS = Long.getLong("imagefinder.budget.maxSeconds", 300);
+    public static final int DEFAULT_MAX_PAGES = Integer.getInteger("imagefinder.budget.maxPages", 500);
+    public static final int DEFAULT_MAX_IMAGES = Integer.getInteger("imagefinder.budget.maxImages", 1000);
+    public static final long DEFAULT_MAX_BYTES = Long.getLong("imagefinder.budget.maxBytes", 512L * 1024 * 1024);
+    public static final long DEFAULT_MAX_RENDER_SECONDS = Long.getLong("imagefinder.budget.maxRenderSeconds", 120);
+
+    /** Why a crawl ended. */
+    public enum StopReason {
+        /** Every reachable page within the depth limit was crawled. */
+        COMPLETED,
+        DEADLINE,
+        MAX_PAGES,
+        MAX_IMAGES,
+        MAX_BYTES,
+        MAX_RENDER_TIME,
+        /** The engine shut down, or the frontier failed, before the crawl could finish. */
+        SHUTDOWN,
+        /** The crawl was stopped on request, e.g. because its client went away. */
+        STOPPED
+    }
+
+    private final long deadlineNanos;
+    private final int maxPages;
+    private final int maxImages;
+    private final long maxBytes;
+    private final long maxRenderNanos;
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong images = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong renderNanos = new AtomicLong();
+    private volatile StopReason exhausted;
+
+    /**
+     * A budget with the limits configured by system properties.
+     */
+    public CrawlBudget() {
+        this(DEFAULT_MAX_SECONDS, DEFAULT_MAX_PAGES, DEFAULT_MAX_IMAGES, DEFAULT_MAX_BYTES, DEFAULT_MAX_RENDER_SECONDS);
+    }
+
+    /**
+     * Starts the clock for a new crawl.
+     */
+    public CrawlBudget(long maxSeconds, int maxPages, int maxImages, long maxBytes, long maxRenderSeconds) {
+        this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxSeconds);
+        this.maxPages = maxPages;
+        this.maxImages = maxImages;
+        this.maxBytes = maxBytes;
+        this.maxRenderNanos = TimeUnit.SECONDS.toNanos(maxRenderSeconds);
+    }
+
+    /**
+     * True once any limit has run out; checks the deadline as a side effect.
+     */
+    public boolean isExhausted() {
+        if (exhausted == null && System.nanoTime() - deadlineNanos > 0) {
+            exhaust(StopReason.DEADLINE);
+        }
+        return exhausted != null;
+    }
+
+    /**
+     * True if work already in flight should be skipped. That is the case for every limit
+     * except the page limit, which only stops new pages from being started.
+     */
+    public boolean shouldSkipWork() {
+        return isExhausted() && exhausted != StopReason.MAX_PAGES;
+    }
+
+    /**
+     * The limit that ran out first, or null while the budget lasts.
+     */
+    public StopReason getExhaustedBy() {
+        isExhausted();
+        return exhausted;
+    }
+
+    /**
+     * Claims one page. Returns false, without claiming, if the page limit is reached or
+     * another limit has run out.
+     */
+    public boolean tryStartPage() {
+        if (isExhausted()) {
+            return false;
+        }
+        if (pages.incrementAndGet() > maxPages) {
+            pages.decrementAndGet();
+            exhaust(StopReason.MAX_PAGES);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts a new image. Returns false if it is over the image limit and must be dropped;
+     * the image that reaches the limit is kept and ends the crawl.
+     */
+    public boolean tryAddImage() {
+        long count = images.incrementAndGet();
+        if (count > maxImages) {
+            images.decrementAndGet();
+            exhaust(StopReason.MAX_IMAGES);
+            return false;
+        }
+        if (count == maxImages) {
+            exhaust(StopReason.MAX_IMAGES);
+        }
+        return true;
+    }
+
+    /**
+     * Counts bytes downloaded from the network (cache hits are free).
+     */
+    public void addBytes(long downloaded) {
+        if (bytes.addAndGet(downloaded) >= maxBytes) {
+            exhaust(StopReason.MAX_BYTES);
+        }
+    }
+
+    /**
+     * Browser time left for this crawl, in milliseconds; 0 if none is left.
+     */
+    public long remainingRenderMillis() {
+        if (shouldSkipWork()) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(maxRenderNanos - renderNanos.get()));
+    }
+
+    /**
+     * Counts time spent rendering pages in a browser.
+     */
+    public void addRenderNanos(long nanos) {
+        if (renderNanos.addAndGet(nanos) >= maxRenderNanos) {
+            exhaust(StopReason.MAX_RENDER_TIME);
+        }
+    }
+
+    public long getPages() {
+        return pages.get();
+    }
+
+    public long getImages() {
+        return images.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Ends the budget at once, as if a limit had run out: no new pages start and the work
+     * in flight is skipped.
+     */
+    public void stop() {
+        exhaust(StopReason.STOPPED);
+    }
+
+    private synchronized void exhaust(StopReason reason) {
+        if (exhausted == null) {
+            exhausted = reason;
+            System.out.println("⏹️ Crawl budget exhausted: " + reason + " (pages=" + pages.get() + ", images="
+                    + images.get() + ", bytes=" + bytes.get() + ")");
+        }
+    }
+}
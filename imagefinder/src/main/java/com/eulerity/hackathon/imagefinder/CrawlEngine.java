@@ -0,0 +1,307 @@
+package com.eulerity.hackathon.imagefinder;
+
+import javax.servlet.ServletContext;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived crawl engine shared by every request to the application.
+ *
+ * A fixed number of worker threads bounds the crawl concurrency of the whole JVM.
+ * Each crawl opens its own {@link Session}; workers take one task from each session
+ * with pending work in turn, so a huge site cannot starve small requests.
+ * The engine also owns the resources that crawls share, such as the browser pool, the HTTP fetcher and cache,
+ * the image blob store, the image processing pipeline, the near-duplicate index and the Flight Recorder recording.
+ */
+public class CrawlEngine {
+    public static final String CONTEXT_ATTRIBUTE = CrawlEngine.class.getName();
+    public static final int DEFAULT_WORKERS = Integer.getInteger("imagefinder.crawl.workers", 4);
+
+    private final Object lock = new Object();
+    private final Deque<Session> readySessions = new ArrayDeque<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final WebDriverPool driverPool;
+    private final ImageBlobStore blobStore = new ImageBlobStore(new File("src/main/webapp/processedImages"));
+    private final ImagePipeline imagePipeline = new ImagePipeline();
+    private final PerceptualHashIndex nearDuplicateIndex = new PerceptualHashIndex();
+    private final ImageTriage imageTriage = new ImageTriage();
+    private final HttpFetcher httpFetcher = new HttpFetcher();
+    private final HttpCache httpCache = new HttpCache(httpFetcher);
+    private final Map<String, CrawlFrontier> frontiers = new LinkedHashMap<>(); // guarded by itself
+    private final CrawlJobs jobs = new CrawlJobs();
+    private final CrawlRecorder recorder = new CrawlRecorder();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public CrawlEngine() {
+        this(DEFAULT_WORKERS, new WebDriverPool());
+    }
+
+    public CrawlEngine(int workerCount, WebDriverPool driverPool) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("workerCount must be positive: " + workerCount);
+        }
+        this.driverPool = driverPool;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::runWorker, "crawl-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        System.out.println("✅ Crawl engine started with " + workerCount + " workers.");
+    }
+
+    /**
+     * Returns the engine registered by {@link CrawlEngineListener} for this web application.
+     */
+    public static CrawlEngine from(ServletContext context) {
+        CrawlEngine engine = (CrawlEngine) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (engine == null) {
+            throw new IllegalStateException("Crawl engine has not been initialised for this context.");
+        }
+        return engine;
+    }
+
+    /**
+     * Opens a new task queue for a single crawl.
+     */
+    public Session openSession() {
+        return new Session();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    public WebDriverPool getDriverPool() {
+        return driverPool;
+    }
+
+    public ImageBlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    public ImagePipeline getImagePipeline() {
+        return imagePipeline;
+    }
+
+    public PerceptualHashIndex getNearDuplicateIndex() {
+        return nearDuplicateIndex;
+    }
+
+    /**
+     * Cheap-first cascade that decides which images reach the face and logo detectors.
+     */
+    public ImageTriage getImageTriage() {
+        return imageTriage;
+    }
+
+    public HttpFetcher getHttpFetcher() {
+        return httpFetcher;
+    }
+
+    public HttpCache getHttpCache() {
+        return httpCache;
+    }
+
+    /**
+     * Crawls started through the job API.
+     */
+    public CrawlJobs getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Continuous Flight Recorder recording of crawl and image events.
+     */
+    public CrawlRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Opens the disk-backed frontier of a crawl, resuming a crawl of the same start URL and
+     * depth that a shutdown interrupted, or, if {@code resume} is set, one that was stopped
+     * early. If that crawl is already running, the new one gets its own frontier and starts
+     * from scratch.
+     */
+    public CrawlFrontier openFrontier(String startUrl, int maxDepth, boolean resume) throws IOException {
+        synchronized (frontiers) {
+            String id = CrawlFrontier.idFor(startUrl, maxDepth);
+            if (frontiers.containsKey(id)) {
+                id = id + "-" + Long.toHexString(System.nanoTime());
+            }
+            CrawlFrontier frontier = CrawlFrontier.open(CrawlFrontier.DEFAULT_DIR, id, startUrl, maxDepth,
+                    ImageExtractorService::isPublished, resume);
+            frontiers.put(id, frontier);
+            return frontier;
+        }
+    }
+
+    /**
+     * Closes a crawl's frontier. A finished crawl's journal is deleted, and so is the journal
+     * of a crawl with a one-off id that no later request would open again. A crawl cut short
+     * by a shutdown keeps its journal for the next identical request; one stopped by its
+     * budget or client keeps it for a request that asks to resume.
+     */
+    public void closeFrontier(CrawlFrontier frontier, CrawlBudget.StopReason reason) {
+        synchronized (frontiers) {
+            frontiers.remove(frontier.getId());
+        }
+        if ((reason == CrawlBudget.StopReason.COMPLETED && frontier.pending() == 0)
+                || !CrawlFrontier.isResumable(frontier.getId())) {
+            frontier.finish();
+        } else if (reason == CrawlBudget.StopReason.SHUTDOWN) {
+            frontier.close();
+        } else {
+            frontier.pause();
+        }
+    }
+
+    /**
+     * Progress of every crawl that is currently running.
+     */
+    public List<CrawlFrontier.Stats> getFrontierStats() {
+        List<CrawlFrontier> open;
+        synchronized (frontiers) {
+            open = new ArrayList<>(frontiers.values());
+        }
+        List<CrawlFrontier.Stats> stats = new ArrayList<>();
+        for (CrawlFrontier frontier : open) {
+            stats.add(frontier.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Number of tasks queued across all sessions and not yet picked up by a worker.
+     */
+    public int getQueuedTasks() {
+        synchronized (lock) {
+            int queued = 0;
+            for (Session session : readySessions) {
+                queued += session.tasks.size();
+            }
+            return queued;
+        }
+    }
+
+    /**
+     * Number of tasks that workers are running right now.
+     */
+    public int getActiveTasks() {
+        return activeTasks.get();
+    }
+
+    /**
+     * Stops accepting work, drops queued tasks and waits for running tasks to finish.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        synchronized (lock) {
+            running = false;
+            for (Session session : readySessions) {
+                session.tasks.clear();
+                session.queued = false;
+            }
+            readySessions.clear();
+            lock.notifyAll();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                break;
+            }
+            try {
+                worker.join(remainingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        imagePipeline.shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        httpFetcher.shutdown();
+        driverPool.shutdown();
+        recorder.close();
+        System.out.println("🛑 Crawl engine stopped.");
+    }
+
+    private void runWorker() {
+        while (true) {
+            Runnable task;
+            synchronized (lock) {
+                while (running && readySessions.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                // Round-robin: take one task from the head session and requeue it at the tail.
+                Session session = readySessions.pollFirst();
+                task = session.tasks.poll();
+                if (session.tasks.isEmpty()) {
+                    session.queued = false;
+                } else {
+                    readySessions.addLast(session);
+                }
+            }
+            activeTasks.incrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("❌ Crawl task failed: " + e.getMessage());
+            } finally {
+                activeTasks.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Per-crawl task queue. Tasks of one session run in submission order relative
+     * to each other, interleaved with the tasks of every other open session.
+     */
+    public class Session {
+        private final Queue<Runnable> tasks = new ArrayDeque<>(); // guarded by lock
+        private boolean queued; // guarded by lock
+
+        private Session() {
+        }
+
+        public void submit(Runnable task) {
+            synchronized (lock) {
+                if (!running) {
+                    throw new RejectedExecutionException("Crawl engine is shut down.");
+                }
+                tasks.add(task);
+                if (!queued) {
+                    queued = true;
+                    readySessions.addLast(this);
+                }
+                lock.notify();
+            }
+        }
+
+        public int pendingTasks() {
+            synchronized (lock) {
+                return tasks.size();
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.eulerity.hackathon.imagefinder;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the shared {@link CrawlEngine} when the application starts and stops it on undeploy.
+ * Browsers are pre-warmed in the background so startup is not delayed by Chrome launches.
+ */
+@WebListener
+public class CrawlEngineListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        HttpFetcher.configureJvm();
+        int orphans = CrawlFrontier.deleteOrphans(CrawlFrontier.DEFAULT_DIR);
+        if (orphans > 0) {
+            System.out.println("🧹 Deleted " + orphans + " crawl journals that cannot be resumed.");
+        }
+        CrawlEngine engine = new CrawlEngine();
+        sce.getServletContext().setAttribute(CrawlEngine.CONTEXT_ATTRIBUTE, engine);
+
+        Thread prewarm = new Thread(() -> engine.getDriverPool().prewarm(WebDriverPool.DEFAULT_PREWARM),
+                "browser-prewarm");
+        prewarm.setDaemon(true);
+        prewarm.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        CrawlEngine engine = (CrawlEngine) sce.getServletContext().getAttribute(CrawlEngine.CONTEXT_ATTRIBUTE);
+        if (engine != null) {
+            engine.shutdown(30, TimeUnit.SECONDS);
+            sce.getServletContext().removeAttribute(CrawlEngine.CONTEXT_ATTRIBUTE);
+        }
+    }
+}
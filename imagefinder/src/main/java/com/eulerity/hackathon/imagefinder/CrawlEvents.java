@@ -0,0 +1,119 @@
+package com.eulerity.hackathon.imagefinder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events that trace a crawl page by page and image by image. Every
+ * event carries the crawl id (the id of the crawl's frontier) and the URL it is about, so a
+ * slow crawl can be opened in JDK Mission Control and filtered down to one site.
+ *
+ * Events are cheap when no recording is running: {@code commit()} does nothing unless the
+ * event type is enabled. {@link CrawlRecorder} keeps a continuous recording of them.
+ */
+public final class CrawlEvents {
+    static final String PAGE_FETCH = "imagefinder.PageFetch";
+    static final String PAGE_CRAWL = "imagefinder.PageCrawl";
+    static final String IMAGE_EXTRACTION = "imagefinder.ImageExtraction";
+    static final String RENDER_PHASE = "imagefinder.RenderPhase";
+    static final String IMAGE_STAGE = "imagefinder.ImageStage";
+
+    private CrawlEvents() {
+    }
+
+    @Name(PAGE_FETCH)
+    @Label("Page Fetch")
+    @Category({"ImageFinder", "Crawl"})
+    @Description("Robots check and download of a page, including time queued in the fetcher")
+    @StackTrace(false)
+    public static class PageFetch extends Event {
+        @Label("Crawl Id")
+        public String crawlId;
+        @Label("URL")
+        public String url;
+        @Label("Depth")
+        public int depth;
+        @Label("Allowed")
+        public boolean allowed;
+        @Label("Error")
+        public String error;
+    }
+
+    @Name(PAGE_CRAWL)
+    @Label("Page Crawl")
+    @Category({"ImageFinder", "Crawl"})
+    @Description("Processing of a downloaded page on a crawl worker")
+    @StackTrace(false)
+    public static class PageCrawl extends Event {
+        @Label("Crawl Id")
+        public String crawlId;
+        @Label("URL")
+        public String url;
+        @Label("Depth")
+        public int depth;
+        @Label("Status Code")
+        public int statusCode;
+        @Label("Content Type")
+        public String contentType;
+        @Label("Links Enqueued")
+        public int links;
+        @Label("Downloaded")
+        @DataAmount
+        public long downloadedBytes;
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name(IMAGE_EXTRACTION)
+    @Label("Image Extraction")
+    @Category({"ImageFinder", "Images"})
+    @Description("Finding, downloading and processing the images of one page")
+    @StackTrace(false)
+    public static class ImageExtraction extends Event {
+        @Label("Crawl Id")
+        public String crawlId;
+        @Label("URL")
+        public String url;
+        @Label("Rendered")
+        public boolean rendered;
+        @Label("Image URLs")
+        public int imageUrls;
+        @Label("Images Found")
+        public int imagesFound;
+    }
+
+    @Name(RENDER_PHASE)
+    @Label("Render Phase")
+    @Category({"ImageFinder", "Images"})
+    @Description("One phase of rendering a page in the browser: load, settle, scroll, carousel, container or extract")
+    @StackTrace(false)
+    public static class RenderPhase extends Event {
+        @Label("Crawl Id")
+        public String crawlId;
+        @Label("URL")
+        public String url;
+        @Label("Phase")
+        public String phase;
+    }
+
+    @Name(IMAGE_STAGE)
+    @Label("Image Stage")
+    @Category({"ImageFinder", "Images"})
+    @Description("One stage of processing an image: download, analyze or encode")
+    @StackTrace(false)
+    public static class ImageStage extends Event {
+        @Label("Crawl Id")
+        public String crawlId;
+        @Label("Image URL")
+        public String url;
+        @Label("Stage")
+        public String stage;
+        @Label("Outcome")
+        public String outcome;
+    }
+}
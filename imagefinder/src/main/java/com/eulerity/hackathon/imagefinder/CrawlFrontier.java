@@ -0,0 +1,454 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Disk-backed queue of the URLs one crawl still has to visit.
+ *
+ * Everything is kept in an append-only journal, one record per line:
+ * {@code S} (crawl header), {@code E} (URL enqueued with its remaining depth),
+ * {@code D} (URL done), {@code I} (image reported, with the page it was found on),
+ * {@code P} (crawl stopped early on purpose) and {@code F} (crawl finished).
+ * The journal itself is the queue: {@link #poll()} reads the next enqueued URL from a
+ * cursor in the file, so pending URLs never sit on the heap; only 64-bit fingerprints of
+ * the canonical seen and done URLs are kept in memory, in primitive hash sets. The canonical
+ * form is only the dedup key: the journal keeps, and {@link #poll()} returns, the URL as it
+ * was linked, because that is the address the server serves the page at and relative links
+ * on the page resolve against.
+ *
+ * If the JVM stops before {@code F} is written, opening the same crawl again replays the
+ * journal: every URL that was enqueued but not done is crawled again and the images already
+ * found are reported back, so the crawl resumes where it stopped. Images whose published file
+ * no longer exists (processed output is cleaned on startup) are not reported; the pages they
+ * were found on are crawled again instead. A crawl that ended with {@code P}, because it ran
+ * out of budget or its client stopped it, is only resumed when asked to; otherwise it starts
+ * over. Journals untouched for {@code imagefinder.frontier.maxAgeHours} (default 24) are
+ * never resumed.
+ */
+public class CrawlFrontier implements Closeable {
+    public static final File DEFAULT_DIR = new File(System.getProperty("imagefinder.frontier.dir",
+            new File(System.getProperty("java.io.tmpdir"), "imagefinder-frontier").getPath()));
+    public static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(Long.getLong("imagefinder.frontier.maxAgeHours", 24));
+
+    private final String id;
+    private final String startUrl;
+    private final int maxDepth;
+    private final File journal;
+    private final OutputStream writer; // guarded by this
+    private final RandomAccessFile reader; // guarded by this
+    private VisitedSet seen = new VisitedSet(); // guarded by this
+    private LongHashSet done = new LongHashSet(); // guarded by this
+    private final List<String> restoredImages = new ArrayList<>();
+    private final boolean resumed;
+    private byte[] buffer = new byte[64 * 1024];
+    private int bufferPos;
+    private int bufferLength;
+    private long bufferEnd;
+    private long enqueued;
+    private int inProgress;
+    private long images;
+    private boolean closed;
+
+    private CrawlFrontier(File dir, String id, String startUrl, int maxDepth, Predicate<String> imageExists,
+                          boolean resumeStopped) throws IOException {
+        this.id = id;
+        this.startUrl = startUrl;
+        this.maxDepth = maxDepth;
+        this.journal = new File(dir, id + ".frontier");
+
+        if (journal.exists() && (isExpired(journal) || !replay(imageExists, resumeStopped))) {
+            // The previous crawl finished, was stopped or is too old; start a new one.
+            journal.delete();
+            seen = new VisitedSet();
+            done = new LongHashSet();
+            restoredImages.clear();
+            enqueued = 0;
+            images = 0;
+        }
+        this.resumed = journal.exists();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        this.writer = new FileOutputStream(journal, true);
+        this.reader = new RandomAccessFile(journal, "r");
+        if (!resumed) {
+            append("S\t" + maxDepth + "\t" + startUrl);
+        }
+    }
+
+    /**
+     * Opens the frontier of a crawl, resuming it if an unfinished journal exists in {@code dir}.
+     */
+    public static CrawlFrontier open(File dir, String id, String startUrl, int maxDepth) throws IOException {
+        return open(dir, id, startUrl, maxDepth, path -> true);
+    }
+
+    /**
+     * Opens the frontier of a crawl like {@link #open(File, String, String, int)}.
+     *
+     * @param imageExists whether an image path recorded by an earlier run is still published;
+     *                    pages with images that are gone are crawled again on resume.
+     */
+    public static CrawlFrontier open(File dir, String id, String startUrl, int maxDepth,
+                                     Predicate<String> imageExists) throws IOException {
+        return open(dir, id, startUrl, maxDepth, imageExists, false);
+    }
+
+    /**
+     * Opens the frontier of a crawl like {@link #open(File, String, String, int, Predicate)}.
+     *
+     * @param resumeStopped whether to also resume a crawl that was {@link #pause() stopped early}
+     *                      rather than interrupted by a shutdown.
+     */
+    public static CrawlFrontier open(File dir, String id, String startUrl, int maxDepth,
+                                     Predicate<String> imageExists, boolean resumeStopped) throws IOException {
+        return new CrawlFrontier(dir, id, startUrl, maxDepth, imageExists, resumeStopped);
+    }
+
+    /**
+     * The journal name used for a crawl: the same start URL and depth resume the same crawl.
+     */
+    public static String idFor(String startUrl, int maxDepth) {
+        return Long.toHexString(fingerprint(PageCache.cacheKey(startUrl) + "#" + maxDepth));
+    }
+
+    /**
+     * Whether a later crawl can resume this journal, i.e. its id is the one {@link #idFor}
+     * gives its start URL and depth rather than a one-off id for a concurrent duplicate.
+     */
+    public static boolean isResumable(String id) {
+        return id.indexOf('-') < 0;
+    }
+
+    /**
+     * Deletes the journals in {@code dir} that no crawl can resume: those left behind when the
+     * JVM stopped during a one-off crawl, and those older than {@link #MAX_AGE_MILLIS}.
+     *
+     * @return how many journals were deleted.
+     */
+    public static int deleteOrphans(File dir) {
+        File[] journals = dir.listFiles((d, name) -> name.endsWith(".frontier")
+                && (!isResumable(name.substring(0, name.length() - ".frontier".length()))
+                || isExpired(new File(d, name))));
+        int deleted = 0;
+        if (journals != null) {
+            for (File journal : journals) {
+                if (journal.delete()) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private static boolean isExpired(File journal) {
+        return System.currentTimeMillis() - journal.lastModified() > MAX_AGE_MILLIS;
+    }
+
+    private static long fingerprint(String url) {
+        return UrlCanonicalizer.fingerprint(url);
+    }
+
+    /**
+     * Dedup key of a URL: the fingerprint of its canonical form.
+     */
+    private static long key(String url) {
+        return fingerprint(UrlCanonicalizer.DEFAULT.canonicalize(url));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getStartUrl() {
+        return startUrl;
+    }
+
+    /**
+     * True if this frontier continues a crawl that stopped before finishing.
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Images reported by the earlier run of a resumed crawl.
+     */
+    public List<String> getRestoredImages() {
+        return restoredImages;
+    }
+
+    /**
+     * Adds a URL unless it, or another URL with the same canonical form, has been enqueued
+     * before in this crawl. {@link #poll()} returns the URL as given here.
+     *
+     * @return true if the URL was new.
+     */
+    public synchronized boolean enqueue(String url, int depth) {
+        url = url.trim();
+        if (url.indexOf('\n') >= 0 || url.indexOf('\r') >= 0 || !seen.add(key(url))) {
+            return false;
+        }
+        append("E\t" + depth + "\t" + url);
+        enqueued++;
+        return true;
+    }
+
+    /**
+     * Takes the next URL to crawl, or returns null if none is pending right now.
+     */
+    public synchronized Entry poll() {
+        try {
+            String line;
+            while ((line = readLine()) != null) {
+                if (!line.startsWith("E\t")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t', 2);
+                String url = line.substring(tab + 1);
+                if (done.contains(key(url))) {
+                    continue; // finished before a restart
+                }
+                inProgress++;
+                return new Entry(url, Integer.parseInt(line.substring(2, tab)));
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records that a polled URL has been crawled.
+     */
+    public synchronized void markDone(String url) {
+        inProgress--;
+        if (done.add(key(url))) {
+            append("D\t" + url);
+        }
+    }
+
+    /**
+     * Records an image found by the crawl on {@code pageUrl}, so a resumed crawl can report it
+     * again, or crawl the page again if the image is gone by then.
+     */
+    public synchronized void recordImage(String path, String pageUrl) {
+        append("I\t" + path + "\t" + pageUrl);
+        images++;
+    }
+
+    public synchronized int pending() {
+        return (int) (enqueued - done.size() - inProgress);
+    }
+
+    /**
+     * Marks the crawl as complete and deletes its journal.
+     */
+    public synchronized void finish() {
+        append("F");
+        close();
+        journal.delete();
+    }
+
+    /**
+     * Closes the journal of a crawl that stopped early on purpose. It is kept on disk, but
+     * only an explicit resume continues the crawl.
+     */
+    public synchronized void pause() {
+        append("P");
+        close();
+    }
+
+    /**
+     * Closes the journal, keeping it on disk so the crawl can be resumed.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.close();
+            reader.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ Failed to close crawl frontier " + id + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(id, startUrl, maxDepth, resumed, enqueued, done.size(), inProgress, pending(), images,
+                journal.length(), seen.memoryBytes() + done.memoryBytes());
+    }
+
+    private void append(String record) {
+        try {
+            writer.write((record + "\n").getBytes(StandardCharsets.UTF_8));
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the next complete line after the cursor, or null at the end of the journal.
+     */
+    private String readLine() throws IOException {
+        while (true) {
+            for (int i = bufferPos; i < bufferLength; i++) {
+                if (buffer[i] == '\n') {
+                    String line = new String(buffer, bufferPos, i - bufferPos, StandardCharsets.UTF_8);
+                    bufferPos = i + 1;
+                    return line;
+                }
+            }
+            int remaining = bufferLength - bufferPos;
+            System.arraycopy(buffer, bufferPos, buffer, 0, remaining);
+            bufferPos = 0;
+            bufferLength = remaining;
+            if (bufferLength == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            reader.seek(bufferEnd);
+            int read = reader.read(buffer, bufferLength, buffer.length - bufferLength);
+            if (read <= 0) {
+                return null;
+            }
+            bufferLength += read;
+            bufferEnd += read;
+        }
+    }
+
+    /**
+     * Rebuilds the seen and done sets from an existing journal. The first pass finds the
+     * images that are still published and the pages whose images are gone; the second pass
+     * leaves those pages out of the done set, so they are polled again.
+     *
+     * @return false if the journal belongs to a crawl that already finished, or that was
+     * paused and {@code resumeStopped} is false.
+     */
+    private boolean replay(Predicate<String> imageExists, boolean resumeStopped) throws IOException {
+        dropTornRecord();
+        boolean finished = false;
+        boolean paused = false;
+        LongHashSet redo = new LongHashSet();
+        try (BufferedReader in = open()) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("I\t")) {
+                    int tab = line.indexOf('\t', 2);
+                    String path = tab < 0 ? line.substring(2) : line.substring(2, tab);
+                    if (imageExists.test(path)) {
+                        restoredImages.add(path);
+                        images++;
+                    } else if (tab >= 0) {
+                        redo.add(key(line.substring(tab + 1)));
+                    }
+                } else if (line.equals("F")) {
+                    finished = true;
+                }
+                // A resumed crawl appends after its P, so only a trailing P counts.
+                paused = line.equals("P");
+            }
+        }
+        if (finished || (paused && !resumeStopped)) {
+            return false;
+        }
+        try (BufferedReader in = open()) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("E\t")) {
+                    seen.add(key(line.substring(line.indexOf('\t', 2) + 1)));
+                    enqueued++;
+                } else if (line.startsWith("D\t")) {
+                    long key = key(line.substring(2));
+                    if (!redo.contains(key)) {
+                        done.add(key);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private BufferedReader open() throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Cuts off a last record that was only partly written when the JVM stopped.
+     */
+    private void dropTornRecord() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+            long end = file.length();
+            while (end > 0) {
+                file.seek(end - 1);
+                if (file.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            file.setLength(end);
+        }
+    }
+
+    /**
+     * A URL to crawl and how many more link levels may be followed from it.
+     */
+    public static class Entry {
+        public final String url;
+        public final int depth;
+
+        Entry(String url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Point-in-time progress of a crawl.
+     */
+    public static class Stats {
+        public final String id;
+        public final String startUrl;
+        public final int maxDepth;
+        public final boolean resumed;
+        public final long enqueued;
+        public final long done;
+        public final int inProgress;
+        public final int pending;
+        public final long images;
+        public final long journalBytes;
+        public final long visitedBytes;
+
+        Stats(String id, String startUrl, int maxDepth, boolean resumed, long enqueued, long done,
+              int inProgress, int pending, long images, long journalBytes, long visitedBytes) {
+            this.id = id;
+            this.startUrl = startUrl;
+            this.maxDepth = maxDepth;
+            this.resumed = resumed;
+            this.enqueued = enqueued;
+            this.done = done;
+            this.inProgress = inProgress;
+            this.pending = pending;
+            this.images = images;
+            this.journalBytes = journalBytes;
+            this.visitedBytes = visitedBytes;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A crawl started through the job API. Images are appended in the order they are found,
+ * so a result page is addressed by the index of its first image.
+ */
+public class CrawlJob {
+    public enum State { RUNNING, DONE }
+
+    private final String id;
+    private final String url;
+    private volatile CrawlerService crawler; // null once the crawl has finished
+    private final long createdAt = System.currentTimeMillis();
+    private final List<String> images = new ArrayList<>(); // guarded by this
+    private volatile long finishedAt;
+    private volatile int pagesCrawled;
+    private volatile int pendingPages;
+    private volatile CrawlBudget.StopReason stopReason;
+
+    CrawlJob(String id, String url, CrawlerService crawler) {
+        this.id = id;
+        this.url = url;
+        this.crawler = crawler;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public State getState() {
+        return finishedAt == 0 ? State.RUNNING : State.DONE;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * When the crawl ended, or 0 while it is running.
+     */
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public int getPagesCrawled() {
+        CrawlerService running = crawler;
+        return running != null ? running.getPagesCrawled() : pagesCrawled;
+    }
+
+    public int getQueueDepth() {
+        CrawlerService running = crawler;
+        return running != null ? running.getPendingPages() : pendingPages;
+    }
+
+    /**
+     * Why the crawl ended, or null while it is running.
+     */
+    public CrawlBudget.StopReason getStopReason() {
+        CrawlerService running = crawler;
+        return running != null ? running.getStopReason() : stopReason;
+    }
+
+    public synchronized int getImageCount() {
+        return images.size();
+    }
+
+    /**
+     * Up to {@code limit} images starting at index {@code from}.
+     */
+    public synchronized List<String> getImages(int from, int limit) {
+        int start = Math.min(Math.max(0, from), images.size());
+        return new ArrayList<>(images.subList(start, Math.min(images.size(), start + limit)));
+    }
+
+    synchronized void imageFound(String imagePath) {
+        images.add(imagePath);
+    }
+
+    /**
+     * Keeps the final counters and lets go of the crawler, so a finished job kept for its
+     * TTL does not hold the crawl's state.
+     */
+    void finish() {
+        CrawlerService done = crawler;
+        if (done != null) {
+            pagesCrawled = done.getPagesCrawled();
+            pendingPages = done.getPendingPages();
+            stopReason = done.getStopReason();
+            crawler = null;
+        }
+        finishedAt = System.currentTimeMillis();
+    }
+}
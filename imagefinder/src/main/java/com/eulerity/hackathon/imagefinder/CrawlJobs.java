@@ -0,0 +1,61 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crawl jobs started through the job API. A job runs on the engine in the background and
+ * is kept for {@code imagefinder.jobs.ttlMinutes} after it finishes, so clients can poll
+ * for its results instead of holding a connection open for the whole crawl.
+ */
+public class CrawlJobs {
+    public static final long DEFAULT_TTL_MILLIS =
+            TimeUnit.MINUTES.toMillis(Long.getLong("imagefinder.jobs.ttlMinutes", 30));
+
+    private final ConcurrentHashMap<String, CrawlJob> jobs = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+
+    public CrawlJobs() {
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    public CrawlJobs(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Starts a crawl as a new job and returns without waiting for it.
+     */
+    public CrawlJob start(String url, CrawlerService crawler) {
+        purgeExpired();
+        CrawlJob job = new CrawlJob(UUID.randomUUID().toString(), url, crawler);
+        jobs.put(job.getId(), job);
+        crawler.crawlAsync(url, job::imageFound, job::finish);
+        return job;
+    }
+
+    /**
+     * Returns a job, or null if it is unknown or has expired.
+     */
+    public CrawlJob get(String id) {
+        purgeExpired();
+        return id == null ? null : jobs.get(id);
+    }
+
+    public int size() {
+        return jobs.size();
+    }
+
+    private void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        Iterator<CrawlJob> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            long finishedAt = it.next().getFinishedAt();
+            if (finishedAt != 0 && finishedAt < cutoff) {
+                it.remove();
+            }
+        }
+    }
+}
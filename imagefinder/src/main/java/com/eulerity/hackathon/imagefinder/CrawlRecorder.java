@@ -0,0 +1,85 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+/**
+ * Continuous Flight Recorder recording of the {@link CrawlEvents}, kept in memory and on
+ * disk for {@code imagefinder.jfr.maxAgeMinutes} (default 30) and at most
+ * {@code imagefinder.jfr.maxSizeMb} (default 64), and dumped on demand by
+ * {@link RecordingServlet}. Disable it with {@code -Dimagefinder.jfr.enabled=false}.
+ */
+public class CrawlRecorder {
+    public static final boolean DEFAULT_ENABLED =
+            Boolean.parseBoolean(System.getProperty("imagefinder.jfr.enabled", "true"));
+    public static final long DEFAULT_MAX_AGE_MINUTES = Long.getLong("imagefinder.jfr.maxAgeMinutes", 30);
+    public static final long DEFAULT_MAX_SIZE_MB = Long.getLong("imagefinder.jfr.maxSizeMb", 64);
+
+    private final Recording recording;
+
+    public CrawlRecorder() {
+        this(DEFAULT_ENABLED);
+    }
+
+    public CrawlRecorder(boolean enabled) {
+        this.recording = enabled ? start() : null;
+    }
+
+    private static Recording start() {
+        try {
+            if (!FlightRecorder.isAvailable()) {
+                System.err.println("⚠️ Flight Recorder is not available, crawl tracing is off.");
+                return null;
+            }
+            Recording recording = new Recording();
+            recording.setName("imagefinder");
+            recording.setToDisk(true);
+            recording.setMaxAge(Duration.ofMinutes(DEFAULT_MAX_AGE_MINUTES));
+            recording.setMaxSize(DEFAULT_MAX_SIZE_MB * 1024 * 1024);
+            for (String event : new String[] {CrawlEvents.PAGE_FETCH, CrawlEvents.PAGE_CRAWL,
+                    CrawlEvents.IMAGE_EXTRACTION, CrawlEvents.RENDER_PHASE, CrawlEvents.IMAGE_STAGE}) {
+                recording.enable(event);
+            }
+            recording.start();
+            System.out.println("🎥 Flight Recorder tracing crawls (last " + DEFAULT_MAX_AGE_MINUTES + " minutes).");
+            return recording;
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ Could not start Flight Recorder: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Writes the events recorded so far to a new temporary .jfr file, which the caller
+     * deletes. The recording keeps running.
+     *
+     * @throws IOException if tracing is off or the dump fails.
+     */
+    public Path dump() throws IOException {
+        if (recording == null) {
+            throw new IOException("Flight Recorder tracing is not enabled.");
+        }
+        Path file = Files.createTempFile("imagefinder-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    public void close() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
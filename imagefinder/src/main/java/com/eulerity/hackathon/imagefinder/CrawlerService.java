@@ -1,7 +1,5 @@
 package com.eulerity.hackathon.imagefinder;
 
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
 import org.jsoup.nodes.Element;
@@ -13,140 +11,414 @@ import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class CrawlerService {
+    /** Pages of a crawl that may be downloading, queued or running at once, per engine worker. */
+    public static final int PAGES_PER_WORKER = Integer.getInteger("imagefinder.crawl.pagesPerWorker", 4);
 
-    private final ImageExtractorService imageExtractorService = new ImageExtractorService();
-    private final Set<String> visited = ConcurrentHashMap.newKeySet();
-    private final List<Future<List<String>>> futures = new ArrayList<>();
-    private final ExecutorService executor = Executors.newFixedThreadPool(4);
-    private final AtomicInteger activeTasks = new AtomicInteger(0);
+    private final ImageExtractorService imageExtractorService;
+    private final PageCache pageCache;
+    private final CrawlEngine engine;
+    private final Set<String> allImagesSet = ConcurrentHashMap.newKeySet();
+    private final int maxInFlight;
+    private CrawlFrontier frontier;
+    private CrawlEngine.Session session;
+    private Consumer<String> onImage;
+    private Runnable onComplete;
+    private int inFlight; // guarded by this
+    private boolean ending; // guarded by this
+    private boolean stopped; // guarded by this
+    private int pagesCrawled; // guarded by this
+    private CrawlBudget budget = new CrawlBudget();
+    private boolean resume;
+    private volatile CrawlBudget.StopReason stopReason;
+    private boolean finished; // guarded by this
     private String domain;
     private int maxDepth;
     private static final String LOGO_DIR = "C:\\Users\\030825130\\Downloads\\imagefinder-2022-06-02\\imagefinder\\src\\main\\resources\\templates\\detected_logos";
 
-    public CrawlerService(int maxDepth) {
+    /**
+     * @param engine   the shared engine whose workers run this crawl's page tasks.
+     * @param maxDepth how many link levels to follow from the start URL.
+     */
+    public CrawlerService(CrawlEngine engine, int maxDepth) {
+        this.engine = engine;
         this.maxDepth = maxDepth;
+        // Four pages per worker keep every worker busy while other pages wait on the network;
+        // the rest of the frontier stays on disk.
+        this.maxInFlight = engine.getWorkerCount() * PAGES_PER_WORKER;
+        this.pageCache = new PageCache(engine.getHttpCache());
+        this.imageExtractorService = new ImageExtractorService(engine, pageCache);
+    }
+
+    /**
+     * Replaces the default budget (from system properties) of this crawl. Must be called
+     * before the crawl starts.
+     */
+    public void setBudget(CrawlBudget budget) {
+        this.budget = budget;
+        imageExtractorService.setBudget(budget);
+    }
+
+    /**
+     * Whether to resume an earlier crawl of the same start URL and depth that stopped early,
+     * e.g. on its budget, instead of starting over. Must be called before the crawl starts.
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public CrawlBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Why the crawl ended, or null while it is running. Anything but
+     * {@link CrawlBudget.StopReason#COMPLETED} means the results are partial.
+     */
+    public CrawlBudget.StopReason getStopReason() {
+        return stopReason;
     }
 
+    /**
+     * Crawls the site and blocks until every page task has finished.
+     *
+     * @param startUrl the page to start crawling from.
+     * @return the public paths of every unique processed image.
+     */
     public List<String> crawl(String startUrl) {
-        Set<String> allImagesSet = ConcurrentHashMap.newKeySet();
+        crawlAsync(startUrl, null, null);
+
+        synchronized (this) {
+            while (!finished && engine.isRunning()) {
+                try {
+                    wait(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        return new ArrayList<>(allImagesSet);
+    }
+
+    /**
+     * Starts the crawl on the shared engine and returns immediately.
+     *
+     * Pending URLs are kept in a disk-backed {@link CrawlFrontier}. If an earlier crawl of
+     * the same start URL and depth was interrupted by a shutdown, or stopped early and
+     * {@link #setResume} is set, it is resumed: the images it already found are reported
+     * first and only the pages it had not finished are crawled.
+     *
+     * @param startUrl   the page to start crawling from.
+     * @param onImage    called with each new image path as soon as it is processed; may be null.
+     * @param onComplete called once after the last page task has finished; may be null.
+     */
+    public void crawlAsync(String startUrl, Consumer<String> onImage, Runnable onComplete) {
+        this.onImage = onImage;
+        this.onComplete = onComplete;
 
         try {
             URL urlObj = new URL(startUrl);
             domain = urlObj.getHost();
-        } catch (MalformedURLException e) {
-            System.err.println("❌ Invalid start URL: " + e.getMessage());
-            return new ArrayList<>();
+            frontier = engine.openFrontier(startUrl, maxDepth, resume);
+            imageExtractorService.setCrawlId(frontier.getId());
+        } catch (IOException e) {
+            System.err.println("❌ Could not start crawl of " + startUrl + ": " + e.getMessage());
+            crawlFinished();
+            return;
         }
 
-        activeTasks.incrementAndGet();
-        submitCrawlTask(startUrl, maxDepth);
+        if (frontier.isResumed()) {
+            System.out.println("♻️ Resuming crawl of " + startUrl + " with " + frontier.pending() + " pending pages and "
+                    + frontier.getRestoredImages().size() + " images already found.");
+            for (String imagePath : frontier.getRestoredImages()) {
+                if (allImagesSet.add(imagePath) && budget.tryAddImage() && onImage != null) {
+                    onImage.accept(imagePath);
+                }
+            }
+        } else {
+            frontier.enqueue(startUrl, maxDepth);
+        }
+
+        session = engine.openSession();
+        schedule();
+    }
 
-        while (activeTasks.get() > 0) {
+    /**
+     * Moves URLs from the frontier to the fetcher until {@code maxInFlight} pages are
+     * downloading, queued or running, and ends the crawl once nothing is left.
+     */
+    private void schedule() {
+        List<CrawlFrontier.Entry> started = new ArrayList<>();
+        boolean done = false;
+        synchronized (this) {
+            if (ending) {
+                return;
+            }
             try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+                while (!stopped && inFlight < maxInFlight && !budget.isExhausted()) {
+                    CrawlFrontier.Entry next = frontier.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (!budget.tryStartPage()) {
+                        break; // left unfinished in the journal
+                    }
+                    started.add(next);
+                    inFlight++;
+                }
+            } catch (UncheckedIOException e) {
+                System.err.println("⚠️ Crawl stopped early: " + e.getMessage());
+                stopped = true;
+            }
+            if (inFlight == 0) {
+                done = true;
+            }
+        }
+        for (CrawlFrontier.Entry entry : started) {
+            startPage(entry);
+        }
+        if (done) {
+            crawlFinished();
+        }
+    }
+
+    /**
+     * Checks robots.txt and downloads the page without holding a worker, then queues its
+     * processing on this crawl's session. Pages of hosts that are slow or throttling us
+     * wait in the fetcher, so the workers keep processing pages that have arrived.
+     */
+    private void startPage(CrawlFrontier.Entry entry) {
+        CrawlEvents.PageFetch event = new CrawlEvents.PageFetch();
+        event.begin();
+        engine.getHttpFetcher().isAllowed(entry.url)
+                .thenCompose(allowed -> allowed
+                        ? pageCache.getAsync(entry.url, session::submit)
+                        : CompletableFuture.<PageCache.Page>completedFuture(null))
+                .whenComplete((page, error) -> {
+                    if (event.shouldCommit()) {
+                        event.crawlId = frontier.getId();
+                        event.url = entry.url;
+                        event.depth = entry.depth;
+                        event.allowed = page != null || error != null;
+                        event.error = error == null ? null : HttpFetcher.unwrap(error).toString();
+                        event.commit();
+                    }
+                    try {
+                        session.submit(() -> crawlPage(entry.url, entry.depth, page, error));
+                    } catch (RejectedExecutionException e) {
+                        pageAbandoned(e);
+                    }
+                });
+    }
+
+    /**
+     * The engine is shutting down: stop scheduling and leave the page pending in the journal.
+     */
+    private void pageAbandoned(RejectedExecutionException e) {
+        boolean done;
+        synchronized (this) {
+            if (!stopped) {
+                System.err.println("⚠️ Crawl stopped early: " + e.getMessage());
             }
+            stopped = true;
+            inFlight--;
+            done = inFlight == 0;
         }
+        if (done) {
+            crawlFinished();
+        }
+    }
 
-        executor.shutdown();
+    /**
+     * Stops the crawl early: no new pages are started and the work in flight is skipped.
+     * The crawl then ends as usual, with {@link CrawlBudget.StopReason#STOPPED}, and keeps its
+     * journal so a request with {@code resume=true} can continue it.
+     */
+    public void stop() {
+        budget.stop();
+    }
+
+    /**
+     * Pages processed so far, including pages that failed or were disallowed.
+     */
+    public synchronized int getPagesCrawled() {
+        return pagesCrawled;
+    }
+
+    /**
+     * Pages waiting in the frontier or being fetched and processed.
+     */
+    public int getPendingPages() {
+        CrawlFrontier current;
+        int running;
+        synchronized (this) {
+            current = frontier;
+            running = inFlight;
+        }
+        return running + (current == null ? 0 : Math.max(0, current.pending()));
+    }
+
+    private void pageFinished(String url) {
+        synchronized (this) {
+            inFlight--;
+            pagesCrawled++;
+        }
+        Metrics.PAGES.inc();
         try {
-            executor.awaitTermination(10, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            System.err.println("⚠️ Executor termination interrupted: " + e.getMessage());
+            frontier.markDone(url);
+        } catch (UncheckedIOException e) {
+            System.err.println("⚠️ Could not record " + url + " as crawled: " + e.getMessage());
         }
+        schedule();
+    }
 
-        for (Future<List<String>> future : futures) {
-            try {
-                List<String> images = future.get();
-                if (images != null) {
-                    allImagesSet.addAll(images);
-                }
-            } catch (InterruptedException | ExecutionException e) {
-                System.err.println("❌ Error retrieving images: " + e.getMessage());
+    private void crawlFinished() {
+        synchronized (this) {
+            if (ending) {
+                return;
             }
+            ending = true;
+        }
+        CrawlBudget.StopReason reason = budget.getExhaustedBy();
+        if (reason == null) {
+            boolean interrupted;
+            synchronized (this) {
+                interrupted = stopped;
+            }
+            reason = frontier == null || interrupted || !engine.isRunning()
+                    ? CrawlBudget.StopReason.SHUTDOWN : CrawlBudget.StopReason.COMPLETED;
+        }
+        stopReason = reason;
+        if (frontier != null) {
+            engine.closeFrontier(frontier, reason);
+        }
+        synchronized (this) {
+            finished = true;
+            notifyAll();
+        }
+        if (onComplete != null) {
+            onComplete.run();
         }
-
-        return new ArrayList<>(allImagesSet);
     }
 
-    private void submitCrawlTask(String url, int depth) {
-        if (depth <= 0 || visited.contains(url)) {
-            activeTasks.decrementAndGet();
-            return;
+    private void imageProcessed(String pageUrl, String imagePath) {
+        if (allImagesSet.add(imagePath)) {
+            if (!budget.tryAddImage()) {
+                allImagesSet.remove(imagePath);
+                return;
+            }
+            frontier.recordImage(imagePath, pageUrl);
+            Metrics.IMAGES.inc();
+            if (onImage != null) {
+                onImage.accept(imagePath);
+            }
         }
-        visited.add(url);
-        Future<List<String>> future = executor.submit(() -> {
-            List<String> pageImages = new ArrayList<>();
-            System.out.println("🌍 Crawling URL: " + url);
+    }
 
-            try {
-                Connection connection = Jsoup.connect(url)
-                        .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 " +
-                                "(KHTML, like Gecko) Chrome/90.0.4430.93 Safari/537.36")
-                        .timeout(10000)
-                        .ignoreContentType(true)
-                        .ignoreHttpErrors(true);
-
-                Connection.Response response = connection.execute();
-                String contentType = response.contentType();
-                System.out.println("📄 Content Type: " + contentType);
-
-                if (contentType != null && (contentType.startsWith("text/") ||
-                        contentType.startsWith("application/xml") ||
-                        (contentType.startsWith("application/") && contentType.endsWith("+xml")))) {
-
-                    Document doc = response.parse();
-                    Elements links = doc.select("a[href]");
-
-                    for (Element link : links) {
-                        String absHref = link.absUrl("href");
-                        if (absHref != null && !absHref.isEmpty()) {
-                            try {
-                                URL linkUrl = new URL(absHref);
-                                String linkHost = linkUrl.getHost();
-                                if (linkHost.equalsIgnoreCase(domain) || linkHost.endsWith("." + domain)) {
-                                    activeTasks.incrementAndGet();
-                                    submitCrawlTask(absHref, depth - 1);
-                                }
-                            } catch (MalformedURLException e) {
-                                System.err.println("⚠️ Invalid link URL: " + e.getMessage());
-                            }
-                        }
-                    }
+    /**
+     * Processes a downloaded page on a crawl worker. Favicon and logo downloads are handed to
+     * the image pipeline without waiting. The worker does still wait for the page to render
+     * in a browser when it needs one, and for the page's images to finish the pipeline, so a
+     * page with many slow images holds its worker until they are done; the other pages in
+     * flight keep downloading meanwhile.
+     */
+    private void crawlPage(String url, int depth, PageCache.Page page, Throwable error) {
+        System.out.println("🌍 Crawling URL: " + url);
+        CrawlEvents.PageCrawl event = new CrawlEvents.PageCrawl();
+        event.begin();
+        event.outcome = "crawled";
 
-                    // Extract & Download Favicon
-                    String faviconUrl = FaviconExtractor.extractFaviconUrl(url);
-                    if (faviconUrl != null) {
-                        FaviconExtractor.downloadFavicon(faviconUrl);
+        try {
+            if (error != null) {
+                Metrics.PAGE_ERRORS.inc();
+                event.outcome = "failed";
+                System.err.println("❌ Failed to crawl " + url + ": " + HttpFetcher.unwrap(error).getMessage());
+                return;
+            }
+            if (page == null) {
+                event.outcome = "disallowed";
+                System.out.println("🤖 Skipping " + url + ": disallowed by robots.txt");
+                return;
+            }
+            event.statusCode = page.statusCode;
+            event.contentType = page.contentType;
+            event.downloadedBytes = page.downloadedBytes;
+            budget.addBytes(page.downloadedBytes);
+            if (budget.shouldSkipWork()) {
+                event.outcome = "budget exhausted";
+                System.out.println("⏹️ Skipping " + url + ": crawl budget exhausted");
+                return;
+            }
+            String contentType = page.contentType;
+            System.out.println("📄 Content Type: " + contentType);
+
+            if (page.document != null) {
+                Document doc = page.document;
+                if (depth > 1 && !budget.isExhausted()) {
+                    for (String absHref : extractSameDomainLinks(doc, domain)) {
+                        frontier.enqueue(absHref, depth - 1);
+                        event.links++;
                     }
+                }
 
-                    // Extract & Detect Logos
-                    Elements images = doc.select("img");
-                    for (Element img : images) {
-                        String imageUrl = img.absUrl("src");
-                        if (isLikelyLogo(imageUrl)) {
-                            System.out.println("✅ Logo Detected: " + imageUrl);
-                            saveUniqueLogo(imageUrl);
-                        }
+                // Extract & Download Favicon (the probe and download wait on the network, so not here)
+                String pageUrl = page.url;
+                engine.getImagePipeline().favicon(() -> {
+                    String faviconUrl = FaviconExtractor.extractFaviconUrl(pageUrl, doc, engine.getHttpFetcher());
+                    return faviconUrl == null ? null : FaviconExtractor.downloadFavicon(faviconUrl, engine.getHttpCache());
+                });
+
+                // Extract & Detect Logos
+                Elements images = doc.select("img");
+                for (Element img : images) {
+                    String imageUrl = img.absUrl("src");
+                    if (isLikelyLogo(imageUrl)) {
+                        System.out.println("✅ Logo Detected: " + imageUrl);
+                        saveUniqueLogo(imageUrl);
                     }
+                }
+
+                imageExtractorService.extractImages(page.url, doc, imagePath -> imageProcessed(url, imagePath));
+            } else {
+                event.outcome = "unsupported";
+                System.err.println("⚠️ Skipping unsupported content type: " + contentType + " for URL: " + url);
+            }
+        } finally {
+            if (event.shouldCommit()) {
+                event.crawlId = frontier.getId();
+                event.url = url;
+                event.depth = depth;
+                event.commit();
+            }
+            pageFinished(url);
+        }
+    }
 
-                    pageImages.addAll(imageExtractorService.extractImages(url));
-                } else {
-                    System.err.println("⚠️ Skipping unsupported content type: " + contentType + " for URL: " + url);
+    /**
+     * Returns the absolute URLs of every link on the page that points to {@code domain}
+     * or one of its subdomains, in document order.
+     */
+    static List<String> extractSameDomainLinks(Document doc, String domain) {
+        List<String> sameDomainLinks = new ArrayList<>();
+        for (Element link : doc.select("a[href]")) {
+            String absHref = link.absUrl("href");
+            if (absHref != null && !absHref.isEmpty()) {
+                try {
+                    URL linkUrl = new URL(absHref);
+                    String linkHost = linkUrl.getHost();
+                    if (linkHost.equalsIgnoreCase(domain) || linkHost.endsWith("." + domain)) {
+                        sameDomainLinks.add(absHref);
+                    }
+                } catch (MalformedURLException e) {
+                    System.err.println("⚠️ Invalid link URL: " + e.getMessage());
                 }
-            } catch (IOException e) {
-                System.err.println("❌ Failed to crawl " + url + ": " + e.getMessage());
-            } finally {
-                activeTasks.decrementAndGet();
             }
-            return pageImages;
-        });
-        futures.add(future);
+        }
+        return sameDomainLinks;
     }
 
     /**
@@ -159,28 +431,34 @@ public class CrawlerService {
     }
 
     /**
-     * ✅ Saves unique logos, avoiding duplicates.
+     * ✅ Saves unique logos, avoiding duplicates. The logo is fetched without waiting and
+     * written by the pipeline's download stage.
      */
     private void saveUniqueLogo(String logoUrl) {
-        try {
-            URL url = new URL(logoUrl);
-            File logoDir = new File(LOGO_DIR);
-            if (!logoDir.exists()) logoDir.mkdirs();
+        File logoDir = new File(LOGO_DIR);
+        if (!logoDir.exists()) logoDir.mkdirs();
 
-            String fileName = "logo_" + hashUrl(logoUrl) + ".png";
-            File destinationFile = new File(LOGO_DIR, fileName);
+        String fileName = "logo_" + hashUrl(logoUrl) + ".png";
+        File destinationFile = new File(LOGO_DIR, fileName);
 
-            if (destinationFile.exists()) {
-                System.out.println("⚠️ Logo already exists, skipping: " + destinationFile.getAbsolutePath());
-                return;
-            }
-
-            InputStream in = url.openStream();
-            Files.copy(in, destinationFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("✅ Logo saved: " + destinationFile.getAbsolutePath());
-        } catch (Exception e) {
-            System.err.println("❌ Failed to save logo: " + e.getMessage());
+        if (destinationFile.exists()) {
+            System.out.println("⚠️ Logo already exists, skipping: " + destinationFile.getAbsolutePath());
+            return;
         }
+
+        ImagePipeline pipeline = engine.getImagePipeline();
+        engine.getHttpCache().fetchAsync(logoUrl)
+                .thenComposeAsync(response -> pipeline.download(() -> {
+                    try (InputStream in = response.openStream()) {
+                        Files.copy(in, destinationFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    System.out.println("✅ Logo saved: " + destinationFile.getAbsolutePath());
+                    return destinationFile;
+                }), pipeline.handoff())
+                .exceptionally(e -> {
+                    System.err.println("❌ Failed to save logo: " + HttpFetcher.unwrap(e).getMessage());
+                    return null;
+                });
     }
 
     private String hashUrl(String url) {
@@ -188,8 +466,13 @@ public class CrawlerService {
     }
 
     public static void main(String[] args) {
-        CrawlerService crawler = new CrawlerService(3);
-        List<String> logos = crawler.crawl("http://www.shubhsolutions.com/index.htm#");
-        System.out.println("🎯 Logos Collected: " + logos.size());
+        CrawlEngine engine = new CrawlEngine();
+        try {
+            CrawlerService crawler = new CrawlerService(engine, 3);
+            List<String> logos = crawler.crawl("http://www.shubhsolutions.com/index.htm#");
+            System.out.println("🎯 Logos Collected: " + logos.size());
+        } finally {
+            engine.shutdown(1, TimeUnit.MINUTES);
+        }
     }
 }
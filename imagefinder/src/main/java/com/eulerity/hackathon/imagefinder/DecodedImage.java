@@ -0,0 +1,118 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An image decoded once and shared by every processing stage.
+ *
+ * The OpenCV views (BGR and grayscale) are created lazily from the same pixels and
+ * reused by face detection, logo detection and marking. Marking draws into the BGR
+ * view; {@link #current()} then returns the marked pixels for the final resize.
+ *
+ * The views live in a {@link MatScope} and are released, or returned to the closing thread's
+ * pool, by {@link #close()}.
+ */
+public class DecodedImage implements AutoCloseable {
+    private final BufferedImage original;
+    private MatScope scope;
+    private Mat bgr;
+    private Mat gray;
+    private boolean modified;
+
+    public DecodedImage(BufferedImage original) {
+        this.original = original;
+    }
+
+    /**
+     * Decodes an image file, or returns null if the format is not supported.
+     */
+    public static DecodedImage read(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        return image == null ? null : new DecodedImage(image);
+    }
+
+    public int getWidth() {
+        return original.getWidth();
+    }
+
+    public int getHeight() {
+        return original.getHeight();
+    }
+
+    public BufferedImage original() {
+        return original;
+    }
+
+    /**
+     * Native memory taken by the BGR and grayscale views once both exist.
+     */
+    public long nativeBytes() {
+        return (long) getWidth() * getHeight() * 4;
+    }
+
+    /**
+     * 8-bit, 3-channel BGR view of the image, as OpenCV expects it.
+     */
+    public Mat bgr() {
+        if (bgr == null) {
+            bgr = OpenCVUtils.toBgrMat(original, scope());
+        }
+        return bgr;
+    }
+
+    /**
+     * Single-channel grayscale view of the image, computed from the unmarked pixels.
+     */
+    public Mat gray() {
+        if (gray == null) {
+            gray = scope().mat(getHeight(), getWidth(), CvType.CV_8UC1);
+            Imgproc.cvtColor(bgr(), gray, Imgproc.COLOR_BGR2GRAY);
+        }
+        return gray;
+    }
+
+    /**
+     * Records that {@link #bgr()} has been drawn on, e.g. by face marking.
+     */
+    public void markModified() {
+        modified = true;
+    }
+
+    /**
+     * The pixels to publish: the marked BGR view if it was drawn on, otherwise the original.
+     */
+    public BufferedImage current() {
+        return modified ? OpenCVUtils.toBufferedImage(bgr) : original;
+    }
+
+    private MatScope scope() {
+        if (scope == null) {
+            scope = new MatScope();
+        }
+        return scope;
+    }
+
+    /**
+     * Frees the native memory of the OpenCV views.
+     */
+    public void release() {
+        if (scope != null) {
+            scope.close();
+            scope = null;
+        }
+        bgr = null;
+        gray = null;
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
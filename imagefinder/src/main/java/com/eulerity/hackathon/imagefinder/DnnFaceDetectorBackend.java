@@ -0,0 +1,197 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+
+/**
+ * Face detection with the OpenCV DNN module and the Caffe SSD ResNet-10 face model
+ * ({@code deploy.prototxt} plus {@code res10_300x300_ssd_iter_140000.caffemodel}), loaded
+ * from {@code imagefinder.faces.dnn.prototxt} and {@code imagefinder.faces.dnn.model}.
+ *
+ * Requests from all pipeline threads go to one inference thread that owns the network
+ * ({@code Net} is not thread-safe). It waits up to {@code imagefinder.faces.dnn.batchWaitMs}
+ * for more images and runs up to {@code imagefinder.faces.dnn.batchSize} of them through
+ * {@link Dnn#blobFromImages} and a single forward pass; OpenCV spreads that pass over the CPU
+ * cores itself.
+ */
+public class DnnFaceDetectorBackend implements FaceDetectorBackend {
+    public static final String DEFAULT_PROTOTXT =
+            System.getProperty("imagefinder.faces.dnn.prototxt", "src/main/resources/face_detector/deploy.prototxt");
+    public static final String DEFAULT_MODEL = System.getProperty("imagefinder.faces.dnn.model",
+            "src/main/resources/face_detector/res10_300x300_ssd_iter_140000.caffemodel");
+    public static final double DEFAULT_CONFIDENCE =
+            Double.parseDouble(System.getProperty("imagefinder.faces.dnn.confidence", "0.5"));
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("imagefinder.faces.dnn.batchSize", 8);
+    public static final long DEFAULT_BATCH_WAIT_MS = Long.getLong("imagefinder.faces.dnn.batchWaitMs", 5);
+
+    private static final Size INPUT_SIZE = new Size(300, 300);
+    private static final Scalar MEAN = new Scalar(104.0, 177.0, 123.0);
+    /** Each detection is [imageId, label, confidence, left, top, right, bottom]. */
+    private static final int DETECTION_SIZE = 7;
+
+    private final Net net; // used by the inference thread only
+    private final double confidence;
+    private final int batchSize;
+    private final long batchWaitNanos;
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong images = new AtomicLong();
+
+    public DnnFaceDetectorBackend() throws IOException {
+        this(DEFAULT_PROTOTXT, DEFAULT_MODEL, DEFAULT_CONFIDENCE, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_WAIT_MS);
+    }
+
+    /**
+     * @throws IOException if the model files are missing or cannot be loaded.
+     */
+    public DnnFaceDetectorBackend(String prototxt, String model, double confidence, int batchSize, long batchWaitMs)
+            throws IOException {
+        for (String path : new String[] {prototxt, model}) {
+            if (!new File(path).isFile()) {
+                throw new FileNotFoundException("Face model file not found: " + path);
+            }
+        }
+        this.net = Dnn.readNetFromCaffe(prototxt, model);
+        if (net.empty()) {
+            throw new IOException("Could not load face model " + model + " with " + prototxt);
+        }
+        this.confidence = confidence;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchWaitNanos = TimeUnit.MILLISECONDS.toNanos(batchWaitMs);
+
+        Thread inference = new Thread(this::runBatches, "face-dnn");
+        inference.setDaemon(true);
+        inference.start();
+        System.out.println("✅ Loaded DNN face model " + model + " (batches of up to " + this.batchSize + ").");
+    }
+
+    @Override
+    public String name() {
+        return "dnn";
+    }
+
+    /**
+     * Queues the image for the next forward pass and waits for its faces. Images that pipeline
+     * threads analyze at the same time share a pass.
+     */
+    @Override
+    public Rect[] detect(DecodedImage image) {
+        image.bgr(); // convert on the calling thread, not the shared inference thread
+        Request request = new Request(image);
+        requests.add(request);
+        return request.result.join();
+    }
+
+    /**
+     * Average number of images per forward pass so far.
+     */
+    public double averageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) images.get() / count;
+    }
+
+    private void runBatches() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                batch.add(requests.take());
+                long deadline = System.nanoTime() + batchWaitNanos;
+                while (batch.size() < batchSize) {
+                    Request next = requests.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                for (Request request : batch) {
+                    request.result.completeExceptionally(e);
+                }
+                return;
+            }
+            try {
+                infer(batch);
+            } catch (RuntimeException e) {
+                System.err.println("❌ DNN face detection failed: " + e.getMessage());
+                for (Request request : batch) {
+                    request.result.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void infer(List<Request> batch) {
+        List<Mat> inputs = new ArrayList<>(batch.size());
+        List<List<Rect>> faces = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            inputs.add(request.image.bgr());
+            faces.add(new ArrayList<>());
+        }
+
+        try (MatScope scope = new MatScope()) {
+            Mat blob = scope.track(Dnn.blobFromImages(inputs, 1.0, INPUT_SIZE, MEAN, false, false));
+            net.setInput(blob);
+            Mat output = scope.track(net.forward());
+            Mat detections = scope.track(output.reshape(1, (int) (output.total() / DETECTION_SIZE)));
+            float[] row = new float[DETECTION_SIZE];
+            for (int i = 0; i < detections.rows(); i++) {
+                detections.get(i, 0, row);
+                int imageId = (int) row[0];
+                if (imageId < 0 || imageId >= batch.size() || row[2] < confidence) {
+                    continue;
+                }
+                DecodedImage image = batch.get(imageId).image;
+                Rect face = toRect(row, image.getWidth(), image.getHeight());
+                if (face != null) {
+                    faces.get(imageId).add(face);
+                }
+            }
+        }
+
+        batches.incrementAndGet();
+        images.addAndGet(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(faces.get(i).toArray(new Rect[0]));
+        }
+    }
+
+    /**
+     * Converts a detection's normalized corners to pixels, or null if nothing is left
+     * after clipping to the image.
+     */
+    static Rect toRect(float[] detection, int width, int height) {
+        int left = (int) Math.round(clamp(detection[3]) * width);
+        int top = (int) Math.round(clamp(detection[4]) * height);
+        int right = (int) Math.round(clamp(detection[5]) * width);
+        int bottom = (int) Math.round(clamp(detection[6]) * height);
+        return right > left && bottom > top ? new Rect(left, top, right - left, bottom - top) : null;
+    }
+
+    private static double clamp(float value) {
+        return Math.max(0, Math.min(1, value));
+    }
+
+    private static final class Request {
+        final DecodedImage image;
+        final CompletableFuture<Rect[]> result = new CompletableFuture<>();
+
+        Request(DecodedImage image) {
+            this.image = image;
+        }
+    }
+}
@@ -2,17 +2,27 @@ package com.eulerity.hackathon.imagefinder;
 
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.objdetect.CascadeClassifier;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
+/**
+ * Face detection through a pluggable {@link FaceDetectorBackend}, chosen with
+ * {@code -Dimagefinder.faces.backend}: {@code haar} (default, {@link HaarFaceDetectorBackend})
+ * or {@code dnn} ({@link DnnFaceDetectorBackend}, which falls back to Haar if its model
+ * cannot be loaded).
+ *
+ * Detection runs once per image; the returned rectangles serve both the yes/no decision
+ * and the marking.
+ */
 public class FaceDetector {
-    private static final CascadeClassifier faceDetector;
+    static final String CLASSIFIER_PATH = "C:\\Users\\030825130\\Downloads\\imagefinder-2022-06-02\\imagefinder\\src\\main\\resources\\haarcascade_frontalface_alt (1).xml";
+    public static final String DEFAULT_BACKEND = System.getProperty("imagefinder.faces.backend", "haar");
+
+    private static final FaceDetectorBackend backend;
 
     static {
         try {
@@ -23,62 +33,96 @@ public class FaceDetector {
             throw e;
         }
 
-        String classifierPath = "C:\\Users\\030825130\\Downloads\\imagefinder-2022-06-02\\imagefinder\\src\\main\\resources\\haarcascade_frontalface_alt (1).xml";
-        faceDetector = new CascadeClassifier(classifierPath);
-        if (faceDetector.empty()) {
-            System.err.println("❌ Failed to load Haar Cascade classifier from: " + classifierPath);
-        } else {
-            System.out.println("✅ Successfully loaded Haar Cascade classifier.");
+        backend = createBackend(DEFAULT_BACKEND);
+        System.out.println("✅ Face detection backend: " + backend.name());
+    }
+
+    private static FaceDetectorBackend createBackend(String name) {
+        if ("dnn".equalsIgnoreCase(name)) {
+            try {
+                return new DnnFaceDetectorBackend();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("⚠️ DNN face detector unavailable, falling back to Haar: " + e.getMessage());
+            }
+        } else if (!"haar".equalsIgnoreCase(name)) {
+            System.err.println("⚠️ Unknown face detector backend '" + name + "', using Haar.");
         }
+        return new HaarFaceDetectorBackend(CLASSIFIER_PATH);
+    }
+
+    public static FaceDetectorBackend getBackend() {
+        return backend;
     }
 
     public static boolean containsFace(BufferedImage image) {
-        Mat matImage = bufferedImageToMat(image);
-        if (matImage.empty()) {
-            System.err.println("❌ Error: Mat is empty after conversion!");
-            return false;
+        DecodedImage decoded = new DecodedImage(image);
+        try {
+            return containsFace(decoded);
+        } finally {
+            decoded.release();
         }
+    }
 
-        Mat grayImage = new Mat();
-        Imgproc.cvtColor(matImage, grayImage, Imgproc.COLOR_BGR2GRAY);
+    /**
+     * Checks an already decoded image for faces.
+     */
+    public static boolean containsFace(DecodedImage image) {
+        return detectFaces(image).length > 0;
+    }
 
-        MatOfRect faceDetections = new MatOfRect();
-        faceDetector.detectMultiScale(grayImage, faceDetections, 1.1, 3, 0, new Size(30, 30), new Size());
+    /**
+     * Finds the faces in an image in a single detection pass.
+     *
+     * @return the face rectangles in original image coordinates; empty if there are none.
+     */
+    public static Rect[] detectFaces(DecodedImage image) {
+        long start = System.nanoTime();
+        try {
+            return backend.detect(image);
+        } finally {
+            Metrics.FACE_DETECT.observeSince(start);
+        }
+    }
 
-        return faceDetections.toArray().length > 0;
+    /**
+     * Marks the whole image with a border if it contains people, drawing into the
+     * image's shared BGR view instead of writing a marked copy to disk.
+     *
+     * @param faces the result of {@link #detectFaces(DecodedImage)} for this image.
+     * @return true if there were faces and the image was marked.
+     */
+    public static boolean markFaces(DecodedImage image, Rect[] faces) {
+        if (faces.length == 0) {
+            return false;
+        }
+        Mat matImage = image.bgr();
+        Imgproc.rectangle(matImage, new Point(5, 5),
+                new Point(matImage.cols() - 5, matImage.rows() - 5),
+                new Scalar(0, 255, 0), 10);
+        image.markModified();
+        return true;
     }
 
     public static void detectAndSaveFaces(String imagePath) {
         try {
-            File imageFile = new File(imagePath);
-            BufferedImage image = ImageIO.read(imageFile);
+            DecodedImage image = DecodedImage.read(new File(imagePath));
             if (image == null) {
                 System.err.println("❌ Error: Could not load image.");
                 return;
             }
 
-            Mat matImage = bufferedImageToMat(image);
-            if (matImage.empty()) {
-                System.err.println("❌ Error: Mat is empty after conversion!");
-                return;
-            }
-
-            MatOfRect faceDetections = new MatOfRect();
-            faceDetector.detectMultiScale(matImage, faceDetections);
-            Rect[] facesArray = faceDetections.toArray();
-
-            if (facesArray.length > 0) {
-                // **Mark entire image with a red border** if people are present.
-                Imgproc.rectangle(matImage, new Point(5, 5), 
-                        new Point(matImage.cols() - 5, matImage.rows() - 5), 
-                        new Scalar(0, 255, 0), 10); 
-
-                // Save the marked image.
-                String outputPath = imagePath.replace(".jpg", "_marked.jpg");
-                ImageIO.write(matToBufferedImage(matImage), "jpg", new File(outputPath));
-                System.out.println("✅ Saved marked image: " + outputPath);
-            } else {
-                System.out.println("🚫 No people detected in: " + imagePath);
+            try {
+                // **Mark entire image with a border** if people are present.
+                if (markFaces(image, detectFaces(image))) {
+                    // Save the marked image.
+                    String outputPath = imagePath.replace(".jpg", "_marked.jpg");
+                    ImageIO.write(image.current(), "jpg", new File(outputPath));
+                    System.out.println("✅ Saved marked image: " + outputPath);
+                } else {
+                    System.out.println("🚫 No people detected in: " + imagePath);
+                }
+            } finally {
+                image.release();
             }
         } catch (Exception e) {
             System.err.println("❌ Error processing image: " + e.getMessage());
@@ -86,22 +130,6 @@ public class FaceDetector {
         }
     }
 
-    private static Mat bufferedImageToMat(BufferedImage bi) {
-        Mat mat = new Mat(bi.getHeight(), bi.getWidth(), CvType.CV_8UC3);
-        byte[] data = ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
-        mat.put(0, 0, data);
-        return mat;
-    }
-
-    private static BufferedImage matToBufferedImage(Mat mat) {
-        Mat matRgb = new Mat();
-        Imgproc.cvtColor(mat, matRgb, Imgproc.COLOR_BGR2RGB);
-        BufferedImage image = new BufferedImage(matRgb.width(), matRgb.height(), BufferedImage.TYPE_3BYTE_BGR);
-        byte[] data = new byte[matRgb.width() * matRgb.height() * matRgb.channels()];
-        matRgb.get(0, 0, data);
-        image.getRaster().setDataElements(0, 0, matRgb.width(), matRgb.height(), data);
-        return image;
-    }
     public static void main(String[] args) {
     if (args.length == 0) {
         System.err.println("❌ Please provide an image path as an argument.");
@@ -0,0 +1,21 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.opencv.core.Rect;
+
+/**
+ * A face detection implementation used by {@link FaceDetector}. The backend is chosen per
+ * deployment with {@code -Dimagefinder.faces.backend=haar|dnn}.
+ *
+ * Implementations must be safe to call from every image pipeline thread at once.
+ */
+public interface FaceDetectorBackend {
+
+    String name();
+
+    /**
+     * Finds the faces in one image.
+     *
+     * @return the face rectangles in original image coordinates; empty if there are none.
+     */
+    Rect[] detect(DecodedImage image);
+}
@@ -23,7 +23,27 @@ public class FaviconExtractor {
         try {
             // Fetch HTML content
             Document doc = Jsoup.connect(pageUrl).get();
+            return extractFaviconUrl(pageUrl, doc);
+        } catch (Exception e) {
+            System.out.println("🚫 No favicon found for: " + pageUrl);
+        }
+        return null;
+    }
+
+    /**
+     * Same as {@link #extractFaviconUrl(String)}, but reads the favicon link from a page
+     * that has already been fetched instead of downloading it again.
+     */
+    public static String extractFaviconUrl(String pageUrl, Document doc) {
+        return extractFaviconUrl(pageUrl, doc, null);
+    }
 
+    /**
+     * Same as {@link #extractFaviconUrl(String, Document)}, but probes the fallback
+     * {@code /favicon.ico} through the given fetcher. A null fetcher probes directly.
+     */
+    public static String extractFaviconUrl(String pageUrl, Document doc, HttpFetcher fetcher) {
+        try {
             // Look for <link rel="icon"> or <link rel="shortcut icon">
             Element faviconElement = doc.select("link[rel=icon], link[rel='shortcut icon']").first();
             if (faviconElement != null) {
@@ -42,7 +62,7 @@ public class FaviconExtractor {
             // If no favicon is found in HTML, fallback to /favicon.ico
             URL baseUrl = new URL(pageUrl);
             String defaultFaviconUrl = baseUrl.getProtocol() + "://" + baseUrl.getHost() + "/favicon.ico";
-            if (isValidFavicon(defaultFaviconUrl)) {
+            if (isValidFavicon(defaultFaviconUrl, fetcher)) {
                 System.out.println("✅ Using fallback favicon: " + defaultFaviconUrl);
                 return defaultFaviconUrl;
             }
@@ -54,6 +74,15 @@ public class FaviconExtractor {
     }
 
     public static File downloadFavicon(String faviconUrl) {
+        return downloadFavicon(faviconUrl, null);
+    }
+
+    /**
+     * Same as {@link #downloadFavicon(String)}, but downloads through the given HTTP cache.
+     * A null cache downloads directly.
+     */
+    public static File downloadFavicon(String faviconUrl, HttpCache httpCache) {
+        long start = System.nanoTime();
         try {
             URL url = new URL(faviconUrl);
             File faviconDir = new File(FAVICON_DIR);
@@ -74,10 +103,11 @@ public class FaviconExtractor {
             }
 
             // **Download the favicon**
-            try (InputStream in = url.openStream()) {
+            try (InputStream in = httpCache != null ? httpCache.fetch(faviconUrl).openStream() : url.openStream()) {
                 Files.copy(in, destinationFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
 
+            Metrics.FAVICON.observeSince(start);
             System.out.println("✅ Favicon downloaded: " + destinationFile.getAbsolutePath());
 
             // **Convert .ico to .png if needed**
@@ -90,14 +120,20 @@ public class FaviconExtractor {
 
             return destinationFile;
         } catch (Exception e) {
+            Metrics.FAVICON_ERRORS.inc();
             System.err.println("❌ Error downloading favicon: " + e.getMessage());
             return null;
         }
     }
 
     // **Check if favicon URL is valid**
-    private static boolean isValidFavicon(String faviconUrl) {
+    private static boolean isValidFavicon(String faviconUrl, HttpFetcher fetcher) {
         try {
+            if (fetcher != null) {
+                int responseCode = HttpFetcher.join(fetcher.head(faviconUrl)).statusCode;
+                return (responseCode >= 200 && responseCode < 400);
+            }
+
             HttpURLConnection connection = (HttpURLConnection) new URL(faviconUrl).openConnection();
             connection.setRequestMethod("HEAD");
             connection.setConnectTimeout(3000);
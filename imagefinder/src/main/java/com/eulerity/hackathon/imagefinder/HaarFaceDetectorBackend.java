@@ -0,0 +1,91 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfRect;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.CascadeClassifier;
+
+/**
+ * Haar cascade face detection.
+ *
+ * {@code CascadeClassifier} is not safe for concurrent use, so every thread gets its own
+ * instance. Detection runs once per image on a grayscale copy whose longer side is capped at
+ * {@code imagefinder.faces.maxSide} pixels (default 640), and the rectangles are mapped back
+ * to the original resolution.
+ */
+public class HaarFaceDetectorBackend implements FaceDetectorBackend {
+    public static final int MAX_DETECTION_SIDE = Integer.getInteger("imagefinder.faces.maxSide", 640);
+    /** Smallest face searched for, in original pixels. */
+    private static final int MIN_FACE_SIZE = 30;
+    /** The cascade's training window; smaller faces cannot be found in the detection copy. */
+    private static final int MIN_WINDOW = 20;
+
+    private final ThreadLocal<CascadeClassifier> classifier;
+
+    public HaarFaceDetectorBackend(String classifierPath) {
+        this.classifier = ThreadLocal.withInitial(() -> {
+            CascadeClassifier loaded = new CascadeClassifier(classifierPath);
+            if (loaded.empty()) {
+                System.err.println("❌ Failed to load Haar Cascade classifier from: " + classifierPath);
+            }
+            return loaded;
+        });
+        if (!classifier.get().empty()) {
+            System.out.println("✅ Successfully loaded Haar Cascade classifier.");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "haar";
+    }
+
+    @Override
+    public Rect[] detect(DecodedImage image) {
+        Mat gray = image.gray();
+        double scale = detectionScale(gray.cols(), gray.rows(), MAX_DETECTION_SIDE);
+        try (MatScope scope = new MatScope()) {
+            Mat small = gray;
+            if (scale < 1) {
+                small = scope.mat(Math.max(1, (int) Math.round(gray.rows() * scale)),
+                        Math.max(1, (int) Math.round(gray.cols() * scale)), gray.type());
+                Imgproc.resize(gray, small, small.size(), 0, 0, Imgproc.INTER_AREA);
+            }
+
+            MatOfRect faceDetections = scope.track(new MatOfRect());
+            int minSize = Math.max(MIN_WINDOW, (int) Math.round(MIN_FACE_SIZE * scale));
+            classifier.get().detectMultiScale(small, faceDetections, 1.1, 3, 0,
+                    new Size(minSize, minSize), new Size());
+            Rect[] faces = faceDetections.toArray();
+            for (int i = 0; i < faces.length; i++) {
+                faces[i] = toOriginal(faces[i], scale, gray.cols(), gray.rows());
+            }
+            return faces;
+        }
+    }
+
+    /**
+     * Factor that shrinks an image so its longer side is at most {@code maxSide}; 1 if it
+     * already fits.
+     */
+    static double detectionScale(int width, int height, int maxSide) {
+        int longest = Math.max(width, height);
+        return longest <= maxSide ? 1.0 : (double) maxSide / longest;
+    }
+
+    /**
+     * Maps a rectangle found in the scaled detection copy back to the original image.
+     */
+    static Rect toOriginal(Rect rect, double scale, int width, int height) {
+        if (scale == 1) {
+            return rect;
+        }
+        int x = (int) Math.floor(rect.x / scale);
+        int y = (int) Math.floor(rect.y / scale);
+        int w = Math.min(width - x, (int) Math.ceil(rect.width / scale));
+        int h = Math.min(height - y, (int) Math.ceil(rect.height / scale));
+        return new Rect(x, y, w, h);
+    }
+}
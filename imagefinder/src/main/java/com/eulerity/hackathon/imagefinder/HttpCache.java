@@ -0,0 +1,480 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Persistent HTTP cache for pages and images, shared by every crawl.
+ *
+ * Successful responses are stored on disk with their {@code ETag}, {@code Last-Modified}
+ * and {@code Cache-Control} headers. A fresh entry is served without touching the network;
+ * a stale one is revalidated with {@code If-None-Match} / {@code If-Modified-Since}, and a
+ * 304 answer is served from the stored bytes, or fetched again in full if they have been
+ * deleted meanwhile. The total size of stored bodies is bounded;
+ * the least recently used entries are deleted first. Entries survive restarts.
+ * Entries are keyed by the exact URL requested, so only the fragment is ignored.
+ * Network requests go through the engine's {@link HttpFetcher}, which the cache does not own.
+ */
+public class HttpCache {
+    public static final File DEFAULT_DIR = new File(System.getProperty("imagefinder.httpCache.dir",
+            new File(System.getProperty("java.io.tmpdir"), "imagefinder-http-cache").getPath()));
+    public static final long DEFAULT_MAX_BYTES = Long.getLong("imagefinder.httpCache.maxBytes", 256L * 1024 * 1024);
+
+    /** Where a response came from. */
+    public enum Source {
+        /** Fetched in full from the server. */
+        NETWORK,
+        /** Served from disk without contacting the server. */
+        CACHE,
+        /** Served from disk after the server answered 304 Not Modified. */
+        REVALIDATED
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    private final HttpFetcher fetcher;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // guarded by this
+    private long totalBytes; // guarded by this
+    private long hits;
+    private long revalidations;
+    private long misses;
+    private long evictions;
+
+    public HttpCache(HttpFetcher fetcher) {
+        this(DEFAULT_DIR, DEFAULT_MAX_BYTES, fetcher);
+    }
+
+    /**
+     * @param fetcher the engine's fetch layer; network requests go through its per-host scheduling.
+     */
+    public HttpCache(File dir, long maxBytes, HttpFetcher fetcher) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.fetcher = fetcher;
+        loadIndex();
+    }
+
+    /**
+     * Fetches a URL through the cache and waits for the response. Error responses are
+     * returned too but never stored.
+     */
+    public Response fetch(String url) throws IOException {
+        return HttpFetcher.join(fetchAsync(url));
+    }
+
+    /**
+     * Same as {@link #fetch(String)}, without blocking: fresh entries complete at once and
+     * everything else completes when the fetcher has the response.
+     */
+    public CompletableFuture<Response> fetchAsync(String url) {
+        String key = keyFor(url);
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        long now = System.currentTimeMillis();
+
+        if (cached != null && cached.isFresh(now)) {
+            byte[] body = readBody(cached);
+            if (body != null) {
+                synchronized (this) {
+                    hits++;
+                }
+                return CompletableFuture.completedFuture(
+                        new Response(url, cached.finalUrl, cached.statusCode, cached.contentType, body, Source.CACHE));
+            }
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null) {
+            if (cached.etag != null) {
+                headers.put("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                headers.put("If-Modified-Since", cached.lastModified);
+            }
+        }
+        return fetcher.fetch(url, "GET", headers).thenCompose(response -> handle(url, key, cached, response, now));
+    }
+
+    private CompletableFuture<Response> handle(String url, String key, Entry cached, HttpFetcher.Response response,
+                                               long now) {
+        if (response.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            byte[] body = readBody(cached);
+            if (body != null) {
+                Entry refreshed = cached.revalidated(response, now);
+                try {
+                    writeMeta(refreshed);
+                } catch (IOException e) {
+                    System.err.println("⚠️ Could not update cache entry of " + url + ": " + e.getMessage());
+                }
+                synchronized (this) {
+                    revalidations++;
+                    if (entries.containsKey(key)) {
+                        entries.put(key, refreshed);
+                    }
+                }
+                return CompletableFuture.completedFuture(new Response(url, response.finalUrl, cached.statusCode,
+                        cached.contentType, body, Source.REVALIDATED));
+            }
+            // The stored body is gone, so the 304 has nothing to refer to: ask again without validators.
+            return fetcher.fetch(url, "GET", Collections.emptyMap()).thenApply(full -> miss(url, key, full, now));
+        }
+        return CompletableFuture.completedFuture(miss(url, key, response, now));
+    }
+
+    private Response miss(String url, String key, HttpFetcher.Response response, long now) {
+        int status = response.statusCode;
+        synchronized (this) {
+            misses++;
+        }
+        Entry entry = Entry.fromResponse(key, url, response, now);
+        if (status == HttpURLConnection.HTTP_OK && entry.isStorable() && response.body.length <= maxBytes) {
+            store(entry, response.body);
+        }
+        return new Response(url, response.finalUrl, status, response.contentType, response.body, Source.NETWORK);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), totalBytes, maxBytes, hits, revalidations, misses, evictions);
+    }
+
+    private void store(Entry entry, byte[] body) {
+        try {
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            File tmp = File.createTempFile(entry.key + "-", ".tmp", dir);
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(body);
+            }
+            synchronized (this) {
+                moveIntoPlace(tmp, bodyFile(entry.key));
+                writeMeta(entry);
+                Entry previous = entries.put(entry.key, entry);
+                totalBytes += entry.size - (previous == null ? 0 : previous.size);
+                evictIfNeeded();
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not cache " + entry.url + ": " + e.getMessage());
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.size;
+            bodyFile(entry.key).delete();
+            metaFile(entry.key).delete();
+            evictions++;
+        }
+    }
+
+    private byte[] readBody(Entry entry) {
+        File body = bodyFile(entry.key);
+        try {
+            byte[] bytes = Files.readAllBytes(body.toPath());
+            body.setLastModified(System.currentTimeMillis()); // recency survives restarts
+            return bytes;
+        } catch (IOException e) {
+            // Deleted behind our back; forget the entry and go to the network.
+            synchronized (this) {
+                if (entries.remove(entry.key) != null) {
+                    totalBytes -= entry.size;
+                    metaFile(entry.key).delete();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Rebuilds the in-memory index from the metadata files, oldest access first.
+     */
+    private void loadIndex() {
+        File[] metaFiles = dir.listFiles((d, name) -> name.endsWith(".meta"));
+        if (metaFiles == null) {
+            return;
+        }
+        List<Entry> loaded = new ArrayList<>();
+        for (File metaFile : metaFiles) {
+            Properties meta = new Properties();
+            try (InputStream in = new FileInputStream(metaFile)) {
+                meta.load(in);
+                Entry entry = Entry.fromProperties(meta);
+                if (bodyFile(entry.key).exists()) {
+                    loaded.add(entry);
+                    continue;
+                }
+            } catch (IOException | RuntimeException e) {
+                // Unreadable or partial entry; drop it below.
+            }
+            metaFile.delete();
+        }
+        loaded.sort((a, b) -> Long.compare(bodyFile(a.key).lastModified(), bodyFile(b.key).lastModified()));
+        synchronized (this) {
+            for (Entry entry : loaded) {
+                entries.put(entry.key, entry);
+                totalBytes += entry.size;
+            }
+            evictIfNeeded();
+        }
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+        File tmp = File.createTempFile(entry.key + "-", ".tmp", dir);
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            entry.toProperties().store(out, null);
+        }
+        moveIntoPlace(tmp, metaFile(entry.key));
+    }
+
+    private File bodyFile(String key) {
+        return new File(dir, key + ".body");
+    }
+
+    private File metaFile(String key) {
+        return new File(dir, key + ".meta");
+    }
+
+    private static void moveIntoPlace(File tmp, File target) throws IOException {
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Cache key of a URL: the SHA-1 of the URL as requested, without its fragment, which is
+     * never sent to the server. Spellings a canonicalizer would merge (query order, tracking
+     * parameters, a trailing slash) may name different resources, so they keep their own
+     * entries and validators.
+     */
+    private static String keyFor(String url) {
+        int hash = url.indexOf('#');
+        String requested = hash < 0 ? url : url.substring(0, hash);
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            return ImageBlobStore.toHex(md.digest(requested.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stored response metadata. Freshness follows {@code Cache-Control: max-age}, falling
+     * back to {@code Expires}; entries without either are revalidated on every use.
+     */
+    private static class Entry {
+        final String key;
+        final String url;
+        final String finalUrl;
+        final int statusCode;
+        final String contentType;
+        final String etag;
+        final String lastModified;
+        final long storedAt;
+        final long freshUntil;
+        final boolean noStore;
+        final long size;
+
+        Entry(String key, String url, String finalUrl, int statusCode, String contentType, String etag,
+              String lastModified, long storedAt, long freshUntil, boolean noStore, long size) {
+            this.key = key;
+            this.url = url;
+            this.finalUrl = finalUrl;
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+            this.freshUntil = freshUntil;
+            this.noStore = noStore;
+            this.size = size;
+        }
+
+        static Entry fromResponse(String key, String url, HttpFetcher.Response response, long now) {
+            CacheControl cacheControl = CacheControl.parse(response.header("Cache-Control"));
+            return new Entry(key, url, response.finalUrl, response.statusCode, response.contentType,
+                    response.header("ETag"), response.header("Last-Modified"),
+                    now, freshUntil(cacheControl, response, now), cacheControl.noStore, response.body.length);
+        }
+
+        /**
+         * The same entry after a 304; the server may send updated validators and lifetime.
+         */
+        Entry revalidated(HttpFetcher.Response response, long now) {
+            String newEtag = response.header("ETag");
+            String newLastModified = response.header("Last-Modified");
+            CacheControl cacheControl = CacheControl.parse(response.header("Cache-Control"));
+            return new Entry(key, url, response.finalUrl, statusCode, contentType,
+                    newEtag != null ? newEtag : etag,
+                    newLastModified != null ? newLastModified : lastModified,
+                    now, freshUntil(cacheControl, response, now), noStore, size);
+        }
+
+        private static long freshUntil(CacheControl cacheControl, HttpFetcher.Response response, long now) {
+            if (cacheControl.noCache) {
+                return 0;
+            }
+            if (cacheControl.maxAgeSeconds >= 0) {
+                return now + cacheControl.maxAgeSeconds * 1000;
+            }
+            long expires = response.dateHeader("Expires");
+            long date = response.dateHeader("Date");
+            if (expires > 0) {
+                return now + Math.max(0, expires - (date > 0 ? date : now));
+            }
+            return 0;
+        }
+
+        boolean isFresh(long now) {
+            return now < freshUntil;
+        }
+
+        /** Only keep responses that can be reused without a full download. */
+        boolean isStorable() {
+            return !noStore && (etag != null || lastModified != null || freshUntil > storedAt);
+        }
+
+        Properties toProperties() {
+            Properties p = new Properties();
+            p.setProperty("key", key);
+            p.setProperty("url", url);
+            p.setProperty("finalUrl", finalUrl);
+            p.setProperty("status", Integer.toString(statusCode));
+            if (contentType != null) p.setProperty("contentType", contentType);
+            if (etag != null) p.setProperty("etag", etag);
+            if (lastModified != null) p.setProperty("lastModified", lastModified);
+            p.setProperty("storedAt", Long.toString(storedAt));
+            p.setProperty("freshUntil", Long.toString(freshUntil));
+            p.setProperty("size", Long.toString(size));
+            return p;
+        }
+
+        static Entry fromProperties(Properties p) {
+            return new Entry(p.getProperty("key"), p.getProperty("url"),
+                    p.getProperty("finalUrl", p.getProperty("url")),
+                    Integer.parseInt(p.getProperty("status")), p.getProperty("contentType"),
+                    p.getProperty("etag"), p.getProperty("lastModified"),
+                    Long.parseLong(p.getProperty("storedAt")), Long.parseLong(p.getProperty("freshUntil")),
+                    false, Long.parseLong(p.getProperty("size")));
+        }
+    }
+
+    /**
+     * The {@code Cache-Control} directives the cache acts on. Stale entries are always
+     * revalidated, so {@code must-revalidate} needs no special handling.
+     */
+    private static class CacheControl {
+        boolean noStore;
+        boolean noCache;
+        long maxAgeSeconds = -1;
+
+        static CacheControl parse(String header) {
+            CacheControl cc = new CacheControl();
+            if (header == null) {
+                return cc;
+            }
+            for (String directive : header.toLowerCase(Locale.ROOT).split(",")) {
+                String d = directive.trim();
+                if (d.equals("no-store")) {
+                    cc.noStore = true;
+                } else if (d.equals("no-cache")) {
+                    cc.noCache = true;
+                } else if (d.startsWith("max-age=")) {
+                    try {
+                        cc.maxAgeSeconds = Long.parseLong(d.substring("max-age=".length()).replace("\"", ""));
+                    } catch (NumberFormatException e) {
+                        cc.maxAgeSeconds = 0;
+                    }
+                }
+            }
+            return cc;
+        }
+    }
+
+    /**
+     * A response served by the cache or the network.
+     */
+    public static class Response {
+        public final String url;
+        /** The URL the body was served from, after following redirects. */
+        public final String finalUrl;
+        public final int statusCode;
+        public final String contentType;
+        public final byte[] body;
+        public final Source source;
+
+        Response(String url, String finalUrl, int statusCode, String contentType, byte[] body, Source source) {
+            this.url = url;
+            this.finalUrl = finalUrl;
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.body = body;
+            this.source = source;
+        }
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        /**
+         * The body, or an IOException for error responses, mirroring {@code URL.openStream()}.
+         */
+        public InputStream openStream() throws IOException {
+            if (!isSuccessful()) {
+                throw new IOException("Server returned HTTP response code: " + statusCode + " for URL: " + url);
+            }
+            return new ByteArrayInputStream(body);
+        }
+    }
+
+    /**
+     * Point-in-time counters of the cache.
+     */
+    public static class Stats {
+        public final int entries;
+        public final long bytes;
+        public final long maxBytes;
+        public final long hits;
+        public final long revalidations;
+        public final long misses;
+        public final long evictions;
+
+        Stats(int entries, long bytes, long maxBytes, long hits, long revalidations, long misses, long evictions) {
+            this.entries = entries;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+            this.hits = hits;
+            this.revalidations = revalidations;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+    }
+}
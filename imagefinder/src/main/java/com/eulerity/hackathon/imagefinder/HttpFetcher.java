@@ -0,0 +1,810 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared HTTP client for every page, image, favicon and robots.txt request of the engine.
+ *
+ * Requests wait in a queue per host and are sent only when the host has a free connection
+ * slot and a token in its rate bucket. A slow or throttling host therefore waits in its own
+ * queue, and requests to different hosts interleave freely.
+ *
+ * Each host's concurrency adapts (AIMD): it grows by about one slot per round of healthy
+ * responses and halves on 429/503 answers, network errors or responses slower than
+ * {@code slowMillis}. A 429/503 also halves the host's rate, pauses it for
+ * {@code Retry-After} and retries the request. Before the first request to a host its
+ * robots.txt is fetched; {@code Crawl-delay} caps the host's rate.
+ *
+ * Requests are sent with {@link HttpClient#sendAsync}, which keeps connections alive for
+ * reuse and reads bodies without holding a thread, so a few IO threads keep as many requests
+ * in flight as the host limits allow. The IO threads only run the client's callbacks, DNS
+ * lookups and the completion of each request; the timer wakes paused hosts and ends bodies
+ * that take longer than {@code readTimeoutMs}. A host that does not resolve fails its queued
+ * requests at once, for {@code dnsTtlSeconds}, instead of timing each one out.
+ */
+public class HttpFetcher {
+    public static final int DEFAULT_IO_THREADS = Integer.getInteger("imagefinder.fetch.ioThreads", 8);
+    public static final int DEFAULT_MAX_PER_HOST = Integer.getInteger("imagefinder.fetch.maxPerHost", 6);
+    public static final double DEFAULT_HOST_RATE = Double.parseDouble(System.getProperty("imagefinder.fetch.hostRate", "8"));
+    public static final boolean DEFAULT_RESPECT_ROBOTS = Boolean.parseBoolean(System.getProperty("imagefinder.fetch.robots", "true"));
+
+    private static final int CONNECT_TIMEOUT_MS = Integer.getInteger("imagefinder.fetch.connectTimeoutMs", 10000);
+    private static final int READ_TIMEOUT_MS = Integer.getInteger("imagefinder.fetch.readTimeoutMs", 15000);
+    private static final long SLOW_MILLIS = Long.getLong("imagefinder.fetch.slowMillis", 3000);
+    private static final int MAX_RETRIES = Integer.getInteger("imagefinder.fetch.maxRetries", 2);
+    private static final long MAX_BODY_BYTES = Long.getLong("imagefinder.fetch.maxBodyBytes", 32L * 1024 * 1024);
+    private static final int DNS_TTL_SECONDS = Integer.getInteger("imagefinder.fetch.dnsTtlSeconds", 300);
+    private static final String ROBOTS_AGENT = System.getProperty("imagefinder.fetch.robotsAgent", "imagefinder");
+    private static final long DEFAULT_RETRY_AFTER_MS = 5000;
+    private static final long MAX_RETRY_AFTER_MS = 120000;
+    private static final long IDLE_HOST_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    /**
+     * Caches resolved addresses for {@code imagefinder.fetch.dnsTtlSeconds}, unless
+     * {@code networkaddress.cache.ttl} is already set. The JDK reads it once, so
+     * {@link CrawlEngineListener} calls this at startup, before the first request.
+     */
+    public static void configureJvm() {
+        if (Security.getProperty("networkaddress.cache.ttl") == null) {
+            Security.setProperty("networkaddress.cache.ttl", Integer.toString(DNS_TTL_SECONDS));
+        }
+    }
+
+    private final ThreadPoolExecutor io;
+    private final ScheduledThreadPoolExecutor timer;
+    private final HttpClient client;
+    private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private final int maxPerHost;
+    private final double hostRate;
+    private final boolean respectRobots;
+    private volatile boolean running = true;
+    private volatile long lastSweep = System.nanoTime();
+
+    public HttpFetcher() {
+        this(DEFAULT_IO_THREADS, DEFAULT_MAX_PER_HOST, DEFAULT_HOST_RATE, DEFAULT_RESPECT_ROBOTS);
+    }
+
+    /**
+     * @param ioThreads     threads that run the HTTP client's callbacks, shared by all hosts.
+     * @param maxPerHost    upper bound of concurrent requests to one host.
+     * @param hostRate      requests per second allowed to one host, before Crawl-delay.
+     * @param respectRobots whether to fetch robots.txt and apply its Crawl-delay.
+     */
+    public HttpFetcher(int ioThreads, int maxPerHost, double hostRate, boolean respectRobots) {
+        this.maxPerHost = maxPerHost;
+        this.hostRate = hostRate;
+        this.respectRobots = respectRobots;
+        this.io = new ThreadPoolExecutor(ioThreads, ioThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("fetch-io-"));
+        this.io.allowCoreThreadTimeOut(true);
+        this.timer = new ScheduledThreadPoolExecutor(1, daemonThreads("fetch-timer-"));
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(CONNECT_TIMEOUT_MS))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(io)
+                .build();
+    }
+
+    /** Fetches a URL with GET. */
+    public CompletableFuture<Response> get(String url) {
+        return fetch(url, "GET", Collections.emptyMap());
+    }
+
+    /** Fetches only the headers of a URL. */
+    public CompletableFuture<Response> head(String url) {
+        return fetch(url, "HEAD", Collections.emptyMap());
+    }
+
+    /**
+     * Queues a request on its host. The future completes with any HTTP response, including
+     * errors, and fails only if no response could be read.
+     */
+    public CompletableFuture<Response> fetch(String url, String method, Map<String, String> headers) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        Host host;
+        try {
+            host = host(url);
+        } catch (MalformedURLException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        if (!running) {
+            result.completeExceptionally(new RejectedExecutionException("HTTP fetcher is shut down."));
+            return result;
+        }
+        synchronized (host) {
+            host.queue.addLast(new Task(url, method, headers, result));
+            host.lastUsed = System.nanoTime();
+        }
+        dispatch(host);
+        sweepIdleHosts();
+        return result;
+    }
+
+    /**
+     * Whether robots.txt of the URL's host allows crawling it. Always true when robots.txt
+     * is not respected or could not be read.
+     */
+    public CompletableFuture<Boolean> isAllowed(String url) {
+        if (!respectRobots) {
+            return CompletableFuture.completedFuture(true);
+        }
+        try {
+            URL parsed = new URL(url);
+            String path = parsed.getFile().isEmpty() ? "/" : parsed.getFile();
+            return host(url).robots.thenApply(robots -> robots.isAllowed(path));
+        } catch (MalformedURLException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /**
+     * Waits for a future of this fetcher and rethrows its failure as an IOException.
+     */
+    public static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * The original failure behind a {@link CompletionException}, {@link ExecutionException}
+     * or {@link UncheckedIOException}.
+     */
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException
+                || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    public Stats stats() {
+        List<HostStats> hostStats = new ArrayList<>();
+        int queued = 0;
+        int inFlight = 0;
+        long requests = 0;
+        long throttled = 0;
+        long errors = 0;
+        long retries = 0;
+        for (Host host : hosts.values()) {
+            synchronized (host) {
+                queued += host.queue.size();
+                inFlight += host.active;
+                requests += host.requests;
+                throttled += host.throttled;
+                errors += host.errors;
+                retries += host.retries;
+                hostStats.add(new HostStats(host.key, host.limit, host.active, host.queue.size(), host.rate,
+                        host.crawlDelaySeconds, host.avgLatencyMillis, host.requests, host.throttled, host.errors,
+                        Math.max(0, TimeUnit.NANOSECONDS.toMillis(host.pausedUntil - System.nanoTime()))));
+            }
+        }
+        hostStats.sort((a, b) -> Long.compare(b.requests, a.requests));
+        return new Stats(io.getMaximumPoolSize(), inFlight, hosts.size(), queued, requests, throttled, errors,
+                retries, hostStats);
+    }
+
+    /**
+     * Stops taking requests and fails the ones still queued. Exchanges in progress finish on
+     * the IO threads, which then time out.
+     */
+    public void shutdown() {
+        running = false;
+        for (Host host : hosts.values()) {
+            failQueued(host, new RejectedExecutionException("HTTP fetcher is shut down."));
+        }
+        timer.shutdownNow();
+    }
+
+    private Host host(String url) throws MalformedURLException {
+        URL parsed = new URL(url);
+        String protocol = parsed.getProtocol().toLowerCase(Locale.ROOT);
+        int port = parsed.getPort() == -1 ? parsed.getDefaultPort() : parsed.getPort();
+        String key = protocol + "://" + parsed.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+        Host host = hosts.get(key);
+        if (host != null) {
+            return host;
+        }
+        Host created = new Host(key);
+        host = hosts.putIfAbsent(key, created);
+        if (host != null) {
+            return host;
+        }
+        if (respectRobots) {
+            loadRobots(created);
+        } else {
+            created.robots.complete(RobotsTxt.ALLOW_ALL);
+        }
+        return created;
+    }
+
+    /**
+     * Fetches a new host's robots.txt ahead of its queue; nothing else is sent to the host
+     * until it has been read.
+     */
+    private void loadRobots(Host host) {
+        send(host.key + "/robots.txt", "GET", Collections.emptyMap()).whenCompleteAsync((response, error) -> {
+            RobotsTxt robots = RobotsTxt.ALLOW_ALL;
+            if (error != null) {
+                IOException failure = failure(error, host);
+                if (failure instanceof UnknownHostException) {
+                    synchronized (host) {
+                        host.unreachable = failure;
+                        host.unreachableUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(DNS_TTL_SECONDS);
+                    }
+                }
+                // Otherwise there is no usable robots.txt: everything is allowed.
+            } else if (response.isSuccessful()) {
+                robots = RobotsTxt.parse(new String(response.body, StandardCharsets.UTF_8), ROBOTS_AGENT);
+            }
+            double delay = robots.getCrawlDelaySeconds();
+            if (delay > 0) {
+                synchronized (host) {
+                    host.crawlDelaySeconds = delay;
+                    host.maxRate = Math.min(host.maxRate, 1 / delay);
+                    host.rate = host.maxRate;
+                    host.tokens = Math.min(host.tokens, 1);
+                }
+                System.out.println("🤖 " + host.key + " asks for a crawl delay of " + delay + "s.");
+            }
+            host.robots.complete(robots);
+            dispatch(host);
+        }, io);
+    }
+
+    /**
+     * Starts as many queued requests of a host as its slots and tokens allow, and schedules
+     * a wake-up when it has to wait for a token or a pause to end.
+     */
+    private void dispatch(Host host) {
+        if (!host.robots.isDone()) {
+            return;
+        }
+        List<Task> ready = new ArrayList<>();
+        IOException unreachable = null;
+        synchronized (host) {
+            long now = System.nanoTime();
+            if (host.unreachable != null) {
+                if (now < host.unreachableUntil) {
+                    unreachable = host.unreachable;
+                } else {
+                    host.unreachable = null;
+                }
+            }
+            while (unreachable == null && !host.queue.isEmpty() && host.active < (int) host.limit) {
+                if (now < host.pausedUntil) {
+                    scheduleWakeup(host, host.pausedUntil - now);
+                    break;
+                }
+                host.refill(now);
+                if (host.tokens < 1) {
+                    scheduleWakeup(host, (long) ((1 - host.tokens) / host.rate * 1e9));
+                    break;
+                }
+                host.tokens -= 1;
+                host.active++;
+                ready.add(host.queue.pollFirst());
+            }
+        }
+        if (unreachable != null) {
+            failQueued(host, unreachable);
+            return;
+        }
+        for (Task task : ready) {
+            long start = System.nanoTime();
+            // The outcome is handled on an IO thread, never on the client's selector thread.
+            send(task.url, task.method, task.headers)
+                    .whenCompleteAsync((response, error) -> complete(host, task, start, response, error), io);
+        }
+    }
+
+    private void scheduleWakeup(Host host, long delayNanos) {
+        if (host.wakeupScheduled || !running) {
+            return;
+        }
+        host.wakeupScheduled = true;
+        try {
+            timer.schedule(() -> {
+                synchronized (host) {
+                    host.wakeupScheduled = false;
+                }
+                dispatch(host);
+            }, Math.max(1, delayNanos), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            host.wakeupScheduled = false; // shut down in the meantime
+        }
+    }
+
+    private void complete(Host host, Task task, long start, Response response, Throwable failure) {
+        IOException error = failure == null ? null : failure(failure, host);
+        long now = System.nanoTime();
+        boolean retry = false;
+        synchronized (host) {
+            host.active--;
+            host.requests++;
+            if (error != null) {
+                host.errors++;
+                host.decrease(now);
+                if (error instanceof UnknownHostException) {
+                    host.unreachable = error;
+                    host.unreachableUntil = now + TimeUnit.SECONDS.toNanos(DNS_TTL_SECONDS);
+                }
+            } else if (response.statusCode == 429 || response.statusCode == 503) {
+                host.throttled++;
+                host.decrease(now);
+                host.rate = Math.max(host.maxRate / 16, host.rate / 2);
+                host.pausedUntil = Math.max(host.pausedUntil, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis(response)));
+                if (task.attempt < MAX_RETRIES && running) {
+                    task.attempt++;
+                    host.retries++;
+                    host.queue.addFirst(task);
+                    retry = true;
+                }
+            } else {
+                long millis = TimeUnit.NANOSECONDS.toMillis(now - start);
+                host.avgLatencyMillis = host.avgLatencyMillis < 0 ? millis : host.avgLatencyMillis * 0.8 + millis * 0.2;
+                if (millis > SLOW_MILLIS) {
+                    host.decrease(now);
+                } else {
+                    host.increase();
+                }
+            }
+        }
+        if (!retry) {
+            if (error != null) {
+                task.result.completeExceptionally(error);
+            } else {
+                task.result.complete(response);
+            }
+        }
+        dispatch(host);
+    }
+
+    /**
+     * Sends one request. The future completes once the whole body has arrived; no thread
+     * waits for it in the meantime.
+     */
+    private CompletableFuture<Response> send(String url, String method, Map<String, String> headers) {
+        HttpRequest request;
+        try {
+            URI uri = toUri(url);
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofMillis(READ_TIMEOUT_MS))
+                    .header("User-Agent", PageCache.USER_AGENT);
+            if ("GET".equals(method)) {
+                builder.GET();
+            } else {
+                builder.method(method, HttpRequest.BodyPublishers.noBody());
+            }
+            if ("http".equalsIgnoreCase(uri.getScheme())) {
+                // HTTP/2 only over TLS: plain-text servers are not sent an h2c upgrade.
+                builder.version(HttpClient.Version.HTTP_1_1);
+            }
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+            }
+            request = builder.build();
+        } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+            CompletableFuture<Response> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new MalformedURLException(url + ": " + e.getMessage()));
+            return failed;
+        }
+        HttpResponse.BodyHandler<byte[]> handler = info -> {
+            LimitedBody body = new LimitedBody(url, info.headers().firstValueAsLong("Content-Length").orElse(-1));
+            try {
+                ScheduledFuture<?> deadline = timer.schedule(() -> body.abort(new HttpTimeoutException(
+                        "Body of " + url + " not read within " + READ_TIMEOUT_MS + " ms")), READ_TIMEOUT_MS,
+                        TimeUnit.MILLISECONDS);
+                body.result.whenComplete((bytes, error) -> deadline.cancel(false));
+            } catch (RejectedExecutionException e) {
+                // Shut down: the exchange finishes without a deadline.
+            }
+            return body;
+        };
+        // After redirects uri() is where the response actually came from.
+        return client.sendAsync(request, handler).thenApply(response -> new Response(url, response.uri().toString(),
+                response.statusCode(), response.headers().firstValue("Content-Type").orElse(null),
+                response.headers().map(), response.body()));
+    }
+
+    /**
+     * Parses a URL as the HTTP client needs it, quoting characters such as spaces that pages
+     * leave in their links.
+     */
+    private static URI toUri(String url) throws MalformedURLException, URISyntaxException {
+        try {
+            return new URI(url);
+        } catch (URISyntaxException e) {
+            URL parsed = new URL(url);
+            return new URI(parsed.getProtocol(), parsed.getUserInfo(), parsed.getHost(), parsed.getPort(),
+                    parsed.getPath(), parsed.getQuery(), null);
+        }
+    }
+
+    /**
+     * The failure of a request as an IOException; a host that does not resolve becomes an
+     * {@link UnknownHostException}, which the client reports as a connect error.
+     */
+    private static IOException failure(Throwable error, Host host) {
+        Throwable cause = unwrap(error);
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof UnknownHostException) {
+                return (UnknownHostException) t;
+            }
+            if (t instanceof UnresolvedAddressException) {
+                UnknownHostException unknown = new UnknownHostException(host.key);
+                unknown.initCause(cause);
+                return unknown;
+            }
+        }
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+    }
+
+    private static long retryAfterMillis(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return DEFAULT_RETRY_AFTER_MS;
+        }
+        long millis;
+        try {
+            millis = Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            long date = response.dateHeader("Retry-After");
+            millis = date > 0 ? date - System.currentTimeMillis() : DEFAULT_RETRY_AFTER_MS;
+        }
+        return Math.max(0, Math.min(MAX_RETRY_AFTER_MS, millis));
+    }
+
+    private void failQueued(Host host, Exception error) {
+        List<Task> failed;
+        synchronized (host) {
+            failed = new ArrayList<>(host.queue);
+            host.queue.clear();
+        }
+        for (Task task : failed) {
+            task.result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Forgets hosts that have been idle for a while, so crawling many image CDNs does not
+     * grow the map forever. Their robots.txt is fetched again on the next request.
+     */
+    private void sweepIdleHosts() {
+        long now = System.nanoTime();
+        if (now - lastSweep < TimeUnit.MINUTES.toNanos(1)) {
+            return;
+        }
+        lastSweep = now;
+        Iterator<Host> it = hosts.values().iterator();
+        while (it.hasNext()) {
+            Host host = it.next();
+            synchronized (host) {
+                if (host.active == 0 && host.queue.isEmpty() && now - host.lastUsed > IDLE_HOST_NANOS) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Collects a response body as it arrives, failing once it exceeds {@code maxBodyBytes}
+     * or when {@link #abort} is called.
+     */
+    private static final class LimitedBody implements HttpResponse.BodySubscriber<byte[]> {
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private final String url;
+        private final long declaredLength;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private long size;
+        private volatile Flow.Subscription subscription;
+
+        LimitedBody(String url, long declaredLength) {
+            this.url = url;
+            this.declaredLength = declaredLength;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (declaredLength > MAX_BODY_BYTES) {
+                abort(tooLarge());
+            } else if (result.isDone()) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (result.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                size += item.remaining();
+                buffers.add(item);
+            }
+            if (size > MAX_BODY_BYTES) {
+                abort(tooLarge());
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            byte[] body = new byte[(int) size];
+            int offset = 0;
+            for (ByteBuffer buffer : buffers) {
+                int length = buffer.remaining();
+                buffer.get(body, offset, length);
+                offset += length;
+            }
+            buffers.clear();
+            result.complete(body);
+        }
+
+        void abort(IOException error) {
+            if (result.completeExceptionally(error)) {
+                Flow.Subscription current = subscription;
+                if (current != null) {
+                    current.cancel();
+                }
+            }
+        }
+
+        private IOException tooLarge() {
+            return new IOException("Response body of " + url + " exceeds " + MAX_BODY_BYTES + " bytes");
+        }
+    }
+
+    /**
+     * Scheduling state of one host (scheme, name and port). Guarded by itself.
+     */
+    private final class Host {
+        final String key;
+        final ArrayDeque<Task> queue = new ArrayDeque<>();
+        final CompletableFuture<RobotsTxt> robots = new CompletableFuture<>();
+        double limit = Math.min(2, maxPerHost);
+        int active;
+        double maxRate = hostRate;
+        double rate = hostRate;
+        double tokens = Math.max(1, hostRate);
+        long refilledAt = System.nanoTime();
+        long pausedUntil;
+        long lastDecrease;
+        long lastUsed = System.nanoTime();
+        boolean wakeupScheduled;
+        double crawlDelaySeconds = -1;
+        double avgLatencyMillis = -1;
+        IOException unreachable;
+        long unreachableUntil;
+        long requests;
+        long throttled;
+        long errors;
+        long retries;
+
+        Host(String key) {
+            this.key = key;
+        }
+
+        /** Adds the tokens earned since the last refill. A Crawl-delay allows no bursts. */
+        void refill(long now) {
+            double capacity = crawlDelaySeconds > 0 ? 1 : Math.max(1, rate);
+            tokens = Math.min(capacity, tokens + (now - refilledAt) / 1e9 * rate);
+            refilledAt = now;
+        }
+
+        /** Additive increase: about one more slot per {@code limit} healthy responses. */
+        void increase() {
+            limit = Math.min(maxPerHost, limit + 1 / limit);
+            rate = Math.min(maxRate, rate + maxRate / 20);
+        }
+
+        /** Multiplicative decrease, at most once per round trip so one burst of errors counts once. */
+        void decrease(long now) {
+            long window = TimeUnit.MILLISECONDS.toNanos(Math.max(1000, (long) avgLatencyMillis));
+            if (now - lastDecrease < window) {
+                return;
+            }
+            lastDecrease = now;
+            limit = Math.max(1, limit / 2);
+        }
+    }
+
+    private static final class Task {
+        final String url;
+        final String method;
+        final Map<String, String> headers;
+        final CompletableFuture<Response> result;
+        int attempt;
+
+        Task(String url, String method, Map<String, String> headers, CompletableFuture<Response> result) {
+            this.url = url;
+            this.method = method;
+            this.headers = headers;
+            this.result = result;
+        }
+    }
+
+    /**
+     * A complete HTTP response.
+     */
+    public static class Response {
+        public final String url;
+        /** The URL the response was served from, after following redirects. */
+        public final String finalUrl;
+        public final int statusCode;
+        public final String contentType;
+        public final byte[] body;
+        private final Map<String, List<String>> headers;
+
+        Response(String url, String finalUrl, int statusCode, String contentType, Map<String, List<String>> headers,
+                 byte[] body) {
+            this.url = url;
+            this.finalUrl = finalUrl;
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        /** The first value of a header, ignoring the case of its name, or null. */
+        public String header(String name) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                    return header.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        /** A date header in epoch milliseconds, or -1 if it is missing or malformed. */
+        public long dateHeader(String name) {
+            String value = header(name);
+            if (value == null) {
+                return -1;
+            }
+            try {
+                return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Point-in-time counters of the fetcher, with the busiest hosts first.
+     */
+    public static class Stats {
+        public final int ioThreads;
+        /** Requests sent and not yet answered, across all hosts. */
+        public final int inFlight;
+        public final int hosts;
+        public final int queued;
+        public final long requests;
+        public final long throttled;
+        public final long errors;
+        public final long retries;
+        public final List<HostStats> perHost;
+
+        Stats(int ioThreads, int inFlight, int hosts, int queued, long requests, long throttled, long errors,
+              long retries, List<HostStats> perHost) {
+            this.ioThreads = ioThreads;
+            this.inFlight = inFlight;
+            this.hosts = hosts;
+            this.queued = queued;
+            this.requests = requests;
+            this.throttled = throttled;
+            this.errors = errors;
+            this.retries = retries;
+            this.perHost = perHost;
+        }
+    }
+
+    /**
+     * Scheduling state of one host.
+     */
+    public static class HostStats {
+        public final String host;
+        public final double concurrencyLimit;
+        public final int active;
+        public final int queued;
+        public final double ratePerSecond;
+        public final double crawlDelaySeconds;
+        public final double averageLatencyMillis;
+        public final long requests;
+        public final long throttled;
+        public final long errors;
+        public final long pausedMillis;
+
+        HostStats(String host, double concurrencyLimit, int active, int queued, double ratePerSecond,
+                  double crawlDelaySeconds, double averageLatencyMillis, long requests, long throttled, long errors,
+                  long pausedMillis) {
+            this.host = host;
+            this.concurrencyLimit = concurrencyLimit;
+            this.active = active;
+            this.queued = queued;
+            this.ratePerSecond = ratePerSecond;
+            this.crawlDelaySeconds = crawlDelaySeconds;
+            this.averageLatencyMillis = averageLatencyMillis;
+            this.requests = requests;
+            this.throttled = throttled;
+            this.errors = errors;
+            this.pausedMillis = pausedMillis;
+        }
+    }
+}
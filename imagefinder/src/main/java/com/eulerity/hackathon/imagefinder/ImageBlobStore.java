@@ -0,0 +1,179 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed store for downloaded images.
+ *
+ * Bytes are hashed while they stream to a unique temporary file, which is then
+ * renamed atomically to {@code <root>/<d0d1>/<d2d3>/<digest>.jpg}. Identical content
+ * therefore lands on one file no matter how many URLs serve it. Blobs are reference
+ * counted and deleted when the last user releases them, and {@link #processOnce}
+ * makes sure concurrent holders of the same content do the expensive work only once.
+ */
+public class ImageBlobStore {
+    private static final String DIGEST_ALGORITHM = "MD5";
+
+    private final File root;
+    private final File incomingDir;
+    private final ConcurrentHashMap<String, Integer> refCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public ImageBlobStore(File root) {
+        this.root = root;
+        this.incomingDir = new File(root, "incoming");
+    }
+
+    /**
+     * Streams the content into the store, computing its digest on the way.
+     * The caller must {@link #release} the returned blob when done with it.
+     */
+    public Blob put(InputStream in) throws IOException {
+        if (!incomingDir.exists()) {
+            incomingDir.mkdirs();
+        }
+        File incoming = File.createTempFile("blob-", ".tmp", incomingDir);
+        MessageDigest md;
+        long size;
+        try {
+            md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            try (DigestInputStream digestIn = new DigestInputStream(in, md)) {
+                size = Files.copy(digestIn, incoming.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | NoSuchAlgorithmException e) {
+            incoming.delete();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+
+        String digest = toHex(md.digest());
+        File target = blobFile(digest);
+        boolean[] created = new boolean[1];
+        try {
+            refCounts.compute(digest, (key, count) -> {
+                if (count == null) {
+                    moveIntoPlace(incoming, target);
+                    created[0] = true;
+                    return 1;
+                }
+                return count + 1;
+            });
+        } catch (UncheckedIOException e) {
+            incoming.delete();
+            throw e.getCause();
+        }
+        if (!created[0]) {
+            incoming.delete();
+        }
+        return new Blob(digest, target, size, created[0]);
+    }
+
+    /**
+     * Drops one reference; the file is deleted once nobody references it any more.
+     */
+    public void release(Blob blob) {
+        refCounts.computeIfPresent(blob.digest, (key, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            blob.file.delete();
+            return null;
+        });
+    }
+
+    /**
+     * Starts {@code work} for a digest unless it is already running for that digest,
+     * in which case the future of the running work is returned instead.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> processOnce(String digest, Supplier<CompletableFuture<T>> work) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(digest, mine);
+        if (running != null) {
+            return (CompletableFuture<T>) running;
+        }
+        CompletableFuture<T> started;
+        try {
+            started = work.get();
+        } catch (RuntimeException e) {
+            started = new CompletableFuture<>();
+            started.completeExceptionally(e);
+        }
+        started.whenComplete((result, error) -> {
+            inFlight.remove(digest, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(result);
+            }
+        });
+        return (CompletableFuture<T>) mine;
+    }
+
+    public int size() {
+        return refCounts.size();
+    }
+
+    private File blobFile(String digest) {
+        File shard = new File(new File(root, digest.substring(0, 2)), digest.substring(2, 4));
+        return new File(shard, digest + ".jpg");
+    }
+
+    private static void moveIntoPlace(File incoming, File target) {
+        try {
+            File shard = target.getParentFile();
+            if (!shard.exists()) {
+                shard.mkdirs();
+            }
+            try {
+                Files.move(incoming.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(incoming.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (FileAlreadyExistsException e) {
+                // Left over from an earlier run; the content is identical by construction.
+                Files.move(incoming.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        String hashText = new BigInteger(1, digest).toString(16);
+        StringBuilder padded = new StringBuilder();
+        for (int i = hashText.length(); i < digest.length * 2; i++) {
+            padded.append('0');
+        }
+        return padded.append(hashText).toString();
+    }
+
+    /**
+     * A stored image. {@link #isNew} is false when identical content was already stored.
+     */
+    public static class Blob {
+        public final String digest;
+        public final File file;
+        public final long size;
+        public final boolean isNew;
+
+        Blob(String digest, File file, long size, boolean isNew) {
+            this.digest = digest;
+            this.file = file;
+            this.size = size;
+            this.isNew = isNew;
+        }
+    }
+}
@@ -1,30 +1,35 @@
 package com.eulerity.hackathon.imagefinder;
 
+import org.jsoup.nodes.Document;
+import org.opencv.core.Rect;
 import org.openqa.selenium.By;
 import org.openqa.selenium.ElementClickInterceptedException;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.awt.image.BufferedImage;
@@ -41,60 +46,242 @@ public class ImageExtractorService {
      * @param url The URL of the page to extract images from.
      * @return A list of public URLs for the processed images.
      */
-    private static final HashSet<String> processedHashes = new HashSet<>();
+    private static final long BROWSER_LEASE_TIMEOUT_SECONDS = 120;
+    private static final int FAVICON_HOSTS = Integer.getInteger("imagefinder.favicon.maxHosts", 256);
+
+    private final WebDriverPool driverPool;
+    private final ImageBlobStore blobStore;
+    private final ImagePipeline pipeline;
+    private final PerceptualHashIndex nearDuplicates;
+    private final PageCache pageCache;
+    private final HttpCache httpCache;
+    private final HttpFetcher fetcher;
+    private final ImageTriage triage;
+    private final Set<String> reportedImages = ConcurrentHashMap.newKeySet(); // per crawl
+    // Favicon URL of each recently checked image host, "" while looking or if it has none; guarded by itself, in LRU order
+    private final LinkedHashMap<String, String> faviconUrls = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile CrawlBudget budget; // null when used outside a crawl
+    private volatile String crawlId; // tags the Flight Recorder events of this crawl
+
+    /**
+     * @param engine    the shared engine providing the browser pool, the HTTP fetcher and cache, the image blob
+     *                  store, the image pipeline, the near-duplicate index and the image triage.
+     * @param pageCache the crawl's page cache, used for favicon lookups on image hosts.
+     */
+    public ImageExtractorService(CrawlEngine engine, PageCache pageCache) {
+        this.driverPool = engine.getDriverPool();
+        this.blobStore = engine.getBlobStore();
+        this.pipeline = engine.getImagePipeline();
+        this.nearDuplicates = engine.getNearDuplicateIndex();
+        this.pageCache = pageCache;
+        this.httpCache = engine.getHttpCache();
+        this.fetcher = engine.getHttpFetcher();
+        this.triage = engine.getImageTriage();
+    }
+
+    /**
+     * Charges downloaded bytes and render time to the crawl's budget, and skips work once it has run out.
+     */
+    public void setBudget(CrawlBudget budget) {
+        this.budget = budget;
+    }
+
+    public void setCrawlId(String crawlId) {
+        this.crawlId = crawlId;
+    }
 
 public List<String> extractImages(String url) {
+    return extractImages(url, null, null);
+}
+
+    /**
+     * Same as {@link #extractImages(String)}, but reuses the page already fetched by the
+     * crawler and reports each unique processed image to {@code onImage} as soon as it is
+     * ready instead of only at the end.
+     *
+     * Image URLs are taken from the static markup when possible; the page is only rendered
+     * in a browser when {@link StaticImageExtractor#needsBrowserRendering} says it looks
+     * JavaScript-rendered, or when no parsed page is available.
+     *
+     * @param url     The URL of the page to extract images from.
+     * @param page    The parsed page, or null to always render in the browser.
+     * @param onImage Receives the public URL of each processed image; may be null.
+     * @return A list of public URLs for the processed images.
+     */
+public List<String> extractImages(String url, Document page, Consumer<String> onImage) {
+    CrawlEvents.ImageExtraction event = new CrawlEvents.ImageExtraction();
+    event.begin();
+    event.url = url;
+    List<String> images = new ArrayList<>();
+    try {
+        images = extractAndProcessImages(url, page, onImage, event);
+        return images;
+    } finally {
+        if (event.shouldCommit()) {
+            event.crawlId = crawlId;
+            event.imagesFound = images.size();
+            event.commit();
+        }
+    }
+}
+
+private List<String> extractAndProcessImages(String url, Document page, Consumer<String> onImage,
+                                             CrawlEvents.ImageExtraction event) {
     Set<String> imageUrls = new LinkedHashSet<>();
     System.out.println("Extracting images from URL: " + url);
 
-    // Set up WebDriver
-    System.setProperty("webdriver.chrome.driver",
-            "C:\\Users\\030825130\\Downloads\\chromedriver-win64\\chromedriver-win64\\chromedriver.exe");
-    ChromeOptions options = new ChromeOptions();
-    options.addArguments("--disable-gpu");
-    WebDriver driver = new ChromeDriver(options);
+    boolean render = true;
+    if (page != null) {
+        imageUrls.addAll(StaticImageExtractor.extractImageUrls(page));
+        render = StaticImageExtractor.needsBrowserRendering(page, imageUrls.size());
+        if (render) {
+            System.out.println("🧭 Page looks JavaScript-rendered, using browser: " + url);
+        } else {
+            System.out.println("⚡ Static extraction found " + imageUrls.size() + " images on: " + url);
+        }
+    }
+    if (budgetExhausted()) {
+        return new ArrayList<>();
+    }
+    event.rendered = render;
+    if (render && !renderAndExtract(url, imageUrls)) {
+        return new ArrayList<>();
+    }
+    event.imageUrls = imageUrls.size();
+
+    return processImages(imageUrls, onImage);
+}
 
-    try {
-        driver.get(url);
-        dismissCookieBannerIfPresent(driver);
-        scrollVerticallyUntilNoNewContent(driver);
-        clickCarouselArrows(driver, "button[aria-label='Next']");
-        horizontalScrollContainer(driver, "div.horizontal-scroll-container");
-
-        WebDriverWait wait = new WebDriverWait(driver, 60);
-        wait.until(ExpectedConditions.presenceOfAllElementsLocatedBy(By.tagName("img")));
-
-        extractFromImgTags(driver, imageUrls);
-        extractFromBackgroundImages(driver, imageUrls);
-        extractFromSourceTags(driver, imageUrls);
-    } catch (Exception e) {
-        e.printStackTrace();
-    } finally {
-        driver.quit();
+    /**
+     * Renders the page in a pooled browser and adds every image URL it finds.
+     *
+     * @return false if no browser could be leased for the page.
+     */
+    private boolean renderAndExtract(String url, Set<String> imageUrls) {
+        CrawlBudget budget = this.budget;
+        long renderBudgetMs = PageSettler.DEFAULT_RENDER_BUDGET_MS;
+        if (budget != null) {
+            renderBudgetMs = Math.min(renderBudgetMs, budget.remainingRenderMillis());
+            if (renderBudgetMs == 0) {
+                System.out.println("⏹️ Render budget exhausted, using static images only: " + url);
+                return true;
+            }
+        }
+
+        // Lease a browser from the shared pool
+        WebDriverPool.Lease lease;
+        try {
+            lease = driverPool.lease(BROWSER_LEASE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (TimeoutException e) {
+            System.err.println("⚠️ No browser available for " + url + ": " + e.getMessage());
+            return false;
+        }
+
+        long renderStart = System.nanoTime();
+        CrawlEvents.RenderPhase phase = startPhase();
+        try {
+            WebDriver driver = lease.driver();
+            driver.get(url);
+            phase = endPhase(phase, url, "load");
+            PageSettler settler = new PageSettler(driver, renderBudgetMs);
+            settler.awaitStable();
+            dismissCookieBannerIfPresent(driver);
+            phase = endPhase(phase, url, "settle");
+            scrollVerticallyUntilNoNewContent(driver, settler);
+            phase = endPhase(phase, url, "scroll");
+            clickCarouselArrows(driver, "button[aria-label='Next']", settler);
+            phase = endPhase(phase, url, "carousel");
+            horizontalScrollContainer(driver, "div.horizontal-scroll-container", settler);
+            phase = endPhase(phase, url, "container");
+            System.out.println("⏱️ Page settled after " + settler.getWaitedMillis() + " ms"
+                    + (settler.isExhausted() ? " (render budget exhausted)" : "") + ": " + url);
+
+            extractFromImgTags(driver, imageUrls);
+            extractFromBackgroundImages(driver, imageUrls);
+            extractFromSourceTags(driver, imageUrls);
+            endPhase(phase, url, "extract");
+        } catch (WebDriverException e) {
+            // The browser may have crashed; do not hand it to the next page.
+            lease.markBroken();
+            e.printStackTrace();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            lease.close();
+            long renderNanos = System.nanoTime() - renderStart;
+            Metrics.RENDER.observeNanos(renderNanos);
+            if (budget != null) {
+                budget.addRenderNanos(renderNanos);
+            }
+        }
+        return true;
+    }
+
+    private static CrawlEvents.RenderPhase startPhase() {
+        CrawlEvents.RenderPhase phase = new CrawlEvents.RenderPhase();
+        phase.begin();
+        return phase;
     }
 
-    // Process images (Check Hash Uniqueness)
-    Set<String> uniqueProcessedImages = new LinkedHashSet<>();
+    /**
+     * Records a finished render phase and starts timing the next one.
+     */
+    private CrawlEvents.RenderPhase endPhase(CrawlEvents.RenderPhase phase, String url, String name) {
+        if (phase.shouldCommit()) {
+            phase.crawlId = crawlId;
+            phase.url = url;
+            phase.phase = name;
+            phase.commit();
+        }
+        return startPhase();
+    }
 
-    for (String imageUrl : imageUrls) {
-        String processedPath = downloadClassifyAndResizeImage(imageUrl, 350, 350);
-        if (processedPath != null) {
-            try {
-                String imageHash = computeFileHash(new File("src/main/webapp" + processedPath));
-                if (!processedHashes.contains(imageHash)) {
-                    processedHashes.add(imageHash);
-                    uniqueProcessedImages.add(processedPath);
-                } else {
+    /**
+     * Downloads, classifies and resizes the images in parallel on the engine's image pipeline,
+     * keeping only results with new content. {@code onImage} is called as each image finishes;
+     * the returned list keeps the page order. The calling crawl worker waits until every image
+     * of the page is done, but no pipeline stage waits for it.
+     */
+    private List<String> processImages(Set<String> imageUrls, Consumer<String> onImage) {
+        List<CompletableFuture<String>> pending = new ArrayList<>();
+        for (String imageUrl : imageUrls) {
+            if (budgetExhausted()) {
+                break;
+            }
+            pending.add(downloadClassifyAndResizeImage(imageUrl, 350, 350).thenApply(processedPath -> {
+                if (processedPath == null) {
+                    return null;
+                }
+                // Exact and near-duplicate content resolve to the same path; report each path once per crawl.
+                if (!reportedImages.add(processedPath)) {
+                    Metrics.DUPLICATES.inc();
                     System.out.println("🚫 Duplicate detected, skipping: " + imageUrl);
+                    return null;
                 }
-            } catch (Exception e) {
-                System.err.println("⚠ Error computing hash for " + processedPath + ": " + e.getMessage());
+                if (onImage != null) {
+                    onImage.accept(processedPath);
+                }
+                return processedPath;
+            }));
+        }
+
+        Set<String> uniqueProcessedImages = new LinkedHashSet<>();
+        for (CompletableFuture<String> result : pending) {
+            String processedPath = result.join();
+            if (processedPath != null) {
+                uniqueProcessedImages.add(processedPath);
             }
         }
+        return new ArrayList<>(uniqueProcessedImages);
     }
 
-    return new ArrayList<>(uniqueProcessedImages);
-}
+    private boolean budgetExhausted() {
+        CrawlBudget budget = this.budget;
+        return budget != null && budget.shouldSkipWork();
+    }
 
     /**
      * Normalizes a URL by trimming whitespace and removing a trailing slash.
@@ -102,12 +289,20 @@ public List<String> extractImages(String url) {
      * @param urlStr the URL to normalize.
      * @return the normalized URL.
      */
-    private String normalizeUrl(String urlStr) {
+    static String normalizeUrl(String urlStr) {
         if (urlStr == null) return null;
         String trimmed = urlStr.trim();
         return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
     }
 
+    /**
+     * Whether a public image path (e.g. "/resizedImages/resized_<hash>.jpg") still has its
+     * file under "src/main/webapp"; output from earlier runs is cleared on startup.
+     */
+    static boolean isPublished(String publicPath) {
+        return new File("src/main/webapp", publicPath).isFile();
+    }
+
     private void dismissCookieBannerIfPresent(WebDriver driver) {
         try {
             WebElement acceptBtn = driver.findElement(By.cssSelector("button.accept-cookies"));
@@ -119,12 +314,12 @@ public List<String> extractImages(String url) {
         }
     }
 
-    private void scrollVerticallyUntilNoNewContent(WebDriver driver) throws InterruptedException {
+    private void scrollVerticallyUntilNoNewContent(WebDriver driver, PageSettler settler) {
         JavascriptExecutor js = (JavascriptExecutor) driver;
         long lastHeight = (long) js.executeScript("return document.body.scrollHeight");
-        while (true) {
+        while (!settler.isExhausted()) {
             js.executeScript("window.scrollTo(0, document.body.scrollHeight);");
-            Thread.sleep(3000); // Wait for lazy loading.
+            settler.awaitStable(); // Wait for lazy loading.
             long newHeight = (long) js.executeScript("return document.body.scrollHeight");
             if (newHeight == lastHeight) {
                 break;
@@ -133,7 +328,7 @@ public List<String> extractImages(String url) {
         }
     }
 
-    private void clickCarouselArrows(WebDriver driver, String arrowButtonSelector) throws InterruptedException {
+    private void clickCarouselArrows(WebDriver driver, String arrowButtonSelector, PageSettler settler) {
         int maxClicks = 15;       // Maximum number of clicks to avoid endless looping.
         int stableLimit = 3;      // Stop if the first visible image doesn't change for several clicks.
         int stableCount = 0;
@@ -142,11 +337,7 @@ public List<String> extractImages(String url) {
         List<WebElement> imgs = driver.findElements(By.tagName("img"));
         String previousFirstImg = (imgs.size() > 0) ? imgs.get(0).getAttribute("src") : "";
 
-        long startTime = System.currentTimeMillis();
-        long maxDuration = 2 * 60 * 1000; // 2 minutes in milliseconds.
-
-        while (clicks < maxClicks && stableCount < stableLimit &&
-                (System.currentTimeMillis() - startTime) < maxDuration) {
+        while (clicks < maxClicks && stableCount < stableLimit && !settler.isExhausted()) {
             try {
                 WebElement arrowButton = driver.findElement(By.cssSelector(arrowButtonSelector));
                 if (!arrowButton.isDisplayed() || !arrowButton.isEnabled()) {
@@ -157,7 +348,7 @@ public List<String> extractImages(String url) {
                 } catch (ElementClickInterceptedException e) {
                     ((JavascriptExecutor) driver).executeScript("arguments[0].click();", arrowButton);
                 }
-                Thread.sleep(2000); // Wait for carousel to load images.
+                settler.awaitStable(); // Wait for carousel to load images.
                 List<WebElement> newImgs = driver.findElements(By.tagName("img"));
                 String currentFirstImg = (newImgs.size() > 0) ? newImgs.get(0).getAttribute("src") : "";
                 if (currentFirstImg.equals(previousFirstImg)) {
@@ -173,14 +364,14 @@ public List<String> extractImages(String url) {
         }
     }
 
-    private void horizontalScrollContainer(WebDriver driver, String containerSelector) throws InterruptedException {
+    private void horizontalScrollContainer(WebDriver driver, String containerSelector, PageSettler settler) {
         JavascriptExecutor js = (JavascriptExecutor) driver;
         try {
             WebElement container = driver.findElement(By.cssSelector(containerSelector));
             long lastScrollLeft = (long) js.executeScript("return arguments[0].scrollLeft;", container);
-            while (true) {
+            while (!settler.isExhausted()) {
                 js.executeScript("arguments[0].scrollBy(500, 0);", container);
-                Thread.sleep(2000);
+                settler.awaitStable();
                 long newScrollLeft = (long) js.executeScript("return arguments[0].scrollLeft;", container);
                 if (newScrollLeft == lastScrollLeft) {
                     break;
@@ -232,9 +423,15 @@ public List<String> extractImages(String url) {
     }
 
     /**
-     * Downloads an image from the given URL, classifies it using its original dimensions,
-     * then resizes it, and saves it to "src/main/webapp/resizedImages" using a deterministic filename
-     * based on the image's MD5 hash.
+     * Downloads an image from the given URL into the content-addressed blob store, classifies
+     * it using its original dimensions, then resizes it, and saves it to
+     * "src/main/webapp/resizedImages" using a deterministic filename based on the digest
+     * computed while the image was downloaded.
+     *
+     * Content that has already been resized is returned without being decoded again, and
+     * identical content arriving on several threads at once is only processed by one of them.
+     *
+     * Downloading, analysis and encoding run as separate stages of the {@link ImagePipeline}.
      *
      * Returns the public URL (e.g., "/resizedImages/resized_<hash>.jpg")
      * so the frontend can display it.
@@ -242,83 +439,259 @@ public List<String> extractImages(String url) {
      * @param imageUrl The URL of the image to process.
      * @param width The desired width for resizing.
      * @param height The desired height for resizing.
-     * @return The public URL of the processed image, or null if processing failed.
+     * @return The public URL of the processed image, completed with null if processing failed.
      */
-    private String downloadClassifyAndResizeImage(String imageUrl, int width, int height) {
-        try {
-            File processedDir = new File("src/main/webapp/processedImages");
-            if (!processedDir.exists()) {
-                processedDir.mkdirs();
+    private CompletableFuture<String> downloadClassifyAndResizeImage(String imageUrl, int width, int height) {
+        File resizedDir = new File("src/main/webapp/resizedImages");
+        if (!resizedDir.exists()) {
+            resizedDir.mkdirs();
+        }
+
+        checkFaviconOnce(imageUrl);
+
+        long start = System.nanoTime();
+        CrawlEvents.ImageStage download = new CrawlEvents.ImageStage();
+        download.begin();
+        // Enter the pipeline through the handoff, never from the fetcher's IO thread: a full
+        // stage runs the task in the submitting thread. Later stages are submitted from
+        // pipeline threads, so none of them lands on an IO thread either.
+        return httpCache.fetchAsync(imageUrl)
+                .thenComposeAsync(response -> pipeline.download(() -> store(imageUrl, response)),
+                        pipeline.handoff())
+                .whenComplete((blob, error) -> {
+                    Metrics.DOWNLOAD.observeSince(start);
+                    commitStage(download, imageUrl, "download", error == null ? "stored" : "failed");
+                })
+                .thenCompose(blob -> blobStore.processOnce(blob.digest,
+                                () -> classifyAndResize(imageUrl, blob, resizedDir, width, height))
+                        .whenComplete((processedPath, error) -> blobStore.release(blob)))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    Metrics.IMAGE_ERRORS.inc();
+                    System.err.println("❌ Error processing image: " + imageUrl + " - " + cause.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Download stage: stores the fetched image in the blob store. The bytes are fetched
+     * beforehand by the HTTP cache, so no pipeline thread waits on the network.
+     */
+    private ImageBlobStore.Blob store(String imageUrl, HttpCache.Response response) throws IOException {
+        CrawlBudget budget = this.budget;
+        if (budget != null && response.source == HttpCache.Source.NETWORK) {
+            budget.addBytes(response.body.length);
+        }
+
+        try (InputStream in = response.openStream()) {
+            return blobStore.put(in);
+        }
+    }
+
+    private CompletableFuture<String> classifyAndResize(String imageUrl, ImageBlobStore.Blob blob, File resizedDir,
+                                                        int width, int height) {
+        String resizedFileName = "resized_" + blob.digest + ".jpg";
+        File resizedFile = new File(resizedDir, resizedFileName);
+        String publicPath = "/resizedImages/" + resizedFileName;
+
+        // **Skip re-processing if this content was already resized**
+        if (resizedFile.exists()) {
+            System.out.println("🚫 Already processed, reusing: " + imageUrl);
+            return CompletableFuture.completedFuture(publicPath);
+        }
+        if (budgetExhausted()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return pipeline.analyze(() -> {
+                    CrawlEvents.ImageStage stage = new CrawlEvents.ImageStage();
+                    stage.begin();
+                    Analysis analysis = null;
+                    try {
+                        analysis = analyze(imageUrl, blob, resizedDir);
+                        return analysis;
+                    } finally {
+                        commitStage(stage, imageUrl, "analyze", analysis == null ? "unsupported or rejected"
+                                : analysis.duplicateOf != null ? "near-duplicate" : "analyzed");
+                    }
+                })
+                .thenCompose(analysis -> {
+                    if (analysis == null || analysis.duplicateOf != null) {
+                        return CompletableFuture.completedFuture(analysis == null ? null : analysis.duplicateOf);
+                    }
+                    // **Resize image while preserving color; the thumbnails are the only files written**
+                    return pipeline.encode(() -> {
+                        CrawlEvents.ImageStage stage = new CrawlEvents.ImageStage();
+                        stage.begin();
+                        String outcome = "failed";
+                        try {
+                            ImageResizer.resizeWithRetina(analysis.image, resizedFile, width, height);
+                            nearDuplicates.put(analysis.hash, publicPath);
+                            outcome = "encoded";
+                            return publicPath;
+                        } finally {
+                            commitStage(stage, imageUrl, "encode", outcome);
+                        }
+                    });
+                });
+    }
+
+    private void commitStage(CrawlEvents.ImageStage stage, String imageUrl, String name, String outcome) {
+        if (stage.shouldCommit()) {
+            stage.crawlId = crawlId;
+            stage.url = imageUrl;
+            stage.stage = name;
+            stage.outcome = outcome;
+            stage.commit();
+        }
+    }
+
+    /**
+     * Analysis stage: fingerprints a subsampled decode first, and only decodes and classifies
+     * the full image when no near-duplicate of it has been published yet.
+     */
+    private Analysis analyze(String imageUrl, ImageBlobStore.Blob blob, File resizedDir) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage sample = PerceptualHashIndex.readSample(blob.file);
+        if (sample == null) return null;
+        long hash = PerceptualHashIndex.dHash(sample);
+        Metrics.HASH.observeSince(start);
+
+        PerceptualHashIndex.Match match = nearDuplicates.findSimilar(hash);
+        if (match != null) {
+            String fileName = match.value.substring(match.value.lastIndexOf('/') + 1);
+            if (new File(resizedDir, fileName).exists()) {
+                Metrics.DUPLICATES.inc();
+                System.out.println("🚫 Near-duplicate of " + match.value + " (distance " + match.distance
+                        + "), skipping: " + imageUrl);
+                return new Analysis(hash, null, match.value);
             }
-    
-            File resizedDir = new File("src/main/webapp/resizedImages");
-            if (!resizedDir.exists()) {
-                resizedDir.mkdirs();
+            // The thumbnail was cleaned up since; forget it and process this image instead.
+            nearDuplicates.remove(match.hash);
+        }
+
+        BufferedImage image = classify(imageUrl, blob);
+        return image == null ? null : new Analysis(hash, image, null);
+    }
+
+    /**
+     * Decodes the blob once, runs the cheap triage cascade, detects faces and logos where the
+     * triage routes them, and returns the pixels to publish (marked if people were found), or
+     * null if the format is not supported or the triage drops the image. Images that reach the
+     * detectors first reserve their native memory in {@link NativeMemory#OPENCV}.
+     */
+    private BufferedImage classify(String imageUrl, ImageBlobStore.Blob blob) throws IOException {
+        // **Decode once; every check below works on the same in-memory image**
+        long start = System.nanoTime();
+        DecodedImage decoded = DecodedImage.read(blob.file);
+        if (decoded == null) return null;
+        Metrics.DECODE.observeSince(start);
+
+        try (DecodedImage image = decoded) {
+            // **Cheap checks first: tracking pixels are dropped, flat graphics skip the detectors**
+            ImageTriage.Decision decision = triage.evaluate(image.original());
+            if (!decision.publish) {
+                System.out.println("🚫 Rejected by " + decision.rejectedBy + " triage: " + imageUrl);
+                return null;
             }
-    
-            // **Download image to `processedImages/`**
-            URL url = new URL(imageUrl);
-            String fileName = "img_" + System.currentTimeMillis() + ".jpg";
-            File tempFile = new File(processedDir, fileName);
-            try (InputStream in = url.openStream()) {
-                Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (!decision.detectFaces && !decision.detectLogos) {
+                return image.original();
             }
-    
-            BufferedImage img = ImageIO.read(tempFile);
-            if (img == null) return null;
-    
-            File processedFile = tempFile;
-            boolean containsPeople = FaceDetector.containsFace(img);
-            boolean containsLogo = LogoDetector.containsLogo(tempFile.getAbsolutePath());
-    
-            // **Mark image if it contains people**
-            if (containsPeople) {
-                System.out.println("✅ People detected in: " + imageUrl);
-                FaceDetector.detectAndSaveFaces(tempFile.getAbsolutePath());
-                processedFile = new File(tempFile.getAbsolutePath().replace(".jpg", "_marked.jpg"));
+
+            // **Wait for native memory before the OpenCV views are created**
+            NativeMemory.Reservation reservation = NativeMemory.OPENCV.reserve(image.nativeBytes());
+            try {
+                // **One detection pass serves both the decision and the marking**
+                Rect[] faces = decision.detectFaces ? FaceDetector.detectFaces(image) : new Rect[0];
+                boolean containsPeople = faces.length > 0;
+                LogoDetector.LogoMatch logo = decision.detectLogos ? LogoDetector.recognize(image) : null;
+
+                // **Mark image if it contains people**
+                if (containsPeople) {
+                    System.out.println("✅ People detected in: " + imageUrl);
+                    FaceDetector.markFaces(image, faces);
+                }
+
+                // **Detect logos without modifying image**
+                if (logo != null) {
+                    System.out.println("✅ Logo detected in: " + imageUrl + " (brand " + logo.brand + ", "
+                            + logo.inliers + " inliers)");
+                }
+
+                return image.current();
+            } finally {
+                reservation.close();
             }
-    
-            // **Detect logos without modifying image**
-            if (containsLogo) {
-                System.out.println("✅ Logo detected in: " + imageUrl);
+        }
+    }
+
+    /**
+     * Starts the favicon check of the image's site root without waiting for it, unless the
+     * host is among the last {@code imagefinder.favicon.maxHosts} checked by this crawl. Only
+     * the favicon URL is remembered, not the root page; the probe and download run on the
+     * pipeline's favicon stage.
+     */
+    private void checkFaviconOnce(String imageUrl) {
+        String pageDomain;
+        try {
+            URL url = new URL(imageUrl);
+            pageDomain = url.getProtocol() + "://" + url.getHost();
+        } catch (MalformedURLException e) {
+            return; // reported when the image itself fails to download
+        }
+        synchronized (faviconUrls) {
+            if (faviconUrls.putIfAbsent(pageDomain, "") != null) {
+                return;
             }
-    
-            // **Extract favicon from the website's root domain**
-            String pageDomain = new URL(imageUrl).getProtocol() + "://" + new URL(imageUrl).getHost();
-            String faviconUrl = FaviconExtractor.extractFaviconUrl(pageDomain);
-    
-            if (faviconUrl != null) {
-                File faviconFile = FaviconExtractor.downloadFavicon(faviconUrl);
-                if (faviconFile != null && LogoDetector.containsLogo(faviconFile.getAbsolutePath())) {
-                    System.out.println("✅ Favicon is a logo: " + faviconUrl);
-                }
+            if (faviconUrls.size() > FAVICON_HOSTS) {
+                faviconUrls.remove(faviconUrls.keySet().iterator().next());
             }
-    
-            // **Compute MD5 hash for duplicate detection**
-            String fileHash = computeFileHash(processedFile);
-            String resizedFileName = "resized_" + fileHash + ".jpg";
-            File resizedFile = new File(resizedDir, resizedFileName);
-    
-            // **Skip re-processing if already exists**
-            if (resizedFile.exists()) {
-                processedFile.delete();
-                return "/resizedImages/" + resizedFileName;
+        }
+        pageCache.getAsync(pageDomain, pipeline.handoff())
+                .thenCompose(rootPage -> pipeline.favicon(() -> {
+                    checkFavicon(pageDomain, rootPage);
+                    return null;
+                }))
+                .exceptionally(e -> {
+                    System.out.println("🚫 No favicon found for: " + pageDomain);
+                    return null;
+                });
+    }
+
+    /**
+     * Downloads the favicon of a site root and checks whether it is a logo.
+     */
+    private void checkFavicon(String pageDomain, PageCache.Page rootPage) {
+        if (rootPage.document == null) {
+            return;
+        }
+        String faviconUrl = FaviconExtractor.extractFaviconUrl(pageDomain, rootPage.document, fetcher);
+        if (faviconUrl != null) {
+            synchronized (faviconUrls) {
+                faviconUrls.replace(pageDomain, faviconUrl);
+            }
+            File faviconFile = FaviconExtractor.downloadFavicon(faviconUrl, httpCache);
+            if (faviconFile != null && LogoDetector.containsLogo(faviconFile.getAbsolutePath())) {
+                System.out.println("✅ Favicon is a logo: " + faviconUrl);
             }
-    
-            // **Resize image while preserving color**
-            ImageResizer.resize(processedFile.getAbsolutePath(), resizedFile.getAbsolutePath(), width, height);
-    
-            // **Delete temporary processed image**
-            processedFile.delete();
-    
-            return "/resizedImages/" + resizedFileName;
-        } catch (Exception e) {
-            System.err.println("❌ Error processing image: " + imageUrl + " - " + e.getMessage());
-            return null;
         }
     }
-    
-    
+
+    /**
+     * Result of the analysis stage: either the pixels to encode, or the public URL of an
+     * already published near-duplicate.
+     */
+    private static class Analysis {
+        final long hash;
+        final BufferedImage image;
+        final String duplicateOf;
+
+        Analysis(long hash, BufferedImage image, String duplicateOf) {
+            this.hash = hash;
+            this.image = image;
+            this.duplicateOf = duplicateOf;
+        }
+    }
 
     /**
      * Computes the MD5 hash of a file.
@@ -327,16 +700,10 @@ public List<String> extractImages(String url) {
      * @return the MD5 hash as a 32-character hexadecimal string.
      * @throws Exception if an error occurs during reading or digest computation.
      */
-    private String computeFileHash(File file) throws Exception {
+    static String computeFileHash(File file) throws Exception {
         MessageDigest md = MessageDigest.getInstance("MD5");
         byte[] fileBytes = Files.readAllBytes(file.toPath());
-        byte[] digest = md.digest(fileBytes);
-        BigInteger no = new BigInteger(1, digest);
-        String hashText = no.toString(16);
-        while (hashText.length() < 32) {
-            hashText = "0" + hashText;
-        }
-        return hashText;
+        return ImageBlobStore.toHex(md.digest(fileBytes));
     }
 
     /**
@@ -400,6 +767,10 @@ public List<String> extractImages(String url) {
     private void deleteDirectoryContents(File dir) {
         if (dir.exists() && dir.isDirectory()) {
             for (File file : dir.listFiles()) {
+                // processedImages/ holds the sharded blob store.
+                if (file.isDirectory()) {
+                    deleteDirectoryContents(file);
+                }
                 file.delete();
             }
         }
@@ -1,9 +1,14 @@
 package com.eulerity.hackathon.imagefinder;
 
 import java.io.IOException;
+import java.util.Collections;
 // import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -13,34 +18,199 @@ import com.google.gson.Gson;
 
 @WebServlet(
     name = "ImageFinder",
-    urlPatterns = {"/main"}
+    urlPatterns = {"/main"},
+    asyncSupported = true
 )
 public class ImageFinder extends HttpServlet {
     private static final long serialVersionUID = 1L;
     protected static final Gson GSON = new Gson();
+    private static final long STREAM_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
     /**
      * Factory method to create a new CrawlerService instance.
-     * In production, this returns a fresh instance per request.
+     * In production, this returns a fresh instance per request backed by the
+     * application-wide {@link CrawlEngine}.
      * In tests, you can override this method to return a mock.
      */
     protected CrawlerService createCrawlerService() {
-        return new CrawlerService(2);
+        return new CrawlerService(CrawlEngine.from(getServletContext()), 2);
     }
 
+    /**
+     * Registry of background crawl jobs. In tests, you can override this method to return
+     * a private registry.
+     */
+    protected CrawlJobs jobs() {
+        return CrawlEngine.from(getServletContext()).getJobs();
+    }
+
+    /**
+     * Starts a crawl. By default it runs as a background job and the response only carries
+     * its id; {@code mode=stream} streams images as they are found and {@code mode=sync}
+     * waits for the crawl and returns every image at once.
+     *
+     * {@code maxSeconds}, {@code maxPages}, {@code maxImages}, {@code maxBytes} and
+     * {@code maxRenderSeconds} tighten the crawl's {@link CrawlBudget}; they cannot raise it
+     * above the server's configured limits. A crawl that runs out of budget returns the
+     * images found so far together with its stop reason; {@code resume=true} later continues
+     * it where it stopped.
+     */
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp)
             throws ServletException, IOException {
-        resp.setContentType("application/json");
         String url = req.getParameter("url");
+        String mode = req.getParameter("mode");
 
         System.out.println("Received request for: " + url);
 
-        // Use the crawler to get image URLs and remove duplicates.
-        Set<String> uniqueImageUrls = new LinkedHashSet<>(createCrawlerService().crawl(url));
+        CrawlBudget budget;
+        try {
+            budget = budgetFrom(req);
+        } catch (IllegalArgumentException e) {
+            resp.setContentType("application/json");
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().print(GSON.toJson(Collections.singletonMap("error", e.getMessage())));
+            return;
+        }
+        CrawlerService crawler = createCrawlerService();
+        crawler.setBudget(budget);
+        crawler.setResume(Boolean.parseBoolean(req.getParameter("resume")));
+
+        if ("stream".equals(mode)) {
+            streamResults(req, resp, url, crawler);
+            return;
+        }
 
+        resp.setContentType("application/json");
+
+        if (!"sync".equals(mode)) {
+            CrawlJob job = jobs().start(url, crawler);
+            String statusUrl = req.getRequestURI() + "?job=" + job.getId();
+            Map<String, Object> accepted = new LinkedHashMap<>();
+            accepted.put("jobId", job.getId());
+            accepted.put("state", job.getState());
+            accepted.put("statusUrl", statusUrl);
+            resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+            resp.setHeader("Location", statusUrl);
+            resp.getWriter().print(GSON.toJson(accepted));
+            return;
+        }
+
+        // Use the crawler to get image URLs and remove duplicates.
+        Set<String> uniqueImageUrls = new LinkedHashSet<>(crawler.crawl(url));
+        if (crawler.getStopReason() != null) {
+            resp.setHeader("X-Crawl-Stop-Reason", crawler.getStopReason().name());
+        }
 
         // Return the unique URLs as JSON.
         resp.getWriter().print(GSON.toJson(uniqueImageUrls));
     }
+
+    /**
+     * Reports a job's progress and one page of its images. {@code cursor} is the
+     * {@code nextCursor} of the previous page (omit it for the first page) and {@code limit}
+     * the page size. While the job runs there is always a {@code nextCursor} to poll with;
+     * it is left out once the job is done and every image has been returned.
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        resp.setContentType("application/json");
+        CrawlJob job = jobs().get(req.getParameter("job"));
+        if (job == null) {
+            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            resp.getWriter().print(GSON.toJson(Collections.singletonMap("error", "Unknown or expired job")));
+            return;
+        }
+
+        int cursor;
+        int limit;
+        try {
+            String cursorParam = req.getParameter("cursor");
+            String limitParam = req.getParameter("limit");
+            cursor = cursorParam == null ? 0 : Integer.parseInt(cursorParam);
+            limit = limitParam == null ? DEFAULT_PAGE_SIZE : Math.min(MAX_PAGE_SIZE, Integer.parseInt(limitParam));
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().print(GSON.toJson(Collections.singletonMap("error", "Invalid cursor or limit")));
+            return;
+        }
+
+        // Read the state first: a job reported as DONE has all of its images in the list.
+        CrawlJob.State state = job.getState();
+        List<String> images = job.getImages(cursor, Math.max(1, limit));
+        int total = job.getImageCount();
+        int next = Math.max(0, cursor) + images.size();
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", job.getId());
+        status.put("url", job.getUrl());
+        status.put("state", state);
+        status.put("pagesCrawled", job.getPagesCrawled());
+        status.put("imagesProcessed", total);
+        status.put("queueDepth", job.getQueueDepth());
+        status.put("stopReason", job.getStopReason());
+        status.put("images", images);
+        status.put("nextCursor", next < total || state == CrawlJob.State.RUNNING ? Integer.toString(next) : null);
+        resp.getWriter().print(GSON.toJson(status));
+    }
+
+    /**
+     * Streams each processed image path as an NDJSON line ({@code {"image": "..."}})
+     * while the crawl is still running, followed by a final
+     * {@code {"done": true, "stopReason": "..."}} line.
+     * The request is handled asynchronously so no container thread waits on the crawl.
+     */
+    private void streamResults(HttpServletRequest req, HttpServletResponse resp, String url,
+                               CrawlerService crawler) throws IOException {
+        resp.setContentType("application/x-ndjson");
+        resp.setCharacterEncoding("UTF-8");
+
+        AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(STREAM_TIMEOUT_MS);
+        NdjsonResponseStream stream = new NdjsonResponseStream(asyncContext);
+        // Nobody is left to read the results once the client disconnects or the stream times out.
+        stream.setOnAbort(crawler::stop);
+
+        crawler.crawlAsync(url,
+                imagePath -> stream.send(Collections.singletonMap("image", imagePath)),
+                () -> {
+                    Map<String, Object> done = new LinkedHashMap<>();
+                    done.put("done", true);
+                    done.put("stopReason", crawler.getStopReason());
+                    stream.finish(done);
+                });
+    }
+
+    /**
+     * The crawl budget requested by the client, capped at the configured defaults.
+     *
+     * @throws IllegalArgumentException if a limit is not a positive number.
+     */
+    private static CrawlBudget budgetFrom(HttpServletRequest req) {
+        return new CrawlBudget(
+                limit(req, "maxSeconds", CrawlBudget.DEFAULT_MAX_SECONDS),
+                (int) limit(req, "maxPages", CrawlBudget.DEFAULT_MAX_PAGES),
+                (int) limit(req, "maxImages", CrawlBudget.DEFAULT_MAX_IMAGES),
+                limit(req, "maxBytes", CrawlBudget.DEFAULT_MAX_BYTES),
+                limit(req, "maxRenderSeconds", CrawlBudget.DEFAULT_MAX_RENDER_SECONDS));
+    }
+
+    private static long limit(HttpServletRequest req, String name, long max) {
+        String value = req.getParameter(name);
+        if (value == null) {
+            return max;
+        }
+        try {
+            long requested = Long.parseLong(value.trim());
+            if (requested > 0) {
+                return Math.min(requested, max);
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Invalid " + name + ": " + value);
+    }
 }
@@ -0,0 +1,272 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared, bounded thread pools for the three stages of image processing.
+ *
+ * Downloads are I/O bound, analysis (decode, face and logo detection) is CPU bound
+ * and encoding writes the thumbnails, so each stage gets its own pool size. Every stage
+ * has a bounded queue; when it is full the submitting thread runs the task itself, which
+ * slows the previous stage down instead of letting work pile up in memory.
+ *
+ * That submitting thread must never be one of the {@link HttpFetcher}'s IO threads, or a
+ * full queue would park a fetch thread on decoding or on {@link NativeMemory#reserve}. Fetch
+ * results therefore enter the pipeline through {@link #handoff()}, whose few threads absorb
+ * the backpressure instead. Favicon checks, which wait on the network, get their own
+ * {@link #favicon(Callable) stage} so they never hold a download thread. Neither of those
+ * two stages has a queue limit: the handoff only queues responses that are already in
+ * memory, and favicons are checked once per host and crawl.
+ */
+public class ImagePipeline {
+    public static final int DEFAULT_DOWNLOAD_THREADS = Integer.getInteger("imagefinder.pipeline.downloadThreads", 8);
+    public static final int DEFAULT_ANALYZE_THREADS = Integer.getInteger("imagefinder.pipeline.analyzeThreads",
+            Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_ENCODE_THREADS = Integer.getInteger("imagefinder.pipeline.encodeThreads", 2);
+    public static final int DEFAULT_QUEUE_CAPACITY = Integer.getInteger("imagefinder.pipeline.queueCapacity", 32);
+    public static final int DEFAULT_HANDOFF_THREADS = Integer.getInteger("imagefinder.pipeline.handoffThreads", 2);
+    public static final int DEFAULT_FAVICON_THREADS = Integer.getInteger("imagefinder.pipeline.faviconThreads", 2);
+
+    private final Stage handoff;
+    private final Stage download;
+    private final Stage analyze;
+    private final Stage encode;
+    private final Stage favicon;
+
+    public ImagePipeline() {
+        this(DEFAULT_DOWNLOAD_THREADS, DEFAULT_ANALYZE_THREADS, DEFAULT_ENCODE_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public ImagePipeline(int downloadThreads, int analyzeThreads, int encodeThreads, int queueCapacity) {
+        this.handoff = new Stage("handoff", DEFAULT_HANDOFF_THREADS, new LinkedBlockingQueue<>());
+        this.download = new Stage("download", downloadThreads, bounded("download", queueCapacity));
+        this.analyze = new Stage("analyze", analyzeThreads, bounded("analyze", queueCapacity));
+        this.encode = new Stage("encode", encodeThreads, bounded("encode", queueCapacity));
+        this.favicon = new Stage("favicon", DEFAULT_FAVICON_THREADS, new LinkedBlockingQueue<>());
+    }
+
+    private static BlockingQueue<Runnable> bounded(String name, int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid " + name + " stage queue capacity: " + queueCapacity);
+        }
+        return new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Runs the continuations that submit fetched images to the stages, e.g. with
+     * {@code thenComposeAsync(..., pipeline.handoff())}, so a full stage makes a handoff
+     * thread wait rather than a fetcher IO thread.
+     */
+    public Executor handoff() {
+        return handoff::execute;
+    }
+
+    /** Runs I/O work, such as storing fetched image bytes. */
+    public <T> CompletableFuture<T> download(Callable<T> work) {
+        return download.submit(work);
+    }
+
+    /** Runs CPU-bound work, such as decoding and classification. */
+    public <T> CompletableFuture<T> analyze(Callable<T> work) {
+        return analyze.submit(work);
+    }
+
+    /** Runs output work, such as resizing and writing thumbnails. */
+    public <T> CompletableFuture<T> encode(Callable<T> work) {
+        return encode.submit(work);
+    }
+
+    /** Runs favicon checks, which block on the network. */
+    public <T> CompletableFuture<T> favicon(Callable<T> work) {
+        return favicon.submit(work);
+    }
+
+    /**
+     * Per-stage counters, in pipeline order, followed by the favicon stage.
+     */
+    public List<Stats> stats() {
+        List<Stats> stats = new ArrayList<>();
+        for (Stage stage : stages()) {
+            stats.add(stage.stats());
+        }
+        return stats;
+    }
+
+    private Stage[] stages() {
+        return new Stage[] {handoff, download, analyze, encode, favicon};
+    }
+
+    /**
+     * Stops accepting work and waits up to {@code timeout} for queued tasks to drain.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        for (Stage stage : stages()) {
+            stage.executor.shutdown();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Stage stage : stages()) {
+            try {
+                if (!stage.executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    stage.executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                stage.executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Stage {
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final long startedAt = System.nanoTime();
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong callerRuns = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        Stage(String name, int threads, BlockingQueue<Runnable> queue) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("Invalid " + name + " stage size: threads=" + threads);
+            }
+            this.name = name;
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    queue,
+                    task -> {
+                        Thread thread = new Thread(task, "image-" + name + "-" + threadIndex.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (task, pool) -> {
+                        // Backpressure: run in the submitting thread, but never after shutdown.
+                        if (pool.isShutdown()) {
+                            throw new RejectedExecutionException("Image pipeline is shut down.");
+                        }
+                        callerRuns.incrementAndGet();
+                        task.run();
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        <T> CompletableFuture<T> submit(Callable<T> work) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            submitted.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        T value = work.call();
+                        completed.incrementAndGet();
+                        result.complete(value);
+                    } catch (Throwable e) {
+                        failed.incrementAndGet();
+                        result.completeExceptionally(e);
+                    } finally {
+                        busyNanos.addAndGet(System.nanoTime() - start);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                failed.incrementAndGet();
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+
+        /**
+         * Runs a plain task, such as a {@link CompletableFuture} continuation, and throws
+         * {@link RejectedExecutionException} after shutdown so the continuation fails instead
+         * of never running.
+         */
+        void execute(Runnable task) {
+            submitted.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        task.run();
+                        completed.incrementAndGet();
+                    } catch (RuntimeException | Error e) {
+                        failed.incrementAndGet();
+                        throw e;
+                    } finally {
+                        busyNanos.addAndGet(System.nanoTime() - start);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                failed.incrementAndGet();
+                throw e;
+            }
+        }
+
+        Stats stats() {
+            long uptimeNanos = Math.max(1, System.nanoTime() - startedAt);
+            return new Stats(name, executor.getMaximumPoolSize(), executor.getActiveCount(),
+                    executor.getQueue().size(), executor.getQueue().size() + executor.getQueue().remainingCapacity(),
+                    submitted.get(), completed.get(), failed.get(), callerRuns.get(),
+                    busyNanos.get(), uptimeNanos);
+        }
+    }
+
+    /**
+     * Point-in-time counters of one stage.
+     */
+    public static class Stats {
+        public final String stage;
+        public final int threads;
+        public final int active;
+        public final int queueDepth;
+        public final int queueCapacity;
+        public final long submitted;
+        public final long completed;
+        public final long failed;
+        public final long callerRuns;
+        public final long busyNanos;
+        public final long uptimeNanos;
+
+        Stats(String stage, int threads, int active, int queueDepth, int queueCapacity, long submitted,
+              long completed, long failed, long callerRuns, long busyNanos, long uptimeNanos) {
+            this.stage = stage;
+            this.threads = threads;
+            this.active = active;
+            this.queueDepth = queueDepth;
+            this.queueCapacity = queueCapacity;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.failed = failed;
+            this.callerRuns = callerRuns;
+            this.busyNanos = busyNanos;
+            this.uptimeNanos = uptimeNanos;
+        }
+
+        /** Completed tasks per second since the pipeline started. */
+        public double throughput() {
+            return completed / (uptimeNanos / 1e9);
+        }
+
+        /** Average time a task spent running in this stage. */
+        public double averageMillis() {
+            long finished = completed + failed;
+            return finished == 0 ? 0.0 : busyNanos / 1e6 / finished;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s threads=%d active=%d queue=%d/%d completed=%d failed=%d callerRuns=%d avg=%.1fms",
+                    stage, threads, active, queueDepth, queueCapacity, completed, failed, callerRuns, averageMillis());
+        }
+    }
+}
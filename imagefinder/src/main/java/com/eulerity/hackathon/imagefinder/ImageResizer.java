@@ -1,9 +1,9 @@
 package com.eulerity.hackathon.imagefinder;
 
-import java.awt.Graphics2D;
-import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
 import javax.imageio.ImageIO;
 
 /**
@@ -11,24 +11,16 @@ import javax.imageio.ImageIO;
  */
 public class ImageResizer {
 
-    static {
-        try {
-            // Load the OpenCV native library using its full absolute path.
-            System.load("C:\\Users\\030825130\\Downloads\\opencv\\build\\java\\x64\\opencv_java3416.dll");
-            System.out.println("Successfully loaded opencv_java3416.dll");
-        } catch (UnsatisfiedLinkError e) {
-            System.err.println("Error loading opencv_java3416.dll: " + e.getMessage());
-            throw e;
-        }
-    }
+    /** Suffix of the double-resolution variant written next to each thumbnail. */
+    public static final String RETINA_SUFFIX = "@2x";
 
     /**
-     * Resizes an image to the specified width and height.
+     * Resizes an image to fit within the specified width and height, keeping its aspect ratio.
      *
      * @param inputImagePath  Path to the original image file.
      * @param outputImagePath Path where the resized image will be saved.
-     * @param scaledWidth     Desired width (in pixels).
-     * @param scaledHeight    Desired height (in pixels).
+     * @param scaledWidth     Maximum width (in pixels).
+     * @param scaledHeight    Maximum height (in pixels).
      * @throws Exception if an error occurs during reading or writing.
      */
     public static void resize(String inputImagePath,
@@ -42,17 +34,62 @@ public class ImageResizer {
             throw new IllegalArgumentException("Could not read input file: " + inputImagePath);
         }
 
-        // 2) Create a new BufferedImage to draw the scaled image.
-        BufferedImage resizedImage = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_RGB);
+        resize(originalImage, new File(outputImagePath), scaledWidth, scaledHeight);
+    }
 
-        // 3) Draw the original image, scaled, onto the new BufferedImage.
-        Graphics2D g2d = resizedImage.createGraphics();
-        g2d.drawImage(originalImage.getScaledInstance(scaledWidth, scaledHeight, Image.SCALE_SMOOTH),
-                      0, 0, scaledWidth, scaledHeight, null);
-        g2d.dispose();
+    /**
+     * Resizes an already decoded image to fit within the given box and writes it as a JPEG.
+     *
+     * @param originalImage the image to resize.
+     * @param outputFile    where the resized image will be saved.
+     * @param scaledWidth   Maximum width (in pixels).
+     * @param scaledHeight  Maximum height (in pixels).
+     * @throws Exception if an error occurs during writing.
+     */
+    public static void resize(BufferedImage originalImage,
+                              File outputFile,
+                              int scaledWidth,
+                              int scaledHeight) throws Exception {
+        long start = System.nanoTime();
+        BufferedImage resizedImage = ResizeEngine.resize(originalImage,
+                new ResizeEngine.Spec(scaledWidth, scaledHeight, ResizeEngine.Mode.FIT));
+        ResizeEngine.writeJpeg(resizedImage, outputFile, ResizeEngine.DEFAULT_JPEG_QUALITY);
+        Metrics.RESIZE.observeSince(start);
+    }
 
-        // 4) Write the resized image to the output path (using "jpg" as an example).
-        ImageIO.write(resizedImage, "jpg", new File(outputImagePath));
+    /**
+     * Writes the thumbnail and its double-resolution variant from one decoded image.
+     * The retina file is named like {@code outputFile} with {@link #RETINA_SUFFIX}
+     * before the extension.
+     *
+     * @param originalImage the image to resize.
+     * @param outputFile    where the thumbnail will be saved.
+     * @param scaledWidth   Maximum thumbnail width (in pixels).
+     * @param scaledHeight  Maximum thumbnail height (in pixels).
+     * @throws Exception if an error occurs during writing.
+     */
+    public static void resizeWithRetina(BufferedImage originalImage,
+                                        File outputFile,
+                                        int scaledWidth,
+                                        int scaledHeight) throws Exception {
+        long start = System.nanoTime();
+        ResizeEngine.Spec thumbnail = new ResizeEngine.Spec(scaledWidth, scaledHeight, ResizeEngine.Mode.FIT);
+        ResizeEngine.Spec retina = new ResizeEngine.Spec(scaledWidth * 2, scaledHeight * 2, ResizeEngine.Mode.FIT);
+        Map<ResizeEngine.Spec, BufferedImage> resized =
+                ResizeEngine.resizeAll(originalImage, Arrays.asList(retina, thumbnail));
+
+        ResizeEngine.writeJpeg(resized.get(thumbnail), outputFile, ResizeEngine.DEFAULT_JPEG_QUALITY);
+        ResizeEngine.writeJpeg(resized.get(retina), retinaFile(outputFile), ResizeEngine.DEFAULT_JPEG_QUALITY);
+        Metrics.RESIZE.observeSince(start);
+    }
+
+    /**
+     * Returns the file name of the retina variant of a thumbnail.
+     */
+    public static File retinaFile(File thumbnailFile) {
+        String name = thumbnailFile.getName();
+        int dot = name.lastIndexOf('.');
+        String retinaName = dot < 0 ? name + RETINA_SUFFIX : name.substring(0, dot) + RETINA_SUFFIX + name.substring(dot);
+        return new File(thumbnailFile.getParentFile(), retinaName);
     }
-    
 }
@@ -0,0 +1,238 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cheap-first classification cascade that runs before the OpenCV detectors.
+ *
+ * Each tier looks at a cheaper feature than the next and rejects images that cannot be
+ * people or logos, so the face and logo detectors only see plausible candidates:
+ * <ol>
+ *   <li>dimensions: tracking pixels and spacers smaller than {@code minSide} are dropped
+ *       altogether, and strips longer than {@code maxAspect} times their height (or width)
+ *       are not analyzed;</li>
+ *   <li>colors: images with fewer than {@code minColors} distinct colors are flat fills;</li>
+ *   <li>edges: images whose edge density is below {@code minEdgeDensity} have no structure
+ *       to detect.</li>
+ * </ol>
+ * Images that pass are routed: faces are only searched in images at least
+ * {@code faceMinSide} pixels on the shorter side with at least {@code faceMinColors} colors
+ * (twice as many if the image has transparency), i.e. photos rather than icons or flat
+ * graphics, and logos in images at least {@code logoMinSide}
+ * pixels on the shorter side.
+ *
+ * Colors, alpha and edges are measured on a grid of at most {@value #SAMPLE_SIDE} x
+ * {@value #SAMPLE_SIDE} pixels. Thresholds are read from {@code imagefinder.triage.*}
+ * properties.
+ */
+public class ImageTriage {
+    static final int SAMPLE_SIDE = 64;
+    /** Summed absolute gray difference to the right and lower neighbours that counts as an edge. */
+    private static final int EDGE_THRESHOLD = 48;
+
+    public static final int DEFAULT_MIN_SIDE = Integer.getInteger("imagefinder.triage.minSide", 16);
+    public static final double DEFAULT_MAX_ASPECT =
+            Double.parseDouble(System.getProperty("imagefinder.triage.maxAspect", "8"));
+    public static final int DEFAULT_MIN_COLORS = Integer.getInteger("imagefinder.triage.minColors", 3);
+    public static final double DEFAULT_MIN_EDGE_DENSITY =
+            Double.parseDouble(System.getProperty("imagefinder.triage.minEdgeDensity", "0.01"));
+    public static final int DEFAULT_FACE_MIN_SIDE = Integer.getInteger("imagefinder.triage.faceMinSide", 48);
+    public static final int DEFAULT_FACE_MIN_COLORS = Integer.getInteger("imagefinder.triage.faceMinColors", 48);
+    public static final int DEFAULT_LOGO_MIN_SIDE = Integer.getInteger("imagefinder.triage.logoMinSide", 24);
+
+    /** Cheap features of an image. */
+    public static final class Features {
+        public final int width;
+        public final int height;
+        public final double aspectRatio;
+        /** Distinct colors in the sample grid, counted up to {@code SAMPLE_SIDE * SAMPLE_SIDE}. */
+        public final int colors;
+        public final boolean hasAlpha;
+        /** Share of sampled pixels on an edge, from 0 to 1. */
+        public final double edgeDensity;
+
+        Features(int width, int height, int colors, boolean hasAlpha, double edgeDensity) {
+            this.width = width;
+            this.height = height;
+            this.aspectRatio = (double) Math.max(width, height) / Math.max(1, Math.min(width, height));
+            this.colors = colors;
+            this.hasAlpha = hasAlpha;
+            this.edgeDensity = edgeDensity;
+        }
+    }
+
+    /** What to do with an image. */
+    public static final class Decision {
+        /** False if the image should be dropped instead of published. */
+        public final boolean publish;
+        public final boolean detectFaces;
+        public final boolean detectLogos;
+        /** The tier that rejected the image, or null if it passed. */
+        public final String rejectedBy;
+        /** Null if the image was rejected before its features were measured. */
+        public final Features features;
+
+        Decision(boolean publish, boolean detectFaces, boolean detectLogos, String rejectedBy, Features features) {
+            this.publish = publish;
+            this.detectFaces = detectFaces;
+            this.detectLogos = detectLogos;
+            this.rejectedBy = rejectedBy;
+            this.features = features;
+        }
+    }
+
+    /** Counts of one tier, or of one detector's routing. */
+    public static final class Stats {
+        public final String tier;
+        public final long evaluated;
+        public final long rejected;
+
+        Stats(String tier, long evaluated, long rejected) {
+            this.tier = tier;
+            this.evaluated = evaluated;
+            this.rejected = rejected;
+        }
+
+        public double rejectRate() {
+            return evaluated == 0 ? 0 : (double) rejected / evaluated;
+        }
+    }
+
+    private static final class Tier {
+        final String name;
+        final LongAdder evaluated = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+
+        Tier(String name) {
+            this.name = name;
+        }
+
+        boolean record(boolean reject) {
+            evaluated.increment();
+            if (reject) {
+                rejected.increment();
+            }
+            return reject;
+        }
+
+        Stats stats() {
+            return new Stats(name, evaluated.sum(), rejected.sum());
+        }
+    }
+
+    private final int minSide;
+    private final double maxAspect;
+    private final int minColors;
+    private final double minEdgeDensity;
+    private final int faceMinSide;
+    private final int faceMinColors;
+    private final int logoMinSide;
+    private final Tier dimensions = new Tier("dimensions");
+    private final Tier colors = new Tier("colors");
+    private final Tier edges = new Tier("edges");
+    private final Tier faceRouting = new Tier("faceRouting");
+    private final Tier logoRouting = new Tier("logoRouting");
+
+    public ImageTriage() {
+        this(DEFAULT_MIN_SIDE, DEFAULT_MAX_ASPECT, DEFAULT_MIN_COLORS, DEFAULT_MIN_EDGE_DENSITY,
+                DEFAULT_FACE_MIN_SIDE, DEFAULT_FACE_MIN_COLORS, DEFAULT_LOGO_MIN_SIDE);
+    }
+
+    public ImageTriage(int minSide, double maxAspect, int minColors, double minEdgeDensity,
+                       int faceMinSide, int faceMinColors, int logoMinSide) {
+        this.minSide = minSide;
+        this.maxAspect = maxAspect;
+        this.minColors = minColors;
+        this.minEdgeDensity = minEdgeDensity;
+        this.faceMinSide = faceMinSide;
+        this.faceMinColors = faceMinColors;
+        this.logoMinSide = logoMinSide;
+    }
+
+    /**
+     * Runs the cascade on a decoded image. Safe to call from several threads at once.
+     */
+    public Decision evaluate(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int shorter = Math.min(width, height);
+
+        // Tier 1: dimensions only.
+        boolean tiny = shorter < minSide;
+        boolean strip = !tiny && (double) Math.max(width, height) / shorter > maxAspect;
+        if (dimensions.record(tiny || strip)) {
+            return new Decision(!tiny, false, false, dimensions.name, null);
+        }
+
+        // Tier 2: colors and alpha of a sample grid; tier 3: edge density of the same grid.
+        Features features = measure(image);
+        if (colors.record(features.colors < minColors)) {
+            return new Decision(true, false, false, colors.name, features);
+        }
+        if (edges.record(features.edgeDensity < minEdgeDensity)) {
+            return new Decision(true, false, false, edges.name, features);
+        }
+
+        // Transparent images are cut-out graphics unless they have clearly photo-like colors.
+        int photoColors = features.hasAlpha ? 2 * faceMinColors : faceMinColors;
+        boolean faces = !faceRouting.record(shorter < faceMinSide || features.colors < photoColors);
+        boolean logos = !logoRouting.record(shorter < logoMinSide);
+        return new Decision(true, faces, logos, null, features);
+    }
+
+    /**
+     * Reject counts of every tier, in cascade order, followed by the detector routing.
+     */
+    public List<Stats> stats() {
+        return new ArrayList<>(Arrays.asList(dimensions.stats(), colors.stats(), edges.stats(),
+                faceRouting.stats(), logoRouting.stats()));
+    }
+
+    static Features measure(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int cols = Math.min(width, SAMPLE_SIDE);
+        int rows = Math.min(height, SAMPLE_SIDE);
+        boolean alphaRaster = image.getColorModel().hasAlpha();
+
+        int[] gray = new int[cols * rows];
+        Set<Integer> distinct = new HashSet<>();
+        boolean hasAlpha = false;
+        for (int r = 0; r < rows; r++) {
+            int y = (int) ((r + 0.5) * height / rows);
+            for (int c = 0; c < cols; c++) {
+                int x = (int) ((c + 0.5) * width / cols);
+                int argb = image.getRGB(x, y);
+                if (alphaRaster && (argb >>> 24) < 255) {
+                    hasAlpha = true;
+                }
+                distinct.add(argb);
+                int red = (argb >> 16) & 0xFF;
+                int green = (argb >> 8) & 0xFF;
+                int blue = argb & 0xFF;
+                gray[r * cols + c] = (red * 299 + green * 587 + blue * 114) / 1000;
+            }
+        }
+
+        int edgePixels = 0;
+        int compared = 0;
+        for (int r = 0; r < rows - 1; r++) {
+            for (int c = 0; c < cols - 1; c++) {
+                int here = gray[r * cols + c];
+                int gradient = Math.abs(gray[r * cols + c + 1] - here) + Math.abs(gray[(r + 1) * cols + c] - here);
+                if (gradient > EDGE_THRESHOLD) {
+                    edgePixels++;
+                }
+                compared++;
+            }
+        }
+        double edgeDensity = compared == 0 ? 0 : (double) edgePixels / compared;
+        return new Features(width, height, distinct.size(), hasAlpha, edgeDensity);
+    }
+}
@@ -3,6 +3,7 @@ package com.eulerity.hackathon.imagefinder;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.opencv.calib3d.Calib3d;
 import org.opencv.core.*;
 import org.opencv.features2d.*;
 import org.opencv.imgcodecs.Imgcodecs;
@@ -13,17 +14,108 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Logo detection from website URLs or direct image URLs.
+ *
+ * Images are recognized against the brand library in {@code imagefinder.logos.library}
+ * (default {@code templates/logos} and {@code templates/detected_logos}) through a
+ * {@link LogoIndex} of ORB descriptors kept in {@code imagefinder.logos.index}. A brand
+ * matches when at least {@code imagefinder.logos.minMatches} descriptors match its logo and
+ * at least {@code imagefinder.logos.minInliers} of them agree on one homography.
  */
 public class LogoDetector {
     private static final String LOGO_DIR = "src/main/resources/detected_logos";
-    private static final double MATCH_THRESHOLD = 250.0; // Adjust this for accuracy
+    public static final File INDEX_FILE = new File(System.getProperty("imagefinder.logos.index",
+            "src/main/resources/templates/logo-index.bin"));
+    public static final String LIBRARY_DIRS = System.getProperty("imagefinder.logos.library",
+            "src/main/resources/templates/logos,src/main/resources/templates/detected_logos");
+    public static final int MIN_MATCHES = Integer.getInteger("imagefinder.logos.minMatches", 12);
+    public static final int MIN_INLIERS = Integer.getInteger("imagefinder.logos.minInliers", 10);
+    /** Longer side of the copy that features are computed on. */
+    private static final int MAX_FEATURE_SIDE = 800;
+    private static final int MAX_FEATURES = 500;
+    /** RANSAC reprojection threshold in pixels. */
+    private static final double MAX_REPROJECTION_ERROR = 5.0;
+
+    // Feature2D instances are not safe for concurrent use.
+    private static final ThreadLocal<ORB> orb = ThreadLocal.withInitial(() -> ORB.create(MAX_FEATURES));
+    private static final LogoIndex index;
 
     static {
         System.load("C:\\Users\\030825130\\Downloads\\opencv\\build\\java\\x64\\opencv_java3416.dll");
+        index = loadIndex();
+    }
+
+    /** A library logo recognized in an image. */
+    public static final class LogoMatch {
+        public final String brand;
+        public final String logoPath;
+        public final int matches;
+        public final int inliers;
+
+        LogoMatch(String brand, String logoPath, int matches, int inliers) {
+            this.brand = brand;
+            this.logoPath = logoPath;
+            this.matches = matches;
+            this.inliers = inliers;
+        }
+    }
+
+    private static LogoIndex loadIndex() {
+        List<File> dirs = new ArrayList<>();
+        for (String dir : LIBRARY_DIRS.split(",")) {
+            if (!dir.trim().isEmpty()) {
+                dirs.add(new File(dir.trim()));
+            }
+        }
+        try {
+            return LogoIndex.loadOrBuild(INDEX_FILE, dirs, LogoDetector::extractFeatures);
+        } catch (IOException e) {
+            System.err.println("❌ Could not load the logo index: " + e.getMessage());
+            return new LogoIndex(Collections.<LogoIndex.Logo>emptyList());
+        }
+    }
+
+    private static LogoIndex.Features extractFeatures(File logoFile) {
+        try (MatScope scope = new MatScope()) {
+            Mat image = scope.track(Imgcodecs.imread(logoFile.getPath(), Imgcodecs.IMREAD_GRAYSCALE));
+            return image.empty() ? null : features(image);
+        }
+    }
+
+    /**
+     * ORB keypoints and descriptors of a grayscale image, computed on a copy whose longer
+     * side is at most {@link #MAX_FEATURE_SIDE}.
+     */
+    private static LogoIndex.Features features(Mat gray) {
+        try (MatScope scope = new MatScope()) {
+            Mat small = gray;
+            int longest = Math.max(gray.cols(), gray.rows());
+            if (longest > MAX_FEATURE_SIDE) {
+                double scale = (double) MAX_FEATURE_SIDE / longest;
+                small = scope.mat(Math.max(1, (int) Math.round(gray.rows() * scale)),
+                        Math.max(1, (int) Math.round(gray.cols() * scale)), gray.type());
+                Imgproc.resize(gray, small, small.size(), 0, 0, Imgproc.INTER_AREA);
+            }
+            MatOfKeyPoint keypoints = scope.track(new MatOfKeyPoint());
+            Mat descriptors = scope.mat();
+            orb.get().detectAndCompute(small, scope.mat(), keypoints, descriptors);
+            KeyPoint[] points = keypoints.toArray();
+            if (points.length == 0 || descriptors.empty()) {
+                return new LogoIndex.Features(new float[0], new byte[0]);
+            }
+            float[] coordinates = new float[points.length * 2];
+            for (int i = 0; i < points.length; i++) {
+                coordinates[2 * i] = (float) points[i].pt.x;
+                coordinates[2 * i + 1] = (float) points[i].pt.y;
+            }
+            byte[] bytes = new byte[points.length * LogoIndex.DESCRIPTOR_BYTES];
+            descriptors.get(0, 0, bytes);
+            return new LogoIndex.Features(coordinates, bytes);
+        }
     }
 
     /**
@@ -146,24 +238,87 @@ public class LogoDetector {
     }
 
     /**
-     * Detects if an image is a logo using OpenCV's SIFT feature detector.
+     * Detects if an image shows a logo of the brand library.
      * @param imagePath Path to the image file.
      * @return True if the image is a logo.
      */
     public static boolean containsLogo(String imagePath) {
-        Mat image = Imgcodecs.imread(imagePath, Imgcodecs.IMREAD_GRAYSCALE);
-        if (image.empty()) {
-            System.err.println("❌ Failed to load image: " + imagePath);
-            return false;
+        try (MatScope scope = new MatScope()) {
+            Mat image = scope.track(Imgcodecs.imread(imagePath, Imgcodecs.IMREAD_GRAYSCALE));
+            if (image.empty()) {
+                System.err.println("❌ Failed to load image: " + imagePath);
+                return false;
+            }
+            return containsLogo(image);
         }
+    }
+
+    /**
+     * Detects if an already decoded image is a logo, using its shared grayscale view.
+     * @param image The decoded image.
+     * @return True if the image is a logo.
+     */
+    public static boolean containsLogo(DecodedImage image) {
+        return recognize(image) != null;
+    }
+
+    /**
+     * Finds the library logo shown in an already decoded image.
+     * @param image The decoded image.
+     * @return The best verified match, or null if no brand was recognized.
+     */
+    public static LogoMatch recognize(DecodedImage image) {
+        return recognize(image.gray());
+    }
+
+    private static boolean containsLogo(Mat image) {
+        return recognize(image) != null;
+    }
 
-        // **Feature Detection**
-        SIFT sift = SIFT.create();
-        MatOfKeyPoint keypoints = new MatOfKeyPoint();
-        Mat descriptors = new Mat();
-        sift.detectAndCompute(image, new Mat(), keypoints, descriptors);
+    private static LogoMatch recognize(Mat gray) {
+        long start = System.nanoTime();
+        try {
+            LogoIndex.Features query = features(gray);
+            if (query.size() < MIN_MATCHES) {
+                return null;
+            }
+            LogoMatch best = null;
+            for (LogoIndex.Candidate candidate : index.match(query, MIN_MATCHES)) {
+                if (best != null && candidate.size() <= best.inliers) {
+                    break; // candidates are sorted; this one cannot have more inliers
+                }
+                int inliers = countInliers(query, candidate);
+                if (inliers >= MIN_INLIERS && (best == null || inliers > best.inliers)) {
+                    best = new LogoMatch(candidate.logo.brand, candidate.logo.path, candidate.size(), inliers);
+                }
+            }
+            return best;
+        } finally {
+            Metrics.LOGO_DETECT.observeSince(start);
+        }
+    }
 
-        return keypoints.size().height > 50;  // Arbitrary threshold for logo-like features
+    /**
+     * Geometric check: how many matches agree on one homography from the logo to the image.
+     */
+    private static int countInliers(LogoIndex.Features query, LogoIndex.Candidate candidate) {
+        Point[] logoPoints = new Point[candidate.size()];
+        Point[] queryPoints = new Point[candidate.size()];
+        float[] logo = candidate.logo.features.points;
+        for (int i = 0; i < candidate.size(); i++) {
+            int l = candidate.logoPoints[i];
+            int q = candidate.queryPoints[i];
+            logoPoints[i] = new Point(logo[2 * l], logo[2 * l + 1]);
+            queryPoints[i] = new Point(query.points[2 * q], query.points[2 * q + 1]);
+        }
+        try (MatScope scope = new MatScope()) {
+            MatOfPoint2f src = scope.track(new MatOfPoint2f(logoPoints));
+            MatOfPoint2f dst = scope.track(new MatOfPoint2f(queryPoints));
+            Mat inlierMask = scope.mat();
+            Mat homography = scope.track(
+                    Calib3d.findHomography(src, dst, Calib3d.RANSAC, MAX_REPROJECTION_ERROR, inlierMask));
+            return homography.empty() ? 0 : Core.countNonZero(inlierMask);
+        }
     }
 
     /**
@@ -0,0 +1,383 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Binary feature descriptors (256-bit ORB) of every logo in the brand library, searchable by
+ * Hamming distance.
+ *
+ * The library is a set of directories of logo images. A file directly in a library
+ * directory is the brand named after the file; files in a subdirectory all belong to the
+ * brand named after the subdirectory. Descriptors are computed once per file and stored in
+ * a compact binary index file, which is loaded at startup and only updated for logos that
+ * were added, changed or removed since.
+ *
+ * Nearest neighbours are found with bit-sampling LSH: each table hashes a descriptor by a
+ * fixed random subset of its bits, so descriptors a few bits apart land in the same bucket
+ * of at least one table. Candidates are then compared exactly and filtered with Lowe's
+ * ratio test. Geometric verification of the matches is left to the caller, which has the
+ * image coordinates of both sides.
+ */
+public class LogoIndex {
+    public static final int DESCRIPTOR_BYTES = 32;
+    private static final int DESCRIPTOR_LONGS = DESCRIPTOR_BYTES / 8;
+    private static final int MAGIC = 0x4C4F474F; // "LOGO"
+    private static final int VERSION = 1;
+    private static final int TABLES = 8;
+    private static final int KEY_BITS = 16;
+    /** Descriptors further apart than this never match. */
+    static final int MAX_DISTANCE = 64;
+    /** A match must be clearly closer than the runner-up (Lowe's ratio test). */
+    static final double RATIO = 0.8;
+    private static final List<String> IMAGE_EXTENSIONS = Arrays.asList("png", "jpg", "jpeg", "gif", "bmp", "webp");
+
+    /** Computes the features of a library image, or returns null if it cannot be read. */
+    public interface FeatureExtractor {
+        Features extract(File image) throws IOException;
+    }
+
+    /** Keypoint coordinates and their descriptors, in the same order. */
+    public static final class Features {
+        /** x and y of each keypoint, interleaved. */
+        public final float[] points;
+        /** {@link #DESCRIPTOR_BYTES} bytes per keypoint. */
+        public final byte[] descriptors;
+
+        public Features(float[] points, byte[] descriptors) {
+            if (points.length / 2 != descriptors.length / DESCRIPTOR_BYTES) {
+                throw new IllegalArgumentException("points and descriptors differ in length");
+            }
+            this.points = points;
+            this.descriptors = descriptors;
+        }
+
+        public int size() {
+            return points.length / 2;
+        }
+    }
+
+    /** One logo image of the library. */
+    public static final class Logo {
+        public final String brand;
+        public final String path;
+        final long lastModified;
+        public final Features features;
+
+        Logo(String brand, String path, long lastModified, Features features) {
+            this.brand = brand;
+            this.path = path;
+            this.lastModified = lastModified;
+            this.features = features;
+        }
+    }
+
+    /** Descriptor matches between a query image and one library logo. */
+    public static final class Candidate {
+        public final Logo logo;
+        /** Query keypoint index of each match. */
+        public final int[] queryPoints;
+        /** Logo keypoint index of each match. */
+        public final int[] logoPoints;
+
+        Candidate(Logo logo, int[] queryPoints, int[] logoPoints) {
+            this.logo = logo;
+            this.queryPoints = queryPoints;
+            this.logoPoints = logoPoints;
+        }
+
+        public int size() {
+            return queryPoints.length;
+        }
+    }
+
+    private final List<Logo> logos;
+    private final long[] bits;      // DESCRIPTOR_LONGS per descriptor
+    private final int[] owner;      // logo of each descriptor
+    private final int[] keypoint;   // index of each descriptor within its logo
+    private final int[][] sampledBits = new int[TABLES][KEY_BITS];
+    private final int[][] bucketStart = new int[TABLES][];
+    private final int[][] bucketIds = new int[TABLES][];
+
+    public LogoIndex(List<Logo> logos) {
+        this.logos = Collections.unmodifiableList(new ArrayList<>(logos));
+        int total = 0;
+        for (Logo logo : logos) {
+            total += logo.features.size();
+        }
+        bits = new long[total * DESCRIPTOR_LONGS];
+        owner = new int[total];
+        keypoint = new int[total];
+        int id = 0;
+        for (int l = 0; l < logos.size(); l++) {
+            Features features = logos.get(l).features;
+            for (int k = 0; k < features.size(); k++, id++) {
+                pack(features.descriptors, k, bits, id);
+                owner[id] = l;
+                keypoint[id] = k;
+            }
+        }
+
+        Random random = new Random(42); // fixed, so the tables are the same on every start
+        for (int t = 0; t < TABLES; t++) {
+            for (int b = 0; b < KEY_BITS; b++) {
+                sampledBits[t][b] = random.nextInt(DESCRIPTOR_BYTES * 8);
+            }
+            int[] start = new int[(1 << KEY_BITS) + 1];
+            for (int d = 0; d < total; d++) {
+                start[key(t, bits, d) + 1]++;
+            }
+            for (int k = 0; k < 1 << KEY_BITS; k++) {
+                start[k + 1] += start[k];
+            }
+            int[] ids = new int[total];
+            int[] next = Arrays.copyOf(start, 1 << KEY_BITS);
+            for (int d = 0; d < total; d++) {
+                ids[next[key(t, bits, d)]++] = d;
+            }
+            bucketStart[t] = start;
+            bucketIds[t] = ids;
+        }
+    }
+
+    public List<Logo> getLogos() {
+        return logos;
+    }
+
+    public int descriptorCount() {
+        return owner.length;
+    }
+
+    /**
+     * Matches each query descriptor to its nearest library descriptor and groups the
+     * matches that pass the distance and ratio tests by logo.
+     *
+     * @return logos with at least {@code minMatches} matches, most matches first.
+     */
+    public List<Candidate> match(Features query, int minMatches) {
+        int n = query.size();
+        long[] queryBits = new long[n * DESCRIPTOR_LONGS];
+        for (int q = 0; q < n; q++) {
+            pack(query.descriptors, q, queryBits, q);
+        }
+
+        Map<Integer, List<int[]>> byLogo = new HashMap<>();
+        int[] checked = new int[owner.length];
+        for (int q = 0; q < n; q++) {
+            int best = -1;
+            int bestDistance = Integer.MAX_VALUE;
+            int secondDistance = Integer.MAX_VALUE;
+            for (int t = 0; t < TABLES; t++) {
+                int k = key(t, queryBits, q);
+                for (int i = bucketStart[t][k]; i < bucketStart[t][k + 1]; i++) {
+                    int d = bucketIds[t][i];
+                    if (checked[d] == q + 1) {
+                        continue;
+                    }
+                    checked[d] = q + 1;
+                    int distance = hamming(queryBits, q, bits, d);
+                    if (distance < bestDistance) {
+                        secondDistance = bestDistance;
+                        bestDistance = distance;
+                        best = d;
+                    } else if (distance < secondDistance) {
+                        secondDistance = distance;
+                    }
+                }
+            }
+            if (best >= 0 && bestDistance <= MAX_DISTANCE && bestDistance < RATIO * secondDistance) {
+                byLogo.computeIfAbsent(owner[best], l -> new ArrayList<>()).add(new int[] {q, keypoint[best]});
+            }
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<Integer, List<int[]>> entry : byLogo.entrySet()) {
+            List<int[]> pairs = entry.getValue();
+            if (pairs.size() < minMatches) {
+                continue;
+            }
+            int[] queryPoints = new int[pairs.size()];
+            int[] logoPoints = new int[pairs.size()];
+            for (int i = 0; i < pairs.size(); i++) {
+                queryPoints[i] = pairs.get(i)[0];
+                logoPoints[i] = pairs.get(i)[1];
+            }
+            candidates.add(new Candidate(logos.get(entry.getKey()), queryPoints, logoPoints));
+        }
+        candidates.sort((a, b) -> Integer.compare(b.size(), a.size()));
+        return candidates;
+    }
+
+    /**
+     * Loads the index file and brings it up to date with the library directories,
+     * extracting features only for new or modified logo files. The index file is rewritten
+     * if anything changed.
+     */
+    public static LogoIndex loadOrBuild(File indexFile, List<File> libraryDirs, FeatureExtractor extractor)
+            throws IOException {
+        Map<String, Logo> stored = new HashMap<>();
+        if (indexFile.isFile()) {
+            try {
+                for (Logo logo : read(indexFile)) {
+                    stored.put(logo.path, logo);
+                }
+            } catch (IOException e) {
+                System.err.println("⚠️ Rebuilding unreadable logo index " + indexFile + ": " + e.getMessage());
+            }
+        }
+
+        Map<String, Logo> current = new LinkedHashMap<>();
+        int extracted = 0;
+        for (File dir : libraryDirs) {
+            for (Map.Entry<File, String> image : libraryImages(dir).entrySet()) {
+                File file = image.getKey();
+                String path = file.getPath();
+                Logo logo = stored.get(path);
+                if (logo == null || logo.lastModified != file.lastModified()) {
+                    Features features = extractor.extract(file);
+                    extracted++;
+                    if (features == null || features.size() == 0) {
+                        continue;
+                    }
+                    logo = new Logo(image.getValue(), path, file.lastModified(), features);
+                }
+                current.put(path, logo);
+            }
+        }
+
+        List<Logo> logos = new ArrayList<>(current.values());
+        if (extracted > 0 || !current.keySet().equals(stored.keySet())) {
+            write(indexFile, logos);
+        }
+        System.out.println("✅ Logo index ready: " + logos.size() + " logos (" + extracted + " newly indexed).");
+        return new LogoIndex(logos);
+    }
+
+    /**
+     * Image files of a library directory, mapped to their brand.
+     */
+    static Map<File, String> libraryImages(File dir) {
+        Map<File, String> images = new LinkedHashMap<>();
+        File[] entries = dir.listFiles();
+        if (entries == null) {
+            return images;
+        }
+        Arrays.sort(entries);
+        for (File entry : entries) {
+            if (entry.isDirectory()) {
+                File[] files = entry.listFiles();
+                if (files != null) {
+                    Arrays.sort(files);
+                    for (File file : files) {
+                        if (isImage(file)) {
+                            images.put(file, entry.getName());
+                        }
+                    }
+                }
+            } else if (isImage(entry)) {
+                String name = entry.getName();
+                images.put(entry, name.substring(0, name.lastIndexOf('.')));
+            }
+        }
+        return images;
+    }
+
+    private static boolean isImage(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return file.isFile() && dot > 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    static void write(File indexFile, List<Logo> logos) throws IOException {
+        File parent = indexFile.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(logos.size());
+            for (Logo logo : logos) {
+                out.writeUTF(logo.brand);
+                out.writeUTF(logo.path);
+                out.writeLong(logo.lastModified);
+                out.writeInt(logo.features.size());
+                for (float coordinate : logo.features.points) {
+                    out.writeFloat(coordinate);
+                }
+                out.write(logo.features.descriptors);
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static List<Logo> read(File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a logo index of version " + VERSION);
+            }
+            int count = in.readInt();
+            List<Logo> logos = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String brand = in.readUTF();
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                int size = in.readInt();
+                float[] points = new float[size * 2];
+                for (int p = 0; p < points.length; p++) {
+                    points[p] = in.readFloat();
+                }
+                byte[] descriptors = new byte[size * DESCRIPTOR_BYTES];
+                in.readFully(descriptors);
+                logos.add(new Logo(brand, path, lastModified, new Features(points, descriptors)));
+            }
+            return logos;
+        }
+    }
+
+    private static void pack(byte[] descriptors, int index, long[] target, int slot) {
+        int offset = index * DESCRIPTOR_BYTES;
+        for (int l = 0; l < DESCRIPTOR_LONGS; l++) {
+            long value = 0;
+            for (int b = 0; b < 8; b++) {
+                value |= (descriptors[offset + l * 8 + b] & 0xFFL) << (b * 8);
+            }
+            target[slot * DESCRIPTOR_LONGS + l] = value;
+        }
+    }
+
+    private int key(int table, long[] packed, int slot) {
+        int key = 0;
+        for (int b = 0; b < KEY_BITS; b++) {
+            int bit = sampledBits[table][b];
+            key |= (int) ((packed[slot * DESCRIPTOR_LONGS + (bit >>> 6)] >>> (bit & 63)) & 1L) << b;
+        }
+        return key;
+    }
+
+    private static int hamming(long[] a, int slotA, long[] b, int slotB) {
+        int distance = 0;
+        for (int l = 0; l < DESCRIPTOR_LONGS; l++) {
+            distance += Long.bitCount(a[slotA * DESCRIPTOR_LONGS + l] ^ b[slotB * DESCRIPTOR_LONGS + l]);
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,114 @@
+package com.eulerity.hackathon.imagefinder;
+
+/**
+ * Set of primitive longs using open addressing with linear probing.
+ *
+ * Each entry costs 8 bytes of table space (at most 16 bytes at the lowest load factor),
+ * against roughly 50 bytes for a {@code HashSet<Long>}. {@link #add} checks and inserts
+ * under one lock, so concurrent callers can use its result to claim a value.
+ */
+public class LongHashSet {
+    private static final float MAX_LOAD = 0.75f;
+
+    // 0 marks an empty slot; the value 0 itself is tracked separately.
+    private long[] table;
+    private int size;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity <<= 1;
+        }
+        table = new long[capacity];
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @return true if the value was not in the set before.
+     */
+    public synchronized boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = table.length - 1;
+        int slot = slot(value, mask);
+        while (table[slot] != 0) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        size++;
+        if (size > table.length * MAX_LOAD) {
+            grow();
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int mask = table.length - 1;
+        int slot = slot(value, mask);
+        while (table[slot] != 0) {
+            if (table[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Bytes used by the table, for memory reporting.
+     */
+    public synchronized long memoryBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length << 1];
+        int mask = table.length - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int slot = slot(value, mask);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of the value (MurmurHash3 finalizer) before masking, so keys that
+     * differ only in their high bits do not cluster.
+     */
+    private static int slot(long value, int mask) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
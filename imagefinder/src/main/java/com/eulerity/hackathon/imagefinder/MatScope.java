@@ -0,0 +1,173 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Owns the OpenCV Mats of one piece of work and releases them when it is closed, instead of
+ * leaving their native memory to the finalizer:
+ * <pre>
+ * try (MatScope scope = new MatScope()) {
+ *     Mat small = scope.mat(rows, cols, CvType.CV_8UC1);
+ *     MatOfRect faces = scope.track(new MatOfRect());
+ *     ...
+ * }
+ * </pre>
+ * Mats allocated with {@link #mat(int, int, int)} come from a per-thread pool and go back to
+ * it on close, so a thread that keeps seeing images of the same size reuses their buffers.
+ * Each thread pools at most {@code imagefinder.opencv.poolMats} Mats (default 8) and
+ * {@code imagefinder.opencv.poolMb} of pixels (default 32); the oldest are released first.
+ *
+ * Every Mat is counted in {@link NativeMemory#OPENCV} while the scope is open, at its size when
+ * it was allocated or tracked. A scope is meant for the thread that opened it and is not
+ * thread-safe.
+ */
+public final class MatScope implements AutoCloseable {
+    public static final int POOL_MATS = Integer.getInteger("imagefinder.opencv.poolMats", 8);
+    public static final long POOL_BYTES = Long.getLong("imagefinder.opencv.poolMb", 32) * 1024 * 1024;
+
+    private static final ThreadLocal<Pool> pools = ThreadLocal.withInitial(Pool::new);
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<>();
+
+    private final NativeMemory memory;
+    private final List<Entry> entries = new ArrayList<>();
+    private boolean closed;
+
+    public MatScope() {
+        this(NativeMemory.OPENCV);
+    }
+
+    public MatScope(NativeMemory memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * Releases {@code mat} when the scope closes.
+     */
+    public <T extends Mat> T track(T mat) {
+        long bytes = mat.total() * mat.elemSize();
+        entries.add(new Entry(mat, -1, -1, -1, bytes));
+        memory.allocated(bytes);
+        return mat;
+    }
+
+    /**
+     * An empty Mat for OpenCV to fill, released when the scope closes.
+     */
+    public Mat mat() {
+        return track(new Mat());
+    }
+
+    /**
+     * A Mat of the given size and type from this thread's pool, or a new one. Its contents
+     * are undefined. It goes back to the pool when the scope closes, unless OpenCV has
+     * reallocated it in the meantime.
+     */
+    public Mat mat(int rows, int cols, int type) {
+        long bytes = (long) rows * cols * CvType.ELEM_SIZE(type);
+        Mat mat = pools.get().take(rows, cols, type, memory);
+        if (mat == null) {
+            mat = new Mat(rows, cols, type);
+        }
+        entries.add(new Entry(mat, rows, cols, type, bytes));
+        memory.allocated(bytes);
+        return mat;
+    }
+
+    /**
+     * Releases every Mat of the scope, or returns it to this thread's pool, in reverse order
+     * of allocation.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Pool pool = pools.get();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            memory.freed(entry.bytes);
+            if (!pool.give(entry, memory)) {
+                entry.mat.release();
+            }
+        }
+        entries.clear();
+    }
+
+    /**
+     * A scratch byte array of at least {@code length} bytes, reused by the calling thread.
+     * Its contents are undefined and it may be handed out again by the next call on the same
+     * thread. Arrays larger than the pool limit are not kept.
+     */
+    public static byte[] buffer(int length) {
+        byte[] buffer = buffers.get();
+        if (buffer != null && buffer.length >= length) {
+            return buffer;
+        }
+        buffer = new byte[length];
+        if (length <= POOL_BYTES) {
+            buffers.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static final class Entry {
+        final Mat mat;
+        final int rows;
+        final int cols;
+        final int type; // -1 for tracked Mats, which are not pooled
+        final long bytes;
+
+        Entry(Mat mat, int rows, int cols, int type, long bytes) {
+            this.mat = mat;
+            this.rows = rows;
+            this.cols = cols;
+            this.type = type;
+            this.bytes = bytes;
+        }
+
+        boolean poolable() {
+            return type >= 0 && mat.rows() == rows && mat.cols() == cols && mat.type() == type;
+        }
+    }
+
+    /** Idle Mats of one thread, most recently returned first. */
+    private static final class Pool {
+        private final ArrayDeque<Entry> idle = new ArrayDeque<>();
+        private long bytes;
+
+        Mat take(int rows, int cols, int type, NativeMemory memory) {
+            for (Iterator<Entry> it = idle.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.rows == rows && entry.cols == cols && entry.type == type) {
+                    it.remove();
+                    bytes -= entry.bytes;
+                    memory.pooled(-entry.bytes);
+                    return entry.mat;
+                }
+            }
+            return null;
+        }
+
+        boolean give(Entry entry, NativeMemory memory) {
+            if (POOL_MATS <= 0 || entry.bytes > POOL_BYTES || !entry.poolable()) {
+                return false;
+            }
+            while (!idle.isEmpty() && (idle.size() >= POOL_MATS || bytes + entry.bytes > POOL_BYTES)) {
+                Entry oldest = idle.removeLast();
+                bytes -= oldest.bytes;
+                memory.pooled(-oldest.bytes);
+                oldest.mat.release();
+            }
+            idle.addFirst(entry);
+            bytes += entry.bytes;
+            memory.pooled(entry.bytes);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JVM-wide latency histograms and counters of the crawl and image pipeline, exposed in the
+ * Prometheus text format by {@link MetricsServlet}.
+ *
+ * Recording only increments {@link LongAdder}s, so the hot paths never take a lock and
+ * threads recording the same metric do not contend on one cache line. Time a stage with
+ * {@code long start = System.nanoTime(); ...; Metrics.RESIZE.observeSince(start);}.
+ */
+public final class Metrics {
+    /** Upper bounds of the latency buckets, in seconds. */
+    private static final double[] BUCKET_SECONDS = {
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+
+    public static final Histogram FETCH = new Histogram("fetch");
+    public static final Histogram RENDER = new Histogram("render");
+    public static final Histogram DOWNLOAD = new Histogram("download");
+    public static final Histogram DECODE = new Histogram("decode");
+    public static final Histogram FACE_DETECT = new Histogram("face_detect");
+    public static final Histogram LOGO_DETECT = new Histogram("logo_detect");
+    public static final Histogram RESIZE = new Histogram("resize");
+    public static final Histogram HASH = new Histogram("hash");
+    public static final Histogram FAVICON = new Histogram("favicon");
+    private static final Histogram[] STAGES = {
+            FETCH, RENDER, DOWNLOAD, DECODE, FACE_DETECT, LOGO_DETECT, RESIZE, HASH, FAVICON
+    };
+
+    public static final Counter PAGES = new Counter();
+    public static final Counter IMAGES = new Counter();
+    public static final Counter DUPLICATES = new Counter();
+    public static final Counter PAGE_ERRORS = new Counter();
+    public static final Counter IMAGE_ERRORS = new Counter();
+    public static final Counter FAVICON_ERRORS = new Counter();
+
+    private Metrics() {
+    }
+
+    /**
+     * Appends every histogram and counter in the Prometheus text format.
+     */
+    public static void write(StringBuilder out) {
+        out.append("# HELP imagefinder_stage_seconds Latency of each crawl and image pipeline stage.\n");
+        out.append("# TYPE imagefinder_stage_seconds histogram\n");
+        for (Histogram stage : STAGES) {
+            stage.write(out, "imagefinder_stage_seconds");
+        }
+
+        counter(out, "imagefinder_pages_total", "Pages crawled.", PAGES.get());
+        counter(out, "imagefinder_images_total", "Unique images reported to clients.", IMAGES.get());
+        counter(out, "imagefinder_duplicates_total", "Images skipped as exact or near duplicates.", DUPLICATES.get());
+        out.append("# HELP imagefinder_errors_total Failed pages, images and favicons.\n");
+        out.append("# TYPE imagefinder_errors_total counter\n");
+        sample(out, "imagefinder_errors_total{source=\"page\"}", PAGE_ERRORS.get());
+        sample(out, "imagefinder_errors_total{source=\"image\"}", IMAGE_ERRORS.get());
+        sample(out, "imagefinder_errors_total{source=\"favicon\"}", FAVICON_ERRORS.get());
+    }
+
+    public static void counter(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        sample(out, name, value);
+    }
+
+    public static void gauge(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        sample(out, name, value);
+    }
+
+    /**
+     * Appends one sample line; {@code series} is the metric name with its labels, if any.
+     */
+    public static void sample(StringBuilder out, String series, double value) {
+        out.append(series).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    /** A monotonically increasing count. */
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void inc() {
+            count.increment();
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /** Latency distribution of one stage over fixed buckets. */
+    public static final class Histogram {
+        private final String stage;
+        private final long[] boundsNanos = new long[BUCKET_SECONDS.length];
+        private final LongAdder[] buckets = new LongAdder[BUCKET_SECONDS.length + 1]; // last one is +Inf
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram(String stage) {
+            this.stage = stage;
+            for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+                boundsNanos[i] = (long) (BUCKET_SECONDS[i] * TimeUnit.SECONDS.toNanos(1));
+            }
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void observeSince(long startNanos) {
+            observeNanos(System.nanoTime() - startNanos);
+        }
+
+        public void observeNanos(long nanos) {
+            int i = 0;
+            while (i < boundsNanos.length && nanos > boundsNanos[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        public long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        void write(StringBuilder out, String name) {
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                String le = i < BUCKET_SECONDS.length ? Double.toString(BUCKET_SECONDS[i]) : "+Inf";
+                sample(out, name + "_bucket{stage=\"" + stage + "\",le=\"" + le + "\"}", cumulative);
+            }
+            sample(out, name + "_sum{stage=\"" + stage + "\"}", sumNanos.sum() / 1e9);
+            sample(out, name + "_count{stage=\"" + stage + "\"}", cumulative);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exposes the {@link Metrics} histograms and counters, plus gauges read from the shared
+ * crawl engine, in the Prometheus text format.
+ */
+@WebServlet(
+    name = "Metrics",
+    urlPatterns = {"/metrics"}
+)
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        CrawlEngine engine = CrawlEngine.from(getServletContext());
+
+        StringBuilder out = new StringBuilder(8192);
+        Metrics.write(out);
+
+        Metrics.gauge(out, "imagefinder_crawl_active_tasks", "Crawl tasks running on the workers.",
+                engine.getActiveTasks());
+        Metrics.gauge(out, "imagefinder_crawl_queued_tasks", "Crawl tasks waiting for a worker.",
+                engine.getQueuedTasks());
+        Metrics.gauge(out, "imagefinder_crawl_workers", "Crawl worker threads.", engine.getWorkerCount());
+        Metrics.gauge(out, "imagefinder_crawls_running", "Crawls with an open frontier.",
+                engine.getFrontierStats().size());
+        Metrics.gauge(out, "imagefinder_jobs", "Crawl jobs kept by the job API.", engine.getJobs().size());
+
+        WebDriverPool.Stats pool = engine.getDriverPool().stats();
+        out.append("# HELP imagefinder_browsers Browsers in the pool.\n");
+        out.append("# TYPE imagefinder_browsers gauge\n");
+        Metrics.sample(out, "imagefinder_browsers{state=\"idle\"}", pool.idle);
+        Metrics.sample(out, "imagefinder_browsers{state=\"leased\"}", pool.leased);
+        Metrics.gauge(out, "imagefinder_browser_waiters", "Pages waiting to lease a browser.", pool.waiting);
+
+        out.append("# HELP imagefinder_pipeline_active_tasks Image pipeline tasks running, per stage.\n");
+        out.append("# TYPE imagefinder_pipeline_active_tasks gauge\n");
+        for (ImagePipeline.Stats stage : engine.getImagePipeline().stats()) {
+            Metrics.sample(out, "imagefinder_pipeline_active_tasks{stage=\"" + stage.stage + "\"}", stage.active);
+        }
+        out.append("# HELP imagefinder_pipeline_queue_size Image pipeline tasks waiting, per stage.\n");
+        out.append("# TYPE imagefinder_pipeline_queue_size gauge\n");
+        for (ImagePipeline.Stats stage : engine.getImagePipeline().stats()) {
+            Metrics.sample(out, "imagefinder_pipeline_queue_size{stage=\"" + stage.stage + "\"}", stage.queueDepth);
+        }
+
+        List<ImageTriage.Stats> triage = engine.getImageTriage().stats();
+        out.append("# HELP imagefinder_triage_evaluated_total Images reaching each triage tier.\n");
+        out.append("# TYPE imagefinder_triage_evaluated_total counter\n");
+        for (ImageTriage.Stats tier : triage) {
+            Metrics.sample(out, "imagefinder_triage_evaluated_total{tier=\"" + tier.tier + "\"}", tier.evaluated);
+        }
+        out.append("# HELP imagefinder_triage_rejected_total Images rejected by each triage tier.\n");
+        out.append("# TYPE imagefinder_triage_rejected_total counter\n");
+        for (ImageTriage.Stats tier : triage) {
+            Metrics.sample(out, "imagefinder_triage_rejected_total{tier=\"" + tier.tier + "\"}", tier.rejected);
+        }
+
+        NativeMemory.Stats memory = NativeMemory.OPENCV.stats();
+        Metrics.gauge(out, "imagefinder_opencv_native_bytes", "Native memory held by open OpenCV Mats.",
+                memory.inUseBytes);
+        Metrics.gauge(out, "imagefinder_opencv_pooled_bytes", "Native memory held by idle pooled Mats.",
+                memory.pooledBytes);
+        Metrics.gauge(out, "imagefinder_opencv_reserved_bytes", "Native memory reserved by images in the OpenCV stages.",
+                memory.reservedBytes);
+        Metrics.gauge(out, "imagefinder_opencv_budget_bytes", "Native memory budget for the OpenCV stages.",
+                memory.budgetBytes);
+        Metrics.counter(out, "imagefinder_opencv_throttled_total", "Images that waited for native memory.",
+                memory.throttled);
+        Metrics.counter(out, "imagefinder_opencv_throttled_seconds_total", "Time images waited for native memory.",
+                memory.throttledNanos / 1e9);
+
+        HttpFetcher.Stats fetch = engine.getHttpFetcher().stats();
+        Metrics.gauge(out, "imagefinder_fetch_in_flight", "Requests sent and not yet answered.", fetch.inFlight);
+        Metrics.gauge(out, "imagefinder_fetch_queue_size", "Requests waiting in the per-host queues.", fetch.queued);
+        Metrics.counter(out, "imagefinder_fetch_requests_total", "HTTP requests sent.", fetch.requests);
+        Metrics.counter(out, "imagefinder_fetch_throttled_total", "Responses asking us to slow down.",
+                fetch.throttled);
+
+        HttpCache.Stats cache = engine.getHttpCache().stats();
+        Metrics.counter(out, "imagefinder_http_cache_hits_total", "Responses served from the HTTP cache.",
+                cache.hits);
+        Metrics.counter(out, "imagefinder_http_cache_misses_total", "Responses fetched from the network.",
+                cache.misses);
+        Metrics.gauge(out, "imagefinder_http_cache_bytes", "Bytes stored in the HTTP cache.", cache.bytes);
+
+        resp.setContentType("text/plain; version=0.0.4");
+        resp.setCharacterEncoding("UTF-8");
+        resp.getWriter().print(out);
+    }
+}
@@ -0,0 +1,135 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accounting of the native memory held by OpenCV Mats, which the heap does not show.
+ *
+ * Mats allocated through a {@link MatScope} are counted as in use until the scope closes,
+ * and as pooled while they wait in a thread's {@link MatScope} pool. Images entering the
+ * OpenCV stages {@link #reserve reserve} their expected footprint first; once the
+ * reservations reach {@code imagefinder.opencv.maxNativeMb} (default 512), further images
+ * wait until earlier ones are released, which throttles intake instead of growing the
+ * process.
+ */
+public class NativeMemory {
+    public static final long DEFAULT_BUDGET_BYTES = Long.getLong("imagefinder.opencv.maxNativeMb", 512) * 1024 * 1024;
+
+    /** The budget shared by every OpenCV stage. */
+    public static final NativeMemory OPENCV = new NativeMemory(DEFAULT_BUDGET_BYTES);
+
+    private final long budgetBytes;
+    private final Object lock = new Object();
+    private long reservedBytes; // guarded by lock
+    private final AtomicLong inUseBytes = new AtomicLong();
+    private final AtomicLong peakBytes = new AtomicLong();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+
+    public NativeMemory(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /** Snapshot of the accounting. */
+    public static final class Stats {
+        public final long budgetBytes;
+        public final long reservedBytes;
+        public final long inUseBytes;
+        public final long peakBytes;
+        public final long pooledBytes;
+        public final long throttled;
+        public final long throttledNanos;
+
+        Stats(long budgetBytes, long reservedBytes, long inUseBytes, long peakBytes, long pooledBytes,
+              long throttled, long throttledNanos) {
+            this.budgetBytes = budgetBytes;
+            this.reservedBytes = reservedBytes;
+            this.inUseBytes = inUseBytes;
+            this.peakBytes = peakBytes;
+            this.pooledBytes = pooledBytes;
+            this.throttled = throttled;
+            this.throttledNanos = throttledNanos;
+        }
+    }
+
+    /** Native memory set aside for one image; closing it returns the memory to the budget. */
+    public final class Reservation implements AutoCloseable {
+        public final long bytes;
+        private boolean closed;
+
+        Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            synchronized (lock) {
+                if (!closed) {
+                    closed = true;
+                    reservedBytes -= bytes;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserves native memory, waiting while the reservations already granted would exceed the
+     * budget. A reservation larger than the whole budget is granted once nothing else is
+     * reserved, so oversized images are processed one at a time instead of never.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting.
+     */
+    public Reservation reserve(long bytes) throws InterruptedIOException {
+        synchronized (lock) {
+            if (!fits(bytes)) {
+                throttled.increment();
+                long start = System.nanoTime();
+                try {
+                    while (!fits(bytes)) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for native memory");
+                } finally {
+                    throttledNanos.add(System.nanoTime() - start);
+                }
+            }
+            reservedBytes += bytes;
+            return new Reservation(bytes);
+        }
+    }
+
+    private boolean fits(long bytes) {
+        return reservedBytes == 0 || reservedBytes + bytes <= budgetBytes;
+    }
+
+    /** Records Mats taken into use. */
+    public void allocated(long bytes) {
+        long now = inUseBytes.addAndGet(bytes);
+        peakBytes.accumulateAndGet(now, Math::max);
+    }
+
+    /** Records Mats released or returned to a pool. */
+    public void freed(long bytes) {
+        inUseBytes.addAndGet(-bytes);
+    }
+
+    /** Records Mats entering ({@code bytes > 0}) or leaving a pool. */
+    public void pooled(long bytes) {
+        pooledBytes.addAndGet(bytes);
+    }
+
+    public Stats stats() {
+        long reserved;
+        synchronized (lock) {
+            reserved = reservedBytes;
+        }
+        return new Stats(budgetBytes, reserved, inUseBytes.get(), peakBytes.get(), pooledBytes.get(),
+                throttled.sum(), throttledNanos.sum());
+    }
+}
@@ -0,0 +1,145 @@
+package com.eulerity.hackathon.imagefinder;
+
+import com.google.gson.Gson;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes newline-delimited JSON records to an async response using servlet
+ * non-blocking I/O. Records may be sent from any thread; they are queued and
+ * written whenever the container reports the output stream as ready, so no
+ * container thread is held while the crawl runs.
+ */
+public class NdjsonResponseStream implements WriteListener, AsyncListener {
+    private static final Gson GSON = new Gson();
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream out;
+    private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean finished;
+    private volatile Runnable onAbort;
+    private boolean closed; // guarded by this
+
+    /**
+     * Registers the stream as write listener of the async response.
+     */
+    public NdjsonResponseStream(AsyncContext asyncContext) throws IOException {
+        this.asyncContext = asyncContext;
+        this.out = asyncContext.getResponse().getOutputStream();
+        asyncContext.addListener(this);
+        out.setWriteListener(this);
+    }
+
+    /**
+     * Runs {@code onAbort} once if the response fails or times out before
+     * {@link #finish} has written everything, e.g. when the client disconnects.
+     */
+    public void setOnAbort(Runnable onAbort) {
+        this.onAbort = onAbort;
+    }
+
+    /**
+     * Queues one record to be written as a single JSON line.
+     */
+    public void send(Object record) {
+        pending.add((GSON.toJson(record) + "\n").getBytes(StandardCharsets.UTF_8));
+        drain();
+    }
+
+    /**
+     * Queues a final record and completes the response once everything has been written.
+     */
+    public void finish(Object trailer) {
+        if (trailer != null) {
+            pending.add((GSON.toJson(trailer) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        finished = true;
+        drain();
+    }
+
+    @Override
+    public void onWritePossible() {
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        System.err.println("❌ Streaming response failed: " + t.getMessage());
+        abort();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        System.err.println("⚠️ Streaming response timed out.");
+        abort();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        onError(event.getThrowable());
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        synchronized (this) {
+            closed = true;
+        }
+        pending.clear();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private synchronized void drain() {
+        if (closed) {
+            return;
+        }
+        try {
+            while (out.isReady()) {
+                byte[] next = pending.poll();
+                if (next == null) {
+                    if (finished) {
+                        close();
+                    } else {
+                        // Push what has been written so far to the client right away.
+                        out.flush();
+                    }
+                    return;
+                }
+                out.write(next);
+            }
+            // Not ready: the container calls onWritePossible() when it can take more.
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private void abort() {
+        boolean wasOpen;
+        synchronized (this) {
+            wasOpen = !closed;
+        }
+        close();
+        Runnable onAbort = this.onAbort;
+        if (wasOpen && onAbort != null) {
+            onAbort.run();
+        }
+    }
+
+    private synchronized void close() {
+        if (!closed) {
+            closed = true;
+            pending.clear();
+            asyncContext.complete();
+        }
+    }
+}
@@ -1,14 +1,27 @@
 package com.eulerity.hackathon.imagefinder;
 
 
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayOutputStream;
 import javax.imageio.ImageIO;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
 import org.opencv.imgcodecs.Imgcodecs;
 
 public class OpenCVUtils {
+    /** The color model of TYPE_3BYTE_BGR images. */
+    private static final ComponentColorModel BGR_COLOR_MODEL = new ComponentColorModel(
+            ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
 
     /**
      * Converts a BufferedImage to an OpenCV Mat.
@@ -27,7 +40,69 @@ public class OpenCVUtils {
 
         // Convert the byte array into an OpenCV Mat.
         MatOfByte mob = new MatOfByte(imageBytes);
-        Mat mat = Imgcodecs.imdecode(mob, Imgcodecs.IMREAD_UNCHANGED);
+        try {
+            return Imgcodecs.imdecode(mob, Imgcodecs.IMREAD_UNCHANGED);
+        } finally {
+            mob.release();
+        }
+    }
+
+    /**
+     * Converts a BufferedImage to an 8-bit BGR Mat by copying its raster directly,
+     * without encoding it to an intermediate JPEG.
+     *
+     * @param bi the BufferedImage to convert; any image type is accepted.
+     * @return a CV_8UC3 Mat with the image pixels in BGR order, which the caller releases.
+     */
+    public static Mat toBgrMat(BufferedImage bi) {
+        Mat mat = new Mat(bi.getHeight(), bi.getWidth(), CvType.CV_8UC3);
+        copyBgr(bi, mat);
+        return mat;
+    }
+
+    /**
+     * Like {@link #toBgrMat(BufferedImage)}, but the Mat comes from, and is released by, the scope.
+     */
+    public static Mat toBgrMat(BufferedImage bi, MatScope scope) {
+        Mat mat = scope.mat(bi.getHeight(), bi.getWidth(), CvType.CV_8UC3);
+        copyBgr(bi, mat);
         return mat;
     }
+
+    /**
+     * Copies the pixels of an image into a CV_8UC3 Mat of the same size. Images of another
+     * type are converted in a scratch buffer reused by the calling thread.
+     */
+    private static void copyBgr(BufferedImage bi, Mat mat) {
+        if (bi.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            mat.put(0, 0, ((DataBufferByte) bi.getRaster().getDataBuffer()).getData());
+            return;
+        }
+        int width = bi.getWidth();
+        int height = bi.getHeight();
+        int length = width * height * 3;
+        byte[] buffer = MatScope.buffer(length);
+        WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(buffer, length),
+                width, height, width * 3, 3, new int[] {2, 1, 0}, null);
+        BufferedImage bgrImage = new BufferedImage(BGR_COLOR_MODEL, raster, false, null);
+        Graphics2D g = bgrImage.createGraphics();
+        g.setBackground(Color.BLACK); // the buffer holds the previous image; transparent pixels blend with black
+        g.clearRect(0, 0, width, height);
+        g.drawImage(bi, 0, 0, null);
+        g.dispose();
+        mat.put(0, 0, buffer, 0, length);
+    }
+
+    /**
+     * Converts an 8-bit BGR Mat back to a BufferedImage with the same pixel layout.
+     *
+     * @param mat a CV_8UC3 Mat in BGR order.
+     * @return a TYPE_3BYTE_BGR image.
+     */
+    public static BufferedImage toBufferedImage(Mat mat) {
+        BufferedImage image = new BufferedImage(mat.cols(), mat.rows(), BufferedImage.TYPE_3BYTE_BGR);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        mat.get(0, 0, data);
+        return image;
+    }
 }
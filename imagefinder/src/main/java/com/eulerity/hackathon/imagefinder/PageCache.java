@@ -0,0 +1,156 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-crawl deduplication of page fetches, keyed by canonical URL.
+ *
+ * The canonical form is only the key: a page is fetched at the URL it was requested with,
+ * and parsed against the URL it was finally served from, so relative links and images on a
+ * page that redirects (e.g. {@code /blog} to {@code /blog/}) resolve as in a browser.
+ *
+ * Every stage that needs a page (link discovery, favicon lookup, image extraction)
+ * reads it from here, and concurrent requests for the same page wait for the single fetch
+ * in progress. Only fetches in progress are held: a page is forgotten as soon as it has been
+ * handed to its callers, so a crawl never keeps the parsed documents of pages it is done
+ * with. A later request for the same page is served by the engine's {@link HttpCache},
+ * which persists across crawls.
+ */
+public class PageCache {
+    static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 " +
+            "(KHTML, like Gecko) Chrome/90.0.4430.93 Safari/537.36";
+    private static final Pattern CHARSET = Pattern.compile("(?i)charset=([^;]+)");
+
+    private final HttpCache httpCache;
+    private final ConcurrentHashMap<String, CompletableFuture<Page>> pages = new ConcurrentHashMap<>();
+
+    /**
+     * @param httpCache the engine's persistent HTTP cache, so repeat crawls revalidate pages
+     *                  instead of downloading them again.
+     */
+    public PageCache(HttpCache httpCache) {
+        this.httpCache = httpCache;
+    }
+
+    /**
+     * Returns the page, sharing the fetch another stage of this crawl has in progress.
+     *
+     * @throws IOException if the page could not be fetched.
+     */
+    public Page get(String url) throws IOException {
+        return HttpFetcher.join(getAsync(url, Runnable::run));
+    }
+
+    /**
+     * Same as {@link #get(String)}, without blocking while the page downloads.
+     *
+     * @param parser runs the parsing of the page once it has arrived, so it stays off the
+     *               fetcher's IO threads.
+     */
+    public CompletableFuture<Page> getAsync(String url, Executor parser) {
+        String key = cacheKey(url);
+        CompletableFuture<Page> existing = pages.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<Page> mine = new CompletableFuture<>();
+        existing = pages.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing;
+        }
+        long start = System.nanoTime();
+        httpCache.fetchAsync(url)
+                .whenComplete((response, error) -> Metrics.FETCH.observeSince(start))
+                .thenApplyAsync(PageCache::toPage, parser)
+                .whenComplete((page, error) -> {
+                    pages.remove(key, mine);
+                    if (error != null) {
+                        mine.completeExceptionally(HttpFetcher.unwrap(error));
+                    } else {
+                        mine.complete(page);
+                    }
+                });
+        return mine;
+    }
+
+    /** Pages being fetched or parsed. */
+    public int size() {
+        return pages.size();
+    }
+
+    private static Page toPage(HttpCache.Response response) {
+        String contentType = response.contentType;
+        Document document = null;
+        if (isMarkup(contentType)) {
+            try {
+                document = Jsoup.parse(new ByteArrayInputStream(response.body), charsetOf(contentType),
+                        response.finalUrl);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        long downloaded = response.source == HttpCache.Source.NETWORK ? response.body.length : 0;
+        return new Page(response.finalUrl, response.statusCode, contentType, document, downloaded);
+    }
+
+    /**
+     * The charset parameter of a content type, or null to let jsoup detect it from the markup.
+     */
+    static String charsetOf(String contentType) {
+        Matcher matcher = CHARSET.matcher(contentType);
+        if (!matcher.find()) {
+            return null;
+        }
+        String charset = matcher.group(1).trim().replace("\"", "");
+        try {
+            return Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static boolean isMarkup(String contentType) {
+        return contentType != null && (contentType.startsWith("text/") ||
+                contentType.startsWith("application/xml") ||
+                (contentType.startsWith("application/") && contentType.endsWith("+xml")));
+    }
+
+    /**
+     * Cache key of a URL: its canonical form, so equivalent spellings share one entry.
+     */
+    static String cacheKey(String url) {
+        return UrlCanonicalizer.DEFAULT.canonicalize(url);
+    }
+
+    /**
+     * A fetched page. {@link #document} is null when the response is not HTML or XML.
+     */
+    public static class Page {
+        /** Where the page was served from, after following redirects. */
+        public final String url;
+        public final int statusCode;
+        public final String contentType;
+        public final Document document;
+        /** Body bytes that came from the network rather than the HTTP cache. */
+        public final long downloadedBytes;
+
+        Page(String url, int statusCode, String contentType, Document document, long downloadedBytes) {
+            this.url = url;
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.document = document;
+            this.downloadedBytes = downloadedBytes;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.WebDriver;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for a rendered page to stop changing instead of sleeping for a fixed time.
+ *
+ * The wait runs inside the page as one async script: a MutationObserver and the
+ * Resource Timing buffer track when the DOM or the network last changed, and the
+ * script returns as soon as the document is complete, every image has finished
+ * loading and nothing has changed for a short quiet period, or the budget runs out.
+ */
+public class PageSettler {
+    public static final long DEFAULT_RENDER_BUDGET_MS = Long.getLong("imagefinder.render.budgetMs", 15000);
+    private static final long QUIET_PERIOD_MS = Long.getLong("imagefinder.render.quietMs", 500);
+
+    private static final String AWAIT_STABLE_SCRIPT =
+            "var done = arguments[arguments.length - 1], quiet = arguments[0], budget = arguments[1];"
+            + "var start = Date.now(), last = start, resources = -1;"
+            + "var observer = new MutationObserver(function() { last = Date.now(); });"
+            + "observer.observe(document.documentElement, {childList: true, subtree: true, attributes: true,"
+            + "    attributeFilter: ['src', 'srcset', 'style', 'class']});"
+            + "(function check() {"
+            + "  var count = performance.getEntriesByType('resource').length;"
+            + "  if (count !== resources) { resources = count; last = Date.now(); }"
+            + "  var pending = 0;"
+            + "  for (var i = 0; i < document.images.length; i++) { if (!document.images[i].complete) pending++; }"
+            + "  var now = Date.now();"
+            + "  var stable = document.readyState === 'complete' && pending === 0 && now - last >= quiet;"
+            + "  if (stable || now - start >= budget) { observer.disconnect(); done([now - start, pending]); }"
+            + "  else { setTimeout(check, 50); }"
+            + "})();";
+
+    private final WebDriver driver;
+    private final long deadline;
+    private long waitedMillis;
+
+    /**
+     * @param driver   the browser showing the page.
+     * @param budgetMs total time the page may spend waiting for content, across all settle calls.
+     */
+    public PageSettler(WebDriver driver, long budgetMs) {
+        this.driver = driver;
+        this.deadline = System.currentTimeMillis() + budgetMs;
+    }
+
+    /**
+     * Blocks until the page is stable or the remaining render budget is used up.
+     *
+     * @return true if the page settled, false if the budget ran out first.
+     */
+    public boolean awaitStable() {
+        long remaining = remainingMillis();
+        if (remaining <= 0) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            driver.manage().timeouts().setScriptTimeout(remaining + 1000, TimeUnit.MILLISECONDS);
+            Object result = ((JavascriptExecutor) driver).executeAsyncScript(AWAIT_STABLE_SCRIPT, QUIET_PERIOD_MS, remaining);
+            if (result instanceof List) {
+                List<?> values = (List<?>) result;
+                return ((Number) values.get(1)).longValue() == 0 && remainingMillis() > 0;
+            }
+            return false;
+        } catch (ScriptTimeoutException e) {
+            return false;
+        } finally {
+            waitedMillis += System.currentTimeMillis() - start;
+        }
+    }
+
+    public long remainingMillis() {
+        return deadline - System.currentTimeMillis();
+    }
+
+    public boolean isExhausted() {
+        return remainingMillis() <= 0;
+    }
+
+    /**
+     * Total time spent waiting for the page to settle so far.
+     */
+    public long getWaitedMillis() {
+        return waitedMillis;
+    }
+}
@@ -0,0 +1,246 @@
+package com.eulerity.hackathon.imagefinder;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded index of 64-bit difference hashes (dHash) used to find near-duplicate images,
+ * such as the same picture served by a CDN in several sizes or qualities.
+ *
+ * Lookups use multi-index hashing: the hash is split into four 16-bit chunks, and two
+ * hashes within {@code maxDistance} bits of each other must have at least one chunk within
+ * {@code maxDistance / 4} bits, so only the buckets of those chunk variants are compared.
+ * When the index is full, the least recently matched or added entry is evicted.
+ */
+public class PerceptualHashIndex {
+    public static final int DEFAULT_MAX_DISTANCE = Integer.getInteger("imagefinder.dedup.maxDistance", 6);
+    public static final int DEFAULT_MAX_ENTRIES = Integer.getInteger("imagefinder.dedup.maxEntries", 10000);
+
+    /** Smallest side of the subsampled decode the hash is computed from. */
+    private static final int SAMPLE_SIZE = 64;
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+
+    private final int maxDistance;
+    private final int maxEntries;
+    private final LinkedHashMap<Long, String> entries; // guarded by this, in LRU order
+    private final List<Map<Integer, List<Long>>> chunkTables = new ArrayList<>(); // guarded by this
+    private long lookups;
+    private long hits;
+    private long evictions;
+
+    public PerceptualHashIndex() {
+        this(DEFAULT_MAX_DISTANCE, DEFAULT_MAX_ENTRIES);
+    }
+
+    public PerceptualHashIndex(int maxDistance, int maxEntries) {
+        if (maxDistance < 0 || maxDistance >= CHUNKS * CHUNK_BITS || maxEntries <= 0) {
+            throw new IllegalArgumentException("Invalid index settings: maxDistance=" + maxDistance
+                    + " maxEntries=" + maxEntries);
+        }
+        this.maxDistance = maxDistance;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        for (int i = 0; i < CHUNKS; i++) {
+            chunkTables.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Decodes a small version of an image file, using subsampling so the full-resolution
+     * pixels never have to be materialised. Returns null if the format is not supported.
+     */
+    public static BufferedImage readSample(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / SAMPLE_SIZE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 64-bit difference hash: the image is reduced to 9x8 grayscale pixels and each bit
+     * records whether a pixel is darker than its right-hand neighbour.
+     */
+    public static long dHash(BufferedImage image) {
+        BufferedImage small = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = small.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, 9, 8, null);
+        g.dispose();
+
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int left = small.getRaster().getSample(x, y, 0);
+                int right = small.getRaster().getSample(x + 1, y, 0);
+                hash = (hash << 1) | (left < right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Returns the closest stored hash within {@code maxDistance} bits, or null if there is none.
+     */
+    public synchronized Match findSimilar(long hash) {
+        lookups++;
+        int chunkRadius = maxDistance / CHUNKS;
+        Long best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < CHUNKS; i++) {
+            Map<Integer, List<Long>> table = chunkTables.get(i);
+            for (int variant : chunkVariants(chunk(hash, i), chunkRadius)) {
+                List<Long> bucket = table.get(variant);
+                if (bucket == null) {
+                    continue;
+                }
+                for (Long candidate : bucket) {
+                    int d = distance(hash, candidate);
+                    if (d <= maxDistance && d < bestDistance) {
+                        best = candidate;
+                        bestDistance = d;
+                    }
+                }
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        hits++;
+        // get() also marks the entry as recently used.
+        return new Match(best, entries.get(best), bestDistance);
+    }
+
+    /**
+     * Adds or replaces the value for a hash, evicting the least recently used entry if full.
+     */
+    public synchronized void put(long hash, String value) {
+        if (entries.put(hash, value) != null) {
+            return;
+        }
+        for (int i = 0; i < CHUNKS; i++) {
+            chunkTables.get(i).computeIfAbsent(chunk(hash, i), k -> new ArrayList<>(1)).add(hash);
+        }
+        if (entries.size() > maxEntries) {
+            remove(entries.keySet().iterator().next());
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes a hash, e.g. because the file it points to no longer exists.
+     */
+    public synchronized void remove(long hash) {
+        if (entries.remove(hash) == null) {
+            return;
+        }
+        for (int i = 0; i < CHUNKS; i++) {
+            int key = chunk(hash, i);
+            List<Long> bucket = chunkTables.get(i).get(key);
+            bucket.remove(Long.valueOf(hash));
+            if (bucket.isEmpty()) {
+                chunkTables.get(i).remove(key);
+            }
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), maxEntries, maxDistance, lookups, hits, evictions);
+    }
+
+    private static int chunk(long hash, int index) {
+        return (int) (hash >>> (index * CHUNK_BITS)) & 0xFFFF;
+    }
+
+    /**
+     * Every 16-bit value within {@code radius} bits of {@code chunk}, including itself.
+     */
+    private static List<Integer> chunkVariants(int chunk, int radius) {
+        List<Integer> variants = new ArrayList<>();
+        if (radius > 2) {
+            // Rarely configured; check every value within the radius.
+            for (int v = 0; v <= 0xFFFF; v++) {
+                if (Integer.bitCount(v ^ chunk) <= radius) {
+                    variants.add(v);
+                }
+            }
+            return variants;
+        }
+        variants.add(chunk);
+        for (int i = 0; radius >= 1 && i < CHUNK_BITS; i++) {
+            variants.add(chunk ^ (1 << i));
+            for (int j = i + 1; radius >= 2 && j < CHUNK_BITS; j++) {
+                variants.add(chunk ^ (1 << i) ^ (1 << j));
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * A stored hash close to the one looked up, with its value.
+     */
+    public static class Match {
+        public final long hash;
+        public final String value;
+        public final int distance;
+
+        Match(long hash, String value, int distance) {
+            this.hash = hash;
+            this.value = value;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * Point-in-time counters of the index.
+     */
+    public static class Stats {
+        public final int entries;
+        public final int maxEntries;
+        public final int maxDistance;
+        public final long lookups;
+        public final long hits;
+        public final long evictions;
+
+        Stats(int entries, int maxEntries, int maxDistance, long lookups, long hits, long evictions) {
+            this.entries = entries;
+            this.maxEntries = maxEntries;
+            this.maxDistance = maxDistance;
+            this.lookups = lookups;
+            this.hits = hits;
+            this.evictions = evictions;
+        }
+    }
+}
@@ -13,16 +13,22 @@ public class ProcessedImagesCleanupListener implements ServletContextListener {
         if (path != null) {
             File dir = new File(path);
             if (dir.exists() && dir.isDirectory()) {
-                for (File file : dir.listFiles()) {
-                    if (file.isFile()) {
-                        file.delete();
-                    }
-                }
+                deleteContents(dir);
                 System.out.println("Processed images folder cleaned on startup.");
             }
         }
     }
 
+    // The folder holds the sharded blob store, so clean it recursively.
+    private void deleteContents(File dir) {
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                deleteContents(file);
+            }
+            file.delete();
+        }
+    }
+
     @Override
     public void contextDestroyed(ServletContextEvent sce) {}
 }
@@ -0,0 +1,48 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import com.google.gson.Gson;
+
+/**
+ * Downloads the engine's continuous Flight Recorder recording as a .jfr file that can be
+ * opened in JDK Mission Control.
+ */
+@WebServlet(
+    name = "Recording",
+    urlPatterns = {"/recording"}
+)
+public class RecordingServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final Gson GSON = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        CrawlRecorder recorder = CrawlEngine.from(getServletContext()).getRecorder();
+        if (!recorder.isRecording()) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setContentType("application/json");
+            resp.getWriter().print(GSON.toJson(Collections.singletonMap("error", "Flight Recorder tracing is off")));
+            return;
+        }
+
+        Path dump = recorder.dump();
+        try {
+            resp.setContentType("application/octet-stream");
+            resp.setHeader("Content-Disposition",
+                    "attachment; filename=\"imagefinder-" + System.currentTimeMillis() + ".jfr\"");
+            resp.setContentLengthLong(Files.size(dump));
+            Files.copy(dump, resp.getOutputStream());
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The rules of one host's robots.txt that apply to this crawler.
+ *
+ * The most specific {@code User-agent} group whose name is part of our agent token wins,
+ * falling back to {@code *}. Within the group the longest matching {@code Allow} or
+ * {@code Disallow} pattern decides, with {@code Allow} winning ties; {@code *} and a
+ * trailing {@code $} are supported as in the Robots Exclusion Protocol (RFC 9309).
+ */
+public class RobotsTxt {
+    /** Rules of a host without a usable robots.txt. */
+    public static final RobotsTxt ALLOW_ALL = new RobotsTxt(Collections.emptyList(), -1);
+
+    private final List<Rule> rules;
+    private final double crawlDelaySeconds;
+
+    private RobotsTxt(List<Rule> rules, double crawlDelaySeconds) {
+        this.rules = rules;
+        this.crawlDelaySeconds = crawlDelaySeconds;
+    }
+
+    /**
+     * Parses a robots.txt body for the given agent token (e.g. {@code imagefinder}).
+     */
+    public static RobotsTxt parse(String content, String agent) {
+        String agentLower = agent.toLowerCase(Locale.ROOT);
+        List<Rule> specificRules = null;
+        List<Rule> wildcardRules = null;
+        double specificDelay = -1;
+        double wildcardDelay = -1;
+        int specificLength = -1;
+
+        List<String> groupAgents = new ArrayList<>();
+        List<Rule> groupRules = new ArrayList<>();
+        double groupDelay = -1;
+        boolean inRules = false;
+
+        for (String rawLine : (content + "\nuser-agent: \u0000end").split("\r\n|\r|\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            if (field.equals("user-agent")) {
+                if (inRules) {
+                    // A user-agent line after rules starts a new group; close the previous one.
+                    for (String groupAgent : groupAgents) {
+                        if (groupAgent.equals("*")) {
+                            if (wildcardRules == null) {
+                                wildcardRules = new ArrayList<>(groupRules);
+                                wildcardDelay = groupDelay;
+                            }
+                        } else if (agentLower.contains(groupAgent) && groupAgent.length() > specificLength) {
+                            specificRules = new ArrayList<>(groupRules);
+                            specificDelay = groupDelay;
+                            specificLength = groupAgent.length();
+                        }
+                    }
+                    groupAgents.clear();
+                    groupRules.clear();
+                    groupDelay = -1;
+                    inRules = false;
+                }
+                groupAgents.add(value.toLowerCase(Locale.ROOT));
+            } else if (field.equals("allow") || field.equals("disallow")) {
+                inRules = true;
+                if (!value.isEmpty()) {
+                    groupRules.add(new Rule(value, field.equals("allow")));
+                }
+            } else if (field.equals("crawl-delay")) {
+                inRules = true;
+                try {
+                    groupDelay = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    // Ignore malformed delays.
+                }
+            }
+        }
+
+        if (specificRules != null) {
+            return new RobotsTxt(specificRules, specificDelay);
+        }
+        if (wildcardRules != null) {
+            return new RobotsTxt(wildcardRules, wildcardDelay);
+        }
+        return ALLOW_ALL;
+    }
+
+    /**
+     * Whether a path (with its query string) may be crawled.
+     */
+    public boolean isAllowed(String pathAndQuery) {
+        String path = pathAndQuery.isEmpty() ? "/" : pathAndQuery;
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null || rule.pattern.length() > best.pattern.length()
+                    || (rule.pattern.length() == best.pattern.length() && rule.allow))) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    /**
+     * The requested delay between requests in seconds, or -1 if none was given.
+     */
+    public double getCrawlDelaySeconds() {
+        return crawlDelaySeconds;
+    }
+
+    private static class Rule {
+        final String pattern;
+        final boolean allow;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+        }
+
+        boolean matches(String path) {
+            boolean anchored = pattern.endsWith("$");
+            String p = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            return matches(p, 0, path, 0, anchored);
+        }
+
+        private static boolean matches(String p, int pi, String path, int si, boolean anchored) {
+            while (pi < p.length()) {
+                char c = p.charAt(pi);
+                if (c == '*') {
+                    for (int k = si; k <= path.length(); k++) {
+                        if (matches(p, pi + 1, path, k, anchored)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                if (si >= path.length() || path.charAt(si) != c) {
+                    return false;
+                }
+                pi++;
+                si++;
+            }
+            return !anchored || si == path.length();
+        }
+    }
+}
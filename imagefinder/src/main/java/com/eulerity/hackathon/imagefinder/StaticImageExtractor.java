@@ -0,0 +1,149 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds image URLs in an already parsed page without starting a browser.
+ *
+ * Covers the same sources as the Selenium path in {@link ImageExtractorService}
+ * ({@code img[src]}, {@code srcset}, {@code picture/source}, inline background images)
+ * plus the common lazy-load attributes. {@link #needsBrowserRendering} decides whether
+ * the page looks client-rendered and should go through the browser instead.
+ */
+public class StaticImageExtractor {
+    private static final String[] LAZY_SRC_ATTRIBUTES = {
+            "data-src", "data-lazy-src", "data-original", "data-url", "data-lazy", "data-image"
+    };
+    private static final String[] LAZY_SRCSET_ATTRIBUTES = {"data-srcset", "data-lazy-srcset"};
+    private static final Pattern BACKGROUND_URL = Pattern.compile("background(?:-image)?\\s*:[^;]*url\\([\"']?(.*?)[\"']?\\)");
+    private static final String APP_ROOT_SELECTOR = "#root, #app, #__next, #___gatsby, [data-reactroot], [ng-app], app-root";
+
+    // A page with fewer images than this but many script bundles is assumed to be rendered by JavaScript.
+    private static final int FEW_IMAGES = 3;
+    private static final int MANY_SCRIPTS = 5;
+    private static final int MIN_TEXT_LENGTH = 200;
+
+    /**
+     * Collects the absolute URLs of every image referenced by the static markup.
+     *
+     * @param doc the parsed page; relative URLs are resolved against its location.
+     * @return the image URLs in document order, without duplicates.
+     */
+    public static Set<String> extractImageUrls(Document doc) {
+        Set<String> imageUrls = new LinkedHashSet<>();
+
+        for (Element img : doc.select("img")) {
+            add(imageUrls, img.absUrl("src"));
+            addFirstCandidate(imageUrls, doc, img.attr("srcset"));
+            addLazyAttributes(imageUrls, img);
+        }
+
+        for (Element source : doc.select("picture source, source[srcset]")) {
+            addFirstCandidate(imageUrls, doc, source.attr("srcset"));
+            addLazyAttributes(imageUrls, source);
+        }
+
+        // Lazy-load libraries also put data-src on non-img elements (background placeholders).
+        for (Element lazy : doc.select("[data-src], [data-bg], [data-background-image]")) {
+            if (!lazy.tagName().equals("img") && !lazy.tagName().equals("source")) {
+                add(imageUrls, lazy.absUrl("data-src"));
+                add(imageUrls, lazy.absUrl("data-bg"));
+                add(imageUrls, lazy.absUrl("data-background-image"));
+            }
+        }
+
+        for (Element styled : doc.select("[style]")) {
+            Matcher matcher = BACKGROUND_URL.matcher(styled.attr("style"));
+            while (matcher.find()) {
+                add(imageUrls, resolve(doc, matcher.group(1)));
+            }
+        }
+
+        return imageUrls;
+    }
+
+    /**
+     * Cheap heuristic for pages whose images only appear after JavaScript runs.
+     *
+     * @param doc        the parsed page.
+     * @param imageCount how many images {@link #extractImageUrls} found in it.
+     * @return true if the page should be rendered in a browser.
+     */
+    public static boolean needsBrowserRendering(Document doc, int imageCount) {
+        int scripts = doc.select("script[src]").size();
+        if (imageCount < FEW_IMAGES && scripts >= MANY_SCRIPTS) {
+            return true;
+        }
+
+        // Single-page-app shell: a mount point with nothing rendered into it yet.
+        for (Element root : doc.select(APP_ROOT_SELECTOR)) {
+            if (root.children().isEmpty() && root.text().trim().isEmpty()) {
+                return true;
+            }
+        }
+
+        if (imageCount == 0 && scripts > 0 && doc.body() != null
+                && doc.body().text().trim().length() < MIN_TEXT_LENGTH) {
+            return true;
+        }
+
+        for (Element noscript : doc.select("noscript")) {
+            String text = noscript.text().toLowerCase();
+            if (text.contains("enable javascript") || text.contains("requires javascript")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addLazyAttributes(Set<String> imageUrls, Element element) {
+        for (String attribute : LAZY_SRC_ATTRIBUTES) {
+            if (element.hasAttr(attribute)) {
+                add(imageUrls, element.absUrl(attribute));
+            }
+        }
+        for (String attribute : LAZY_SRCSET_ATTRIBUTES) {
+            if (element.hasAttr(attribute)) {
+                addFirstCandidate(imageUrls, element.ownerDocument(), element.attr(attribute));
+            }
+        }
+    }
+
+    /**
+     * Adds the first URL of a srcset list, matching what the Selenium path picks.
+     */
+    private static void addFirstCandidate(Set<String> imageUrls, Document doc, String srcSet) {
+        if (srcSet == null || srcSet.trim().isEmpty()) {
+            return;
+        }
+        String firstUrl = srcSet.split(",")[0].trim().split("\\s+")[0];
+        add(imageUrls, resolve(doc, firstUrl));
+    }
+
+    private static String resolve(Document doc, String relative) {
+        if (relative == null || relative.isEmpty()) {
+            return null;
+        }
+        try {
+            String base = doc == null ? "" : doc.location();
+            return base.isEmpty() ? new URL(relative).toString() : new URL(new URL(base), relative).toString();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static void add(Set<String> imageUrls, String url) {
+        if (url == null || url.isEmpty() || url.startsWith("data:")) {
+            return;
+        }
+        imageUrls.add(ImageExtractorService.normalizeUrl(url));
+    }
+}
@@ -0,0 +1,160 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import com.google.gson.Gson;
+
+/**
+ * Reports the state of the shared crawl engine, its browser pool, fetcher and image pipeline as JSON.
+ */
+@WebServlet(
+    name = "Status",
+    urlPatterns = {"/status"}
+)
+public class StatusServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final Gson GSON = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        CrawlEngine engine = CrawlEngine.from(getServletContext());
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("workers", engine.getWorkerCount());
+        status.put("queuedTasks", engine.getQueuedTasks());
+        status.put("jobs", engine.getJobs().size());
+
+        WebDriverPool.Stats pool = engine.getDriverPool().stats();
+        Map<String, Object> browsers = new LinkedHashMap<>();
+        browsers.put("maxSize", pool.maxSize);
+        browsers.put("live", pool.live);
+        browsers.put("idle", pool.idle);
+        browsers.put("leased", pool.leased);
+        browsers.put("waiting", pool.waiting);
+        browsers.put("utilization", pool.utilization());
+        browsers.put("created", pool.created);
+        browsers.put("recycled", pool.recycled);
+        browsers.put("leases", pool.leases);
+        status.put("browserPool", browsers);
+
+        List<Map<String, Object>> stages = new ArrayList<>();
+        for (ImagePipeline.Stats stage : engine.getImagePipeline().stats()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("stage", stage.stage);
+            stats.put("threads", stage.threads);
+            stats.put("active", stage.active);
+            stats.put("queueDepth", stage.queueDepth);
+            stats.put("queueCapacity", stage.queueCapacity);
+            stats.put("submitted", stage.submitted);
+            stats.put("completed", stage.completed);
+            stats.put("failed", stage.failed);
+            stats.put("callerRuns", stage.callerRuns);
+            stats.put("throughputPerSecond", stage.throughput());
+            stats.put("averageMillis", stage.averageMillis());
+            stages.add(stats);
+        }
+        status.put("imagePipeline", stages);
+
+        PerceptualHashIndex.Stats index = engine.getNearDuplicateIndex().stats();
+        Map<String, Object> nearDuplicates = new LinkedHashMap<>();
+        nearDuplicates.put("entries", index.entries);
+        nearDuplicates.put("maxEntries", index.maxEntries);
+        nearDuplicates.put("maxDistance", index.maxDistance);
+        nearDuplicates.put("lookups", index.lookups);
+        nearDuplicates.put("hits", index.hits);
+        nearDuplicates.put("evictions", index.evictions);
+        status.put("nearDuplicates", nearDuplicates);
+
+        List<Map<String, Object>> triage = new ArrayList<>();
+        for (ImageTriage.Stats tier : engine.getImageTriage().stats()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("tier", tier.tier);
+            stats.put("evaluated", tier.evaluated);
+            stats.put("rejected", tier.rejected);
+            stats.put("rejectRate", tier.rejectRate());
+            triage.add(stats);
+        }
+        status.put("imageTriage", triage);
+
+        NativeMemory.Stats memory = NativeMemory.OPENCV.stats();
+        Map<String, Object> nativeMemory = new LinkedHashMap<>();
+        nativeMemory.put("budgetBytes", memory.budgetBytes);
+        nativeMemory.put("reservedBytes", memory.reservedBytes);
+        nativeMemory.put("inUseBytes", memory.inUseBytes);
+        nativeMemory.put("peakBytes", memory.peakBytes);
+        nativeMemory.put("pooledBytes", memory.pooledBytes);
+        nativeMemory.put("throttled", memory.throttled);
+        nativeMemory.put("throttledMillis", memory.throttledNanos / 1_000_000);
+        status.put("opencvMemory", nativeMemory);
+
+        HttpFetcher.Stats fetch = engine.getHttpFetcher().stats();
+        Map<String, Object> fetcher = new LinkedHashMap<>();
+        fetcher.put("ioThreads", fetch.ioThreads);
+        fetcher.put("inFlight", fetch.inFlight);
+        fetcher.put("hosts", fetch.hosts);
+        fetcher.put("queued", fetch.queued);
+        fetcher.put("requests", fetch.requests);
+        fetcher.put("throttled", fetch.throttled);
+        fetcher.put("errors", fetch.errors);
+        fetcher.put("retries", fetch.retries);
+        List<Map<String, Object>> perHost = new ArrayList<>();
+        for (HttpFetcher.HostStats host : fetch.perHost.subList(0, Math.min(20, fetch.perHost.size()))) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("host", host.host);
+            stats.put("concurrencyLimit", host.concurrencyLimit);
+            stats.put("active", host.active);
+            stats.put("queued", host.queued);
+            stats.put("ratePerSecond", host.ratePerSecond);
+            stats.put("crawlDelaySeconds", host.crawlDelaySeconds);
+            stats.put("averageLatencyMillis", host.averageLatencyMillis);
+            stats.put("requests", host.requests);
+            stats.put("throttled", host.throttled);
+            stats.put("errors", host.errors);
+            stats.put("pausedMillis", host.pausedMillis);
+            perHost.add(stats);
+        }
+        fetcher.put("busiestHosts", perHost);
+        status.put("fetcher", fetcher);
+
+        HttpCache.Stats cache = engine.getHttpCache().stats();
+        Map<String, Object> httpCache = new LinkedHashMap<>();
+        httpCache.put("entries", cache.entries);
+        httpCache.put("bytes", cache.bytes);
+        httpCache.put("maxBytes", cache.maxBytes);
+        httpCache.put("hits", cache.hits);
+        httpCache.put("revalidations", cache.revalidations);
+        httpCache.put("misses", cache.misses);
+        httpCache.put("evictions", cache.evictions);
+        status.put("httpCache", httpCache);
+
+        List<Map<String, Object>> crawls = new ArrayList<>();
+        for (CrawlFrontier.Stats frontier : engine.getFrontierStats()) {
+            Map<String, Object> crawl = new LinkedHashMap<>();
+            crawl.put("id", frontier.id);
+            crawl.put("startUrl", frontier.startUrl);
+            crawl.put("maxDepth", frontier.maxDepth);
+            crawl.put("resumed", frontier.resumed);
+            crawl.put("enqueued", frontier.enqueued);
+            crawl.put("done", frontier.done);
+            crawl.put("inProgress", frontier.inProgress);
+            crawl.put("pending", frontier.pending);
+            crawl.put("images", frontier.images);
+            crawl.put("journalBytes", frontier.journalBytes);
+            crawl.put("visitedBytes", frontier.visitedBytes);
+            crawls.add(crawl);
+        }
+        status.put("crawls", crawls);
+
+        resp.setContentType("application/json");
+        resp.getWriter().print(GSON.toJson(status));
+    }
+}
@@ -0,0 +1,167 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Rewrites URLs that serve the same page into one canonical form, so the crawler fetches
+ * each page once and the caches key it once.
+ *
+ * Scheme and host are lower-cased, default ports, empty paths and dot segments are
+ * normalized and percent-escapes are upper-cased. The remaining rules are configurable:
+ * dropping the fragment, dropping tracking parameters, sorting the query, removing a
+ * trailing slash and removing {@code index.htm(l)} file names.
+ */
+public class UrlCanonicalizer {
+    public static final UrlCanonicalizer DEFAULT = new UrlCanonicalizer(
+            Boolean.parseBoolean(System.getProperty("imagefinder.canonical.stripFragment", "true")),
+            Boolean.parseBoolean(System.getProperty("imagefinder.canonical.sortQuery", "true")),
+            Boolean.parseBoolean(System.getProperty("imagefinder.canonical.stripTrailingSlash", "true")),
+            Boolean.parseBoolean(System.getProperty("imagefinder.canonical.stripIndexPages", "false")),
+            Arrays.asList(System.getProperty("imagefinder.canonical.stripParams",
+                    "utm_*,gclid,fbclid,msclkid,mc_cid,mc_eid,_ga,_gl").split(",")));
+
+    private final boolean stripFragment;
+    private final boolean sortQuery;
+    private final boolean stripTrailingSlash;
+    private final boolean stripIndexPages;
+    private final List<String> strippedParams;
+
+    /**
+     * @param strippedParams query parameter names to drop; a trailing {@code *} matches any suffix.
+     */
+    public UrlCanonicalizer(boolean stripFragment, boolean sortQuery, boolean stripTrailingSlash,
+                            boolean stripIndexPages, List<String> strippedParams) {
+        this.stripFragment = stripFragment;
+        this.sortQuery = sortQuery;
+        this.stripTrailingSlash = stripTrailingSlash;
+        this.stripIndexPages = stripIndexPages;
+        List<String> params = new ArrayList<>();
+        for (String param : strippedParams) {
+            if (!param.trim().isEmpty()) {
+                params.add(param.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        this.strippedParams = Collections.unmodifiableList(params);
+    }
+
+    /**
+     * Returns the canonical form of a URL, or the trimmed input if it cannot be parsed.
+     */
+    public String canonicalize(String url) {
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed).normalize();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+        if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+            return trimmed;
+        }
+
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder canonical = new StringBuilder(trimmed.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        String host = uri.getHost() != null ? uri.getHost() : uri.getRawAuthority();
+        canonical.append(host.toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            canonical.append(':').append(port);
+        }
+
+        canonical.append(canonicalPath(uri.getRawPath()));
+
+        String query = canonicalQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            canonical.append('?').append(query);
+        }
+        if (!stripFragment && uri.getRawFragment() != null) {
+            canonical.append('#').append(upperCaseEscapes(uri.getRawFragment()));
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a (canonical) URL, used instead of the URL itself in visited sets.
+     */
+    public static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private String canonicalPath(String rawPath) {
+        String path = rawPath == null || rawPath.isEmpty() ? "/" : upperCaseEscapes(rawPath);
+        if (stripIndexPages) {
+            String lower = path.toLowerCase(Locale.ROOT);
+            for (String index : new String[] {"index.html", "index.htm"}) {
+                if (lower.endsWith("/" + index)) {
+                    path = path.substring(0, path.length() - index.length());
+                    break;
+                }
+            }
+        }
+        if (stripTrailingSlash && path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    private String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> params = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int eq = param.indexOf('=');
+            String name = (eq < 0 ? param : param.substring(0, eq)).toLowerCase(Locale.ROOT);
+            if (!isStripped(name)) {
+                params.add(upperCaseEscapes(param));
+            }
+        }
+        if (sortQuery) {
+            Collections.sort(params);
+        }
+        return String.join("&", params);
+    }
+
+    private boolean isStripped(String name) {
+        for (String stripped : strippedParams) {
+            if (stripped.endsWith("*") ? name.startsWith(stripped.substring(0, stripped.length() - 1))
+                    : name.equals(stripped)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String upperCaseEscapes(String s) {
+        if (s.indexOf('%') < 0) {
+            return s;
+        }
+        char[] chars = s.toCharArray();
+        for (int i = 0; i + 2 < chars.length; i++) {
+            if (chars[i] == '%') {
+                chars[i + 1] = Character.toUpperCase(chars[i + 1]);
+                chars[i + 2] = Character.toUpperCase(chars[i + 2]);
+                i += 2;
+            }
+        }
+        return new String(chars);
+    }
+}
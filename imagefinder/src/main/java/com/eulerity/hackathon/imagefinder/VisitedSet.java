@@ -0,0 +1,98 @@
+package com.eulerity.hackathon.imagefinder;
+
+/**
+ * URLs a crawl has already seen, stored as 64-bit fingerprints of their canonical form.
+ *
+ * The exact set is a {@link LongHashSet}. An optional Bloom filter sits in front of it:
+ * most URLs a crawl discovers are new, and for those the filter answers from a small,
+ * cache-friendly bit array without probing the large table.
+ */
+public class VisitedSet {
+    public static final boolean DEFAULT_BLOOM = Boolean.getBoolean("imagefinder.visited.bloom");
+    public static final int DEFAULT_EXPECTED_URLS = Integer.getInteger("imagefinder.visited.expectedUrls", 100000);
+
+    private final LongHashSet fingerprints;
+    private final BloomFilter bloom;
+
+    public VisitedSet() {
+        this(DEFAULT_EXPECTED_URLS, DEFAULT_BLOOM);
+    }
+
+    public VisitedSet(int expectedUrls, boolean useBloomFilter) {
+        this.fingerprints = new LongHashSet(Math.min(expectedUrls, 1 << 16));
+        this.bloom = useBloomFilter ? new BloomFilter(expectedUrls, 0.01) : null;
+    }
+
+    /**
+     * Marks a fingerprint as seen.
+     *
+     * @return true if it had not been seen before; exactly one concurrent caller gets true.
+     */
+    public synchronized boolean add(long fingerprint) {
+        if (bloom != null && !bloom.mightContain(fingerprint)) {
+            bloom.put(fingerprint);
+            fingerprints.add(fingerprint);
+            return true;
+        }
+        if (bloom != null) {
+            bloom.put(fingerprint);
+        }
+        return fingerprints.add(fingerprint);
+    }
+
+    public synchronized boolean contains(long fingerprint) {
+        if (bloom != null && !bloom.mightContain(fingerprint)) {
+            return false;
+        }
+        return fingerprints.contains(fingerprint);
+    }
+
+    public synchronized int size() {
+        return fingerprints.size();
+    }
+
+    public synchronized long memoryBytes() {
+        return fingerprints.memoryBytes() + (bloom == null ? 0 : bloom.memoryBytes());
+    }
+
+    /**
+     * Fixed-size Bloom filter over 64-bit fingerprints, using double hashing.
+     */
+    static class BloomFilter {
+        private final long[] bits;
+        private final int bitCount;
+        private final int hashCount;
+
+        BloomFilter(int expectedInsertions, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bitCount = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+            this.bits = new long[(bitCount + 63) / 64];
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        void put(long fingerprint) {
+            int h1 = (int) fingerprint;
+            int h2 = (int) (fingerprint >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(long fingerprint) {
+            int h1 = (int) fingerprint;
+            int h2 = (int) (fingerprint >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+                if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long memoryBytes() {
+            return (long) bits.length * Long.BYTES;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of reusable headless Chrome browsers.
+ *
+ * Crawl tasks lease a browser for one page and hand it back afterwards. Returned
+ * browsers are reset (extra tabs closed, storage and cookies cleared) and reused,
+ * and are replaced after a fixed number of pages or as soon as they stop responding.
+ */
+public class WebDriverPool {
+    public static final int DEFAULT_SIZE = Integer.getInteger("imagefinder.browser.poolSize", CrawlEngine.DEFAULT_WORKERS);
+    public static final int DEFAULT_MAX_PAGES = Integer.getInteger("imagefinder.browser.maxPagesPerBrowser", 50);
+    public static final int DEFAULT_PREWARM = Integer.getInteger("imagefinder.browser.prewarm", DEFAULT_SIZE);
+    private static final String CHROME_DRIVER_PATH =
+            "C:\\Users\\030825130\\Downloads\\chromedriver-win64\\chromedriver-win64\\chromedriver.exe";
+
+    private final int maxSize;
+    private final int maxPagesPerDriver;
+    private final Supplier<WebDriver> factory;
+    private final BlockingDeque<PooledDriver> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicInteger live = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong leaseWaitNanos = new AtomicLong();
+    private volatile boolean closed;
+
+    public WebDriverPool() {
+        this(DEFAULT_SIZE, DEFAULT_MAX_PAGES, WebDriverPool::newChromeDriver);
+    }
+
+    public WebDriverPool(int maxSize, int maxPagesPerDriver, Supplier<WebDriver> factory) {
+        this.maxSize = maxSize;
+        this.maxPagesPerDriver = maxPagesPerDriver;
+        this.factory = factory;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    private static WebDriver newChromeDriver() {
+        System.setProperty("webdriver.chrome.driver", CHROME_DRIVER_PATH);
+        ChromeOptions options = new ChromeOptions();
+        options.addArguments("--headless");
+        options.addArguments("--disable-gpu");
+        return new ChromeDriver(options);
+    }
+
+    /**
+     * Starts up to {@code count} browsers ahead of the first crawl.
+     */
+    public void prewarm(int count) {
+        int target = Math.min(count, maxSize);
+        while (!closed && live.get() < target) {
+            try {
+                idle.offerLast(create());
+            } catch (RuntimeException e) {
+                System.err.println("❌ Failed to pre-warm browser: " + e.getMessage());
+                return;
+            }
+        }
+        System.out.println("✅ Browser pool pre-warmed: " + stats());
+    }
+
+    /**
+     * Leases a healthy browser, waiting up to the given time for one to become free.
+     *
+     * @throws TimeoutException if every browser stays leased for the whole wait.
+     */
+    public Lease lease(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (closed) {
+            throw new IllegalStateException("Browser pool is shut down.");
+        }
+        long start = System.nanoTime();
+        if (!permits.tryAcquire(timeout, unit)) {
+            throw new TimeoutException("No browser became available within " + unit.toMillis(timeout) + " ms");
+        }
+        leaseWaitNanos.addAndGet(System.nanoTime() - start);
+        try {
+            PooledDriver pooled;
+            while ((pooled = idle.pollFirst()) != null && !isHealthy(pooled)) {
+                discard(pooled);
+            }
+            if (pooled == null) {
+                pooled = create();
+            }
+            leased.incrementAndGet();
+            leases.incrementAndGet();
+            return new Lease(pooled);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Quits every idle browser; leased ones are quit when they are returned.
+     */
+    public void shutdown() {
+        closed = true;
+        PooledDriver pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+        System.out.println("🛑 Browser pool stopped: " + stats());
+    }
+
+    public Stats stats() {
+        return new Stats(maxSize, live.get(), idle.size(), leased.get(), permits.getQueueLength(),
+                created.get(), recycled.get(), leases.get(), leaseWaitNanos.get());
+    }
+
+    private PooledDriver create() {
+        WebDriver driver = factory.get();
+        live.incrementAndGet();
+        created.incrementAndGet();
+        return new PooledDriver(driver);
+    }
+
+    private void giveBack(PooledDriver pooled, boolean broken) {
+        leased.decrementAndGet();
+        try {
+            if (closed || broken || pooled.pages >= maxPagesPerDriver || !reset(pooled)) {
+                discard(pooled);
+            } else {
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isHealthy(PooledDriver pooled) {
+        try {
+            return !pooled.driver.getWindowHandles().isEmpty();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the browser to a blank state: one tab, no storage, no cookies for the last site.
+     */
+    private boolean reset(PooledDriver pooled) {
+        WebDriver driver = pooled.driver;
+        try {
+            Set<String> handles = driver.getWindowHandles();
+            String primary = handles.iterator().next();
+            List<String> extra = new ArrayList<>(handles);
+            extra.remove(primary);
+            for (String handle : extra) {
+                driver.switchTo().window(handle);
+                driver.close();
+            }
+            driver.switchTo().window(primary);
+            ((JavascriptExecutor) driver).executeScript(
+                    "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+            driver.manage().deleteAllCookies();
+            driver.get("about:blank");
+            return true;
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ Browser reset failed, recycling: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void discard(PooledDriver pooled) {
+        live.decrementAndGet();
+        recycled.incrementAndGet();
+        try {
+            pooled.driver.quit();
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ Failed to quit browser: " + e.getMessage());
+        }
+    }
+
+    private static class PooledDriver {
+        private final WebDriver driver;
+        private int pages;
+
+        private PooledDriver(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+
+    /**
+     * A browser leased for one page. Closing the lease returns the browser to the pool.
+     */
+    public class Lease implements AutoCloseable {
+        private final PooledDriver pooled;
+        private boolean broken;
+        private boolean returned;
+
+        private Lease(PooledDriver pooled) {
+            this.pooled = pooled;
+            pooled.pages++;
+        }
+
+        public WebDriver driver() {
+            return pooled.driver;
+        }
+
+        /**
+         * Marks the browser as crashed or unusable so it is quit instead of reused.
+         */
+        public void markBroken() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (!returned) {
+                returned = true;
+                giveBack(pooled, broken);
+            }
+        }
+    }
+
+    /**
+     * Point-in-time utilization of the pool.
+     */
+    public static class Stats {
+        public final int maxSize;
+        public final int live;
+        public final int idle;
+        public final int leased;
+        public final int waiting;
+        public final long created;
+        public final long recycled;
+        public final long leases;
+        public final long leaseWaitNanos;
+
+        Stats(int maxSize, int live, int idle, int leased, int waiting,
+              long created, long recycled, long leases, long leaseWaitNanos) {
+            this.maxSize = maxSize;
+            this.live = live;
+            this.idle = idle;
+            this.leased = leased;
+            this.waiting = waiting;
+            this.created = created;
+            this.recycled = recycled;
+            this.leases = leases;
+            this.leaseWaitNanos = leaseWaitNanos;
+        }
+
+        public double utilization() {
+            return maxSize == 0 ? 0.0 : (double) leased / maxSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("browsers live=%d/%d idle=%d leased=%d waiting=%d created=%d recycled=%d leases=%d avgWait=%dms",
+                    live, maxSize, idle, leased, waiting, created, recycled, leases,
+                    leases == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(leaseWaitNanos / leases));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CrawlBudgetTest {
+
+    @Test
+    public void pageLimitStopsNewPagesButNotWorkInFlight() {
+        CrawlBudget budget = new CrawlBudget(60, 2, 100, 1 << 20, 60);
+
+        Assert.assertTrue(budget.tryStartPage());
+        Assert.assertTrue(budget.tryStartPage());
+        Assert.assertFalse(budget.tryStartPage());
+
+        Assert.assertEquals(2, budget.getPages());
+        Assert.assertEquals(CrawlBudget.StopReason.MAX_PAGES, budget.getExhaustedBy());
+        Assert.assertTrue(budget.isExhausted());
+        Assert.assertFalse(budget.shouldSkipWork());
+    }
+
+    @Test
+    public void imageLimitKeepsTheLastImageAndDropsTheRest() {
+        CrawlBudget budget = new CrawlBudget(60, 10, 2, 1 << 20, 60);
+
+        Assert.assertTrue(budget.tryAddImage());
+        Assert.assertNull(budget.getExhaustedBy());
+        Assert.assertTrue(budget.tryAddImage());
+        Assert.assertFalse(budget.tryAddImage());
+
+        Assert.assertEquals(2, budget.getImages());
+        Assert.assertEquals(CrawlBudget.StopReason.MAX_IMAGES, budget.getExhaustedBy());
+        Assert.assertTrue(budget.shouldSkipWork());
+        Assert.assertFalse(budget.tryStartPage());
+    }
+
+    @Test
+    public void stopEndsTheBudgetAndSkipsWorkInFlight() {
+        CrawlBudget budget = new CrawlBudget(60, 10, 10, 1000, 60);
+        budget.stop();
+        budget.addBytes(2000);
+
+        Assert.assertEquals(CrawlBudget.StopReason.STOPPED, budget.getExhaustedBy());
+        Assert.assertTrue(budget.shouldSkipWork());
+        Assert.assertFalse(budget.tryStartPage());
+    }
+
+    @Test
+    public void firstExhaustedLimitIsTheStopReason() {
+        CrawlBudget budget = new CrawlBudget(60, 10, 10, 1000, 60);
+
+        budget.addBytes(600);
+        Assert.assertNull(budget.getExhaustedBy());
+        budget.addBytes(600);
+        budget.addRenderNanos(Long.MAX_VALUE / 2);
+
+        Assert.assertEquals(CrawlBudget.StopReason.MAX_BYTES, budget.getExhaustedBy());
+        Assert.assertEquals(0, budget.remainingRenderMillis());
+    }
+
+    @Test
+    public void deadlineExhaustsTheBudget() {
+        CrawlBudget budget = new CrawlBudget(0, 10, 10, 1000, 60);
+
+        Assert.assertFalse(budget.tryStartPage());
+        Assert.assertEquals(CrawlBudget.StopReason.DEADLINE, budget.getExhaustedBy());
+        Assert.assertTrue(budget.shouldSkipWork());
+    }
+}
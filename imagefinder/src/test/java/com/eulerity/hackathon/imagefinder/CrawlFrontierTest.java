@@ -0,0 +1,186 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CrawlFrontierTest {
+
+    private static final String START = "https://example.com/";
+
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("frontier-test").toFile();
+    }
+
+    @After
+    public void deleteDir() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void pollsInOrderAndIgnoresUrlsSeenBefore() throws IOException {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir, "crawl", START, 2)) {
+            Assert.assertTrue(frontier.enqueue(START, 2));
+            Assert.assertTrue(frontier.enqueue(START + "a", 1));
+            Assert.assertFalse(frontier.enqueue(START, 1));
+            Assert.assertFalse(frontier.enqueue("https://EXAMPLE.com:443/a#reviews", 1));
+
+            CrawlFrontier.Entry first = frontier.poll();
+            Assert.assertEquals(START, first.url);
+            Assert.assertEquals(2, first.depth);
+            frontier.markDone(first.url);
+
+            Assert.assertEquals(START + "a", frontier.poll().url);
+            Assert.assertNull(frontier.poll());
+
+            // URLs enqueued after the cursor reached the end are still picked up.
+            frontier.enqueue(START + "b", 1);
+            Assert.assertEquals(START + "b", frontier.poll().url);
+            Assert.assertEquals(0, frontier.pending());
+            Assert.assertEquals(2, frontier.stats().inProgress);
+        }
+    }
+
+    @Test
+    public void pollsUrlsAsLinkedWhileDedupingOnTheirCanonicalForm() throws IOException {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir, "crawl", START, 2)) {
+            Assert.assertTrue(frontier.enqueue(START + "blog/", 1));
+            Assert.assertFalse(frontier.enqueue(START + "blog", 1));
+            Assert.assertFalse(frontier.enqueue(START + "blog/?utm_source=feed", 1));
+
+            CrawlFrontier.Entry blog = frontier.poll();
+            Assert.assertEquals(START + "blog/", blog.url);
+            frontier.markDone(blog.url);
+            Assert.assertNull(frontier.poll());
+            Assert.assertEquals(1, frontier.stats().done);
+        }
+    }
+
+    @Test
+    public void resumesUnfinishedCrawlAfterRestart() throws IOException {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir, "crawl", START, 2)) {
+            frontier.enqueue(START, 2);
+            frontier.enqueue(START + "done", 1);
+            frontier.enqueue(START + "running", 1);
+            frontier.enqueue(START + "queued", 1);
+            frontier.markDone(frontier.poll().url);
+            frontier.markDone(frontier.poll().url);
+            frontier.poll(); // "running" was in progress when the JVM stopped
+            frontier.recordImage("/resizedImages/resized_a.jpg", START + "done");
+        }
+        // Simulate a record that was only half written when the JVM died.
+        try (OutputStream out = new FileOutputStream(new File(dir, "crawl.frontier"), true)) {
+            out.write("E\t1\thttps://exa".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (CrawlFrontier resumed = CrawlFrontier.open(dir, "crawl", START, 2)) {
+            Assert.assertTrue(resumed.isResumed());
+            Assert.assertEquals(Arrays.asList("/resizedImages/resized_a.jpg"), resumed.getRestoredImages());
+            Assert.assertEquals(2, resumed.pending());
+            Assert.assertFalse(resumed.enqueue(START + "done", 1));
+
+            Assert.assertEquals(START + "running", resumed.poll().url);
+            Assert.assertEquals(START + "queued", resumed.poll().url);
+            Assert.assertNull(resumed.poll());
+        }
+    }
+
+    @Test
+    public void crawlsPagesAgainWhenTheirImagesAreGone() throws IOException {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir, "crawl", START, 2)) {
+            frontier.enqueue(START + "kept", 1);
+            frontier.enqueue(START + "lost", 1);
+            frontier.enqueue(START + "queued", 1);
+            frontier.markDone(frontier.poll().url);
+            frontier.markDone(frontier.poll().url);
+            frontier.recordImage("/resizedImages/resized_kept.jpg", START + "kept");
+            frontier.recordImage("/resizedImages/resized_lost.jpg", START + "lost");
+        }
+
+        try (CrawlFrontier resumed = CrawlFrontier.open(dir, "crawl", START, 2,
+                path -> !path.contains("lost"))) {
+            Assert.assertEquals(Arrays.asList("/resizedImages/resized_kept.jpg"), resumed.getRestoredImages());
+            Assert.assertEquals(START + "lost", resumed.poll().url);
+            Assert.assertEquals(START + "queued", resumed.poll().url);
+            Assert.assertNull(resumed.poll());
+            Assert.assertFalse(resumed.enqueue(START + "lost", 1));
+        }
+    }
+
+    @Test
+    public void deletesOnlyJournalsThatCannotBeResumed() throws IOException {
+        String id = CrawlFrontier.idFor(START, 2);
+        CrawlFrontier.open(dir, id, START, 2).close();
+        CrawlFrontier.open(dir, id + "-1f", START, 2).close();
+
+        Assert.assertTrue(CrawlFrontier.isResumable(id));
+        Assert.assertEquals(1, CrawlFrontier.deleteOrphans(dir));
+        Assert.assertTrue(new File(dir, id + ".frontier").exists());
+        Assert.assertFalse(new File(dir, id + "-1f.frontier").exists());
+    }
+
+    @Test
+    public void resumesAStoppedCrawlOnlyWhenAsked() throws IOException {
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir, "crawl", START, 2)) {
+            frontier.enqueue(START, 2);
+            frontier.enqueue(START + "a", 1);
+            frontier.markDone(frontier.poll().url);
+            frontier.pause();
+        }
+
+        try (CrawlFrontier resumed = CrawlFrontier.open(dir, "crawl", START, 2, path -> true, true)) {
+            Assert.assertTrue(resumed.isResumed());
+            Assert.assertEquals(START + "a", resumed.poll().url);
+            resumed.pause();
+        }
+        try (CrawlFrontier fresh = CrawlFrontier.open(dir, "crawl", START, 2)) {
+            Assert.assertFalse(fresh.isResumed());
+            Assert.assertTrue(fresh.enqueue(START, 2));
+        }
+    }
+
+    @Test
+    public void neverResumesOldJournals() throws IOException {
+        String id = CrawlFrontier.idFor(START, 2);
+        try (CrawlFrontier frontier = CrawlFrontier.open(dir, id, START, 2)) {
+            frontier.enqueue(START, 2);
+        }
+        File journal = new File(dir, id + ".frontier");
+        journal.setLastModified(System.currentTimeMillis() - CrawlFrontier.MAX_AGE_MILLIS - 60_000);
+
+        try (CrawlFrontier fresh = CrawlFrontier.open(dir, id, START, 2)) {
+            Assert.assertFalse(fresh.isResumed());
+        }
+        journal.setLastModified(System.currentTimeMillis() - CrawlFrontier.MAX_AGE_MILLIS - 60_000);
+        Assert.assertEquals(1, CrawlFrontier.deleteOrphans(dir));
+        Assert.assertFalse(journal.exists());
+    }
+
+    @Test
+    public void finishedCrawlStartsFreshNextTime() throws IOException {
+        CrawlFrontier frontier = CrawlFrontier.open(dir, "crawl", START, 2);
+        frontier.enqueue(START, 2);
+        frontier.markDone(frontier.poll().url);
+        frontier.finish();
+        Assert.assertFalse(new File(dir, "crawl.frontier").exists());
+
+        try (CrawlFrontier again = CrawlFrontier.open(dir, "crawl", START, 2)) {
+            Assert.assertFalse(again.isResumed());
+            Assert.assertTrue(again.enqueue(START, 2));
+        }
+    }
+}
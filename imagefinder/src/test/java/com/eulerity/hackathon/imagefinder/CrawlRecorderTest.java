@@ -0,0 +1,45 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CrawlRecorderTest {
+
+    @Test
+    public void dumpsCrawlEventsWhileRecording() throws IOException {
+        CrawlRecorder recorder = new CrawlRecorder(true);
+        Assert.assertTrue(recorder.isRecording());
+
+        CrawlEvents.PageCrawl event = new CrawlEvents.PageCrawl();
+        event.begin();
+        event.crawlId = "crawl-1";
+        event.url = "https://example.com/gallery";
+        event.links = 12;
+        event.commit();
+
+        Path dump = recorder.dump();
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            RecordedEvent recorded = events.stream()
+                    .filter(e -> e.getEventType().getName().equals(CrawlEvents.PAGE_CRAWL))
+                    .findFirst().orElseThrow(AssertionError::new);
+            Assert.assertEquals("crawl-1", recorded.getString("crawlId"));
+            Assert.assertEquals("https://example.com/gallery", recorded.getString("url"));
+            Assert.assertEquals(12, recorded.getInt("links"));
+        } finally {
+            Files.deleteIfExists(dump);
+            recorder.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void refusesToDumpWhenDisabled() throws IOException {
+        new CrawlRecorder(false).dump();
+    }
+}
@@ -0,0 +1,34 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.Rect;
+
+public class FaceDetectorBackendTest {
+
+    @Test
+    public void haarDetectsOnACappedCopyAndMapsFacesBack() {
+        Assert.assertEquals(1.0, HaarFaceDetectorBackend.detectionScale(640, 480, 640), 1e-9);
+        double scale = HaarFaceDetectorBackend.detectionScale(4000, 3000, 640);
+        Assert.assertEquals(0.16, scale, 1e-9);
+
+        Rect face = HaarFaceDetectorBackend.toOriginal(new Rect(100, 50, 40, 40), scale, 4000, 3000);
+        Assert.assertEquals(new Rect(625, 312, 250, 250), face);
+
+        // Faces at the edge are clipped to the image.
+        Rect edge = HaarFaceDetectorBackend.toOriginal(new Rect(630, 470, 10, 10), scale, 4000, 3000);
+        Assert.assertEquals(4000, edge.x + edge.width);
+        Assert.assertEquals(3000, edge.y + edge.height);
+    }
+
+    @Test
+    public void dnnDetectionsAreConvertedToClippedPixels() {
+        Rect face = DnnFaceDetectorBackend.toRect(new float[] {0, 1, 0.9f, 0.25f, 0.5f, 0.5f, 0.75f}, 800, 600);
+        Assert.assertEquals(new Rect(200, 300, 200, 150), face);
+
+        Rect clipped = DnnFaceDetectorBackend.toRect(new float[] {0, 1, 0.9f, -0.1f, 0.9f, 0.2f, 1.3f}, 100, 100);
+        Assert.assertEquals(new Rect(0, 90, 20, 10), clipped);
+
+        Assert.assertNull(DnnFaceDetectorBackend.toRect(new float[] {0, 1, 0.9f, 1.2f, 0.1f, 1.5f, 0.2f}, 100, 100));
+    }
+}
@@ -0,0 +1,198 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpCacheTest {
+
+    private static final String LAST_MODIFIED = "Wed, 01 Jun 2022 10:00:00 GMT";
+
+    private HttpServer server;
+    private HttpFetcher fetcher;
+    private String baseUrl;
+    private File cacheDir;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void startFixtureServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Revalidated on every use via ETag.
+        server.createContext("/etag", exchange -> {
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            requests.add("/etag " + ifNoneMatch);
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+            if ("\"v1\"".equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                respond(exchange, "text/html", "<html><body>etag page</body></html>");
+            }
+        });
+        // Revalidated via Last-Modified.
+        server.createContext("/dated", exchange -> {
+            String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            requests.add("/dated " + ifModifiedSince);
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            if (LAST_MODIFIED.equals(ifModifiedSince)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                respond(exchange, "image/png", "png bytes");
+            }
+        });
+        // Fresh for a minute, so it must not be requested again.
+        server.createContext("/fresh", exchange -> {
+            requests.add("/fresh");
+            exchange.getResponseHeaders().add("Cache-Control", "public, max-age=60");
+            respond(exchange, "text/plain", "fresh body");
+        });
+        // Fixed-size bodies for the eviction test.
+        server.createContext("/blob", exchange -> {
+            requests.add(exchange.getRequestURI().getPath());
+            exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+            respond(exchange, "application/octet-stream", new String(new char[100]).replace('\0', 'x'));
+        });
+        server.createContext("/missing", exchange -> {
+            requests.add("/missing");
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        cacheDir = Files.createTempDirectory("http-cache-test").toFile();
+        fetcher = new HttpFetcher(2, 2, 100, false);
+    }
+
+    @After
+    public void stopFixtureServer() {
+        fetcher.shutdown();
+        server.stop(0);
+        for (File file : cacheDir.listFiles()) {
+            file.delete();
+        }
+        cacheDir.delete();
+    }
+
+    @Test
+    public void revalidatesWithETagAndServesStoredBodyOn304() throws IOException {
+        HttpCache cache = new HttpCache(cacheDir, 1024 * 1024, fetcher);
+
+        HttpCache.Response first = cache.fetch(baseUrl + "/etag");
+        HttpCache.Response second = cache.fetch(baseUrl + "/etag");
+
+        Assert.assertEquals(HttpCache.Source.NETWORK, first.source);
+        Assert.assertEquals(HttpCache.Source.REVALIDATED, second.source);
+        Assert.assertEquals(200, second.statusCode);
+        Assert.assertEquals(new String(first.body, StandardCharsets.UTF_8), new String(second.body, StandardCharsets.UTF_8));
+        Assert.assertEquals(Arrays.asList("/etag null", "/etag \"v1\""), requests);
+    }
+
+    @Test
+    public void refetchesInFullWhenTheStoredBodyOfA304IsGone() throws IOException {
+        HttpCache cache = new HttpCache(cacheDir, 1024 * 1024, fetcher);
+        cache.fetch(baseUrl + "/etag");
+        for (File body : cacheDir.listFiles((dir, name) -> name.endsWith(".body"))) {
+            body.delete();
+        }
+
+        HttpCache.Response again = cache.fetch(baseUrl + "/etag");
+
+        Assert.assertEquals(HttpCache.Source.NETWORK, again.source);
+        Assert.assertEquals(200, again.statusCode);
+        Assert.assertEquals("<html><body>etag page</body></html>", new String(again.body, StandardCharsets.UTF_8));
+        Assert.assertEquals(Arrays.asList("/etag null", "/etag \"v1\"", "/etag null"), requests);
+        Assert.assertEquals(1, cache.stats().entries);
+    }
+
+    @Test
+    public void revalidatesWithLastModifiedAcrossRestarts() throws IOException {
+        new HttpCache(cacheDir, 1024 * 1024, fetcher).fetch(baseUrl + "/dated");
+
+        // A new instance on the same directory, as after a server restart.
+        HttpCache.Response again = new HttpCache(cacheDir, 1024 * 1024, fetcher).fetch(baseUrl + "/dated");
+
+        Assert.assertEquals(HttpCache.Source.REVALIDATED, again.source);
+        Assert.assertEquals("png bytes", new String(again.body, StandardCharsets.UTF_8));
+        Assert.assertEquals("/dated " + LAST_MODIFIED, requests.get(1));
+    }
+
+    @Test
+    public void servesFreshEntriesWithoutContactingTheServer() throws IOException {
+        HttpCache cache = new HttpCache(cacheDir, 1024 * 1024, fetcher);
+
+        cache.fetch(baseUrl + "/fresh");
+        HttpCache.Response cached = cache.fetch(baseUrl + "/fresh#fragment");
+
+        Assert.assertEquals(HttpCache.Source.CACHE, cached.source);
+        Assert.assertEquals("fresh body", new String(cached.body, StandardCharsets.UTF_8));
+        Assert.assertEquals(1, requests.size());
+        Assert.assertEquals(1, cache.stats().hits);
+    }
+
+    @Test
+    public void keepsSeparateEntriesForUrlsThatOnlyLookEquivalent() throws IOException {
+        HttpCache cache = new HttpCache(cacheDir, 1024 * 1024, fetcher);
+
+        cache.fetch(baseUrl + "/fresh?b=2&a=1");
+        cache.fetch(baseUrl + "/fresh?a=1&b=2");
+        cache.fetch(baseUrl + "/fresh/");
+
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals(3, cache.stats().entries);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntriesBeyondMaxBytes() throws IOException {
+        HttpCache cache = new HttpCache(cacheDir, 250, fetcher);
+
+        cache.fetch(baseUrl + "/blob/1");
+        cache.fetch(baseUrl + "/blob/2");
+        cache.fetch(baseUrl + "/blob/1"); // now more recent than /blob/2
+        cache.fetch(baseUrl + "/blob/3");
+
+        Assert.assertEquals(2, cache.stats().entries);
+        Assert.assertEquals(200, cache.stats().bytes);
+        Assert.assertEquals(HttpCache.Source.CACHE, cache.fetch(baseUrl + "/blob/1").source);
+        Assert.assertEquals(HttpCache.Source.NETWORK, cache.fetch(baseUrl + "/blob/2").source);
+    }
+
+    @Test
+    public void doesNotStoreErrors() throws IOException {
+        HttpCache cache = new HttpCache(cacheDir, 1024 * 1024, fetcher);
+
+        HttpCache.Response missing = cache.fetch(baseUrl + "/missing");
+
+        Assert.assertEquals(404, missing.statusCode);
+        Assert.assertEquals(0, cache.stats().entries);
+        try {
+            missing.openStream();
+            Assert.fail("Expected the 404 to surface as an IOException");
+        } catch (IOException expected) {
+            // Same behaviour as URL.openStream().
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
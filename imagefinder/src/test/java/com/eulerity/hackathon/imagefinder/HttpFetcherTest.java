@@ -0,0 +1,155 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpFetcherTest {
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String baseUrl;
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final AtomicInteger busyCalls = new AtomicInteger();
+    private final List<Long> pageTimes = new ArrayList<>();
+
+    @Before
+    public void startFixtureServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/robots.txt", exchange -> respond(exchange, 200,
+                "User-agent: *\nDisallow: /private\nAllow: /private/ok$\nCrawl-delay: 0.2\n"));
+        server.createContext("/page", exchange -> {
+            synchronized (pageTimes) {
+                pageTimes.add(System.nanoTime());
+            }
+            respond(exchange, 200, "page");
+        });
+        // Throttles the first request only.
+        server.createContext("/busy", exchange -> {
+            if (busyCalls.getAndIncrement() == 0) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                respond(exchange, 429, "slow down");
+            } else {
+                respond(exchange, 200, "done");
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+            respond(exchange, 200, "slow");
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopFixtureServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    public void honorsRobotsRulesAndCrawlDelay() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(8, 4, 100, true);
+
+        Assert.assertTrue(HttpFetcher.join(fetcher.isAllowed(baseUrl + "/page")));
+        Assert.assertFalse(HttpFetcher.join(fetcher.isAllowed(baseUrl + "/private/report?id=1")));
+        Assert.assertTrue(HttpFetcher.join(fetcher.isAllowed(baseUrl + "/private/ok")));
+
+        CompletableFuture<HttpFetcher.Response> first = fetcher.get(baseUrl + "/page");
+        CompletableFuture<HttpFetcher.Response> second = fetcher.get(baseUrl + "/page");
+        HttpFetcher.join(CompletableFuture.allOf(first, second));
+
+        // Crawl-delay: 0.2 overrides the configured 100 requests per second.
+        Assert.assertTrue(pageTimes.get(1) - pageTimes.get(0) >= 150_000_000L);
+        Assert.assertEquals(0.2, fetcher.stats().perHost.get(0).crawlDelaySeconds, 1e-9);
+        fetcher.shutdown();
+    }
+
+    @Test
+    public void retriesThrottledRequestsAfterRetryAfter() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(8, 4, 100, false);
+
+        HttpFetcher.Response response = HttpFetcher.join(fetcher.get(baseUrl + "/busy"));
+
+        Assert.assertEquals(200, response.statusCode);
+        Assert.assertEquals("done", new String(response.body, StandardCharsets.UTF_8));
+        Assert.assertEquals(1, fetcher.stats().throttled);
+        Assert.assertEquals(1, fetcher.stats().retries);
+        fetcher.shutdown();
+    }
+
+    @Test
+    public void limitsConcurrentRequestsPerHost() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(16, 2, 1000, false);
+
+        List<CompletableFuture<HttpFetcher.Response>> responses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            responses.add(fetcher.get(baseUrl + "/slow?i=" + i));
+        }
+        HttpFetcher.join(CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])));
+
+        Assert.assertTrue("max concurrent was " + maxConcurrent.get(), maxConcurrent.get() <= 2);
+        Assert.assertEquals(10, fetcher.stats().requests);
+        fetcher.shutdown();
+    }
+
+    @Test
+    public void keepsMoreRequestsInFlightThanItHasThreads() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(1, 2, 1000, false);
+
+        List<CompletableFuture<HttpFetcher.Response>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            responses.add(fetcher.get(baseUrl + "/slow?i=" + i));
+        }
+        HttpFetcher.join(CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])));
+
+        // One IO thread, yet both of the host's slots were on the wire together.
+        Assert.assertEquals(2, maxConcurrent.get());
+        Assert.assertEquals(0, fetcher.stats().inFlight);
+        fetcher.shutdown();
+    }
+
+    @Test
+    public void picksTheMostSpecificRobotsGroup() {
+        RobotsTxt robots = RobotsTxt.parse("User-agent: *\nDisallow: /\n\n"
+                + "User-agent: ImageFinder\nUser-agent: other\nDisallow: /*.pdf$\nCrawl-delay: 3\n", "imagefinder");
+
+        Assert.assertTrue(robots.isAllowed("/gallery"));
+        Assert.assertFalse(robots.isAllowed("/files/report.pdf"));
+        Assert.assertTrue(robots.isAllowed("/files/report.pdf?download=1"));
+        Assert.assertEquals(3.0, robots.getCrawlDelaySeconds(), 1e-9);
+        Assert.assertFalse(RobotsTxt.parse("User-agent: *\nDisallow: /\n", "imagefinder").isAllowed("/a"));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageBlobStoreTest {
+
+    private static final byte[] CONTENT = "same picture".getBytes(StandardCharsets.UTF_8);
+
+    private File root;
+    private ImageBlobStore store;
+    private ExecutorService threads;
+
+    @Before
+    public void createStore() throws IOException {
+        root = Files.createTempDirectory("blob-store-test").toFile();
+        store = new ImageBlobStore(root);
+        threads = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void deleteStore() {
+        threads.shutdownNow();
+        delete(root);
+    }
+
+    @Test
+    public void storesIdenticalContentOnceAndDeletesItAfterTheLastRelease() throws IOException {
+        ImageBlobStore.Blob first = store.put(new ByteArrayInputStream(CONTENT));
+        ImageBlobStore.Blob second = store.put(new ByteArrayInputStream(CONTENT));
+
+        Assert.assertTrue(first.isNew);
+        Assert.assertFalse(second.isNew);
+        Assert.assertEquals(first.file, second.file);
+        Assert.assertEquals(CONTENT.length, second.size);
+
+        store.release(first);
+        Assert.assertTrue(second.file.exists());
+        store.release(second);
+        Assert.assertFalse(second.file.exists());
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void concurrentPutsAndReleasesOfTheSameContentKeepHeldBlobs() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            workers.add(threads.submit(() -> {
+                start.await();
+                int missing = 0;
+                for (int i = 0; i < 200; i++) {
+                    ImageBlobStore.Blob blob = store.put(new ByteArrayInputStream(CONTENT));
+                    if (!blob.file.exists()) {
+                        missing++; // another thread deleted a blob this one still holds
+                    }
+                    store.release(blob);
+                }
+                return missing;
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> worker : workers) {
+            Assert.assertEquals(Integer.valueOf(0), worker.get(30, TimeUnit.SECONDS));
+        }
+
+        Assert.assertEquals(0, store.size());
+        String[] incoming = new File(root, "incoming").list();
+        Assert.assertEquals(0, incoming == null ? 0 : incoming.length);
+    }
+
+    @Test
+    public void processOnceRunsTheWorkOnceForConcurrentHolders() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CompletableFuture<String> work = new CompletableFuture<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<CompletableFuture<String>>> holders = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Callable<CompletableFuture<String>> holder = () -> {
+                start.await();
+                return store.processOnce("digest", () -> {
+                    runs.incrementAndGet();
+                    return work;
+                });
+            };
+            holders.add(threads.submit(holder));
+        }
+        start.countDown();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (Future<CompletableFuture<String>> holder : holders) {
+            results.add(holder.get(30, TimeUnit.SECONDS));
+        }
+        work.complete("/resizedImages/resized_digest.jpg");
+
+        Assert.assertEquals(1, runs.get());
+        for (CompletableFuture<String> result : results) {
+            Assert.assertEquals("/resizedImages/resized_digest.jpg", result.get(5, TimeUnit.SECONDS));
+        }
+
+        // Finished work is not remembered: the next holder runs it again.
+        store.processOnce("digest", () -> {
+            runs.incrementAndGet();
+            return CompletableFuture.completedFuture("again");
+        });
+        Assert.assertEquals(2, runs.get());
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
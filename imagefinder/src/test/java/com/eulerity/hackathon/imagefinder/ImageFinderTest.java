@@ -6,7 +6,9 @@ import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -48,6 +50,7 @@ public class ImageFinderTest {
         // Set servlet path and URL parameter.
         Mockito.when(request.getServletPath()).thenReturn("/main");
         Mockito.when(request.getParameter("url")).thenReturn("https://www.mommysheartfoundation.com/");
+        Mockito.when(request.getParameter("mode")).thenReturn("sync");
 
         // Create a mock CrawlerService.
         CrawlerService mockCrawlerService = Mockito.mock(CrawlerService.class);
@@ -84,4 +87,69 @@ public class ImageFinderTest {
         // Assert that the actual response matches the expected unique URLs.
         Assert.assertEquals(expectedResponseSet, actualResponseSet);
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoPostStartsJobAndDoGetPagesResults() throws IOException, ServletException {
+        Mockito.when(request.getServletPath()).thenReturn("/main");
+        Mockito.when(request.getParameter("url")).thenReturn("https://www.mommysheartfoundation.com/");
+
+        // A crawl that finds three images and finishes right away.
+        CrawlerService mockCrawlerService = Mockito.mock(CrawlerService.class);
+        Mockito.doAnswer(invocation -> {
+            Consumer<String> onImage = invocation.getArgument(1);
+            Runnable onComplete = invocation.getArgument(2);
+            onImage.accept("/resizedImages/resized_a.jpg");
+            onImage.accept("/resizedImages/resized_b.jpg");
+            onImage.accept("/resizedImages/resized_c.jpg");
+            onComplete.run();
+            return null;
+        }).when(mockCrawlerService).crawlAsync(Mockito.anyString(), Mockito.any(), Mockito.any());
+        Mockito.when(mockCrawlerService.getPagesCrawled()).thenReturn(4);
+
+        CrawlJobs jobs = new CrawlJobs();
+        ImageFinder imageFinder = new ImageFinder() {
+            @Override
+            protected CrawlerService createCrawlerService() {
+                return mockCrawlerService;
+            }
+
+            @Override
+            protected CrawlJobs jobs() {
+                return jobs;
+            }
+        };
+
+        // POST only returns the job id.
+        imageFinder.doPost(request, response);
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_ACCEPTED);
+        Map<String, Object> accepted = new Gson().fromJson(sw.toString().trim(), Map.class);
+        String jobId = (String) accepted.get("jobId");
+        Assert.assertNotNull(jobs.get(jobId));
+
+        // First page of two images, then the rest.
+        Mockito.when(request.getParameter("job")).thenReturn(jobId);
+        Mockito.when(request.getParameter("limit")).thenReturn("2");
+        Map<String, Object> first = get(imageFinder);
+        Assert.assertEquals("DONE", first.get("state"));
+        Assert.assertEquals(4.0, first.get("pagesCrawled"));
+        Assert.assertEquals(3.0, first.get("imagesProcessed"));
+        Assert.assertEquals(Arrays.asList("/resizedImages/resized_a.jpg", "/resizedImages/resized_b.jpg"), first.get("images"));
+
+        // The finished job kept its counters and no longer asks the crawler.
+        Mockito.when(mockCrawlerService.getPagesCrawled()).thenReturn(99);
+        Mockito.when(request.getParameter("cursor")).thenReturn((String) first.get("nextCursor"));
+        Map<String, Object> second = get(imageFinder);
+        Assert.assertEquals(4.0, second.get("pagesCrawled"));
+        Assert.assertEquals(Arrays.asList("/resizedImages/resized_c.jpg"), second.get("images"));
+        Assert.assertFalse(second.containsKey("nextCursor"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> get(ImageFinder imageFinder) throws IOException, ServletException {
+        StringWriter out = new StringWriter();
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(out));
+        imageFinder.doGet(request, response);
+        return new Gson().fromJson(out.toString().trim(), Map.class);
+    }
 }
@@ -0,0 +1,89 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImagePipelineTest {
+
+    private final ImagePipeline pipeline = new ImagePipeline(1, 1, 1, 1);
+
+    @After
+    public void shutdownPipeline() {
+        pipeline.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void runsTasksInTheSubmittingThreadWhenAStageQueueIsFull() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> busy = pipeline.analyze(() -> {
+            running.countDown();
+            release.await();
+            return Thread.currentThread().getName();
+        });
+        running.await();
+        CompletableFuture<String> queued = pipeline.analyze(() -> Thread.currentThread().getName());
+
+        // The only thread is busy and the queue holds one task, so this one runs right here.
+        CompletableFuture<String> overflow = pipeline.analyze(() -> Thread.currentThread().getName());
+        Assert.assertTrue(overflow.isDone());
+        Assert.assertEquals(Thread.currentThread().getName(), overflow.get());
+
+        ImagePipeline.Stats analyze = stage("analyze");
+        Assert.assertEquals(1, analyze.threads);
+        Assert.assertEquals(1, analyze.active);
+        Assert.assertEquals(1, analyze.queueDepth);
+        Assert.assertEquals(1, analyze.queueCapacity);
+        Assert.assertEquals(3, analyze.submitted);
+        Assert.assertEquals(1, analyze.callerRuns);
+
+        release.countDown();
+        Assert.assertTrue(busy.get(5, TimeUnit.SECONDS).startsWith("image-analyze-"));
+        Assert.assertTrue(queued.get(5, TimeUnit.SECONDS).startsWith("image-analyze-"));
+        Assert.assertEquals(3, stage("analyze").completed);
+        Assert.assertEquals(0, stage("download").submitted);
+    }
+
+    @Test
+    public void countsFailedTasks() throws Exception {
+        CompletableFuture<Object> failed = pipeline.encode(() -> {
+            throw new IllegalStateException("disk full");
+        });
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the task to fail");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("disk full", e.getCause().getMessage());
+        }
+        Assert.assertEquals(1, stage("encode").failed);
+        Assert.assertEquals(0, stage("encode").completed);
+    }
+
+    @Test
+    public void handoffRunsContinuationsOnItsOwnThreads() throws Exception {
+        String thread = CompletableFuture.completedFuture("fetched")
+                .thenComposeAsync(response -> pipeline.download(() -> Thread.currentThread().getName()),
+                        pipeline.handoff())
+                .get(5, TimeUnit.SECONDS);
+
+        // The download stage had room, so the handoff thread only submitted the task.
+        Assert.assertTrue(thread, thread.startsWith("image-download-"));
+        Assert.assertEquals(1, stage("handoff").submitted);
+    }
+
+    private ImagePipeline.Stats stage(String name) {
+        List<ImagePipeline.Stats> stats = pipeline.stats();
+        for (ImagePipeline.Stats stage : stats) {
+            if (stage.stage.equals(name)) {
+                return stage;
+            }
+        }
+        throw new AssertionError("No stage " + name + " in " + stats);
+    }
+}
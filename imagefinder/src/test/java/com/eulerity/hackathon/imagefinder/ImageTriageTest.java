@@ -0,0 +1,107 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImageTriageTest {
+
+    private final ImageTriage triage = new ImageTriage(16, 8, 3, 0.01, 48, 48, 24);
+
+    @Test
+    public void dropsTrackingPixels() {
+        ImageTriage.Decision decision = triage.evaluate(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+
+        Assert.assertFalse(decision.publish);
+        Assert.assertEquals("dimensions", decision.rejectedBy);
+    }
+
+    @Test
+    public void publishesBannersWithoutDetectors() {
+        ImageTriage.Decision decision = triage.evaluate(noise(1000, 50, new Random(1)));
+
+        Assert.assertTrue(decision.publish);
+        Assert.assertFalse(decision.detectFaces);
+        Assert.assertFalse(decision.detectLogos);
+        Assert.assertEquals("dimensions", decision.rejectedBy);
+    }
+
+    @Test
+    public void skipsDetectorsOnFlatFills() {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillRect(0, 0, 200, 200);
+        g.dispose();
+
+        ImageTriage.Decision decision = triage.evaluate(image);
+
+        Assert.assertTrue(decision.publish);
+        Assert.assertFalse(decision.detectFaces);
+        Assert.assertFalse(decision.detectLogos);
+        Assert.assertEquals("colors", decision.rejectedBy);
+        Assert.assertEquals(1, decision.features.colors);
+    }
+
+    @Test
+    public void skipsDetectorsOnSmoothGradients() {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 200; x++) {
+                image.setRGB(x, y, new Color(x, y, 128).getRGB());
+            }
+        }
+
+        ImageTriage.Decision decision = triage.evaluate(image);
+
+        Assert.assertEquals("edges", decision.rejectedBy);
+        Assert.assertFalse(decision.detectFaces);
+        Assert.assertFalse(decision.detectLogos);
+    }
+
+    @Test
+    public void routesPhotosToBothDetectorsAndSmallGraphicsToLogosOnly() {
+        ImageTriage.Decision photo = triage.evaluate(noise(200, 200, new Random(2)));
+        Assert.assertNull(photo.rejectedBy);
+        Assert.assertTrue(photo.detectFaces);
+        Assert.assertTrue(photo.detectLogos);
+
+        ImageTriage.Decision icon = triage.evaluate(noise(32, 32, new Random(3)));
+        Assert.assertTrue(icon.publish);
+        Assert.assertFalse(icon.detectFaces);
+        Assert.assertTrue(icon.detectLogos);
+    }
+
+    @Test
+    public void countsEvaluatedAndRejectedImagesPerTier() {
+        triage.evaluate(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        triage.evaluate(new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB));
+        triage.evaluate(noise(200, 200, new Random(4)));
+
+        List<ImageTriage.Stats> stats = triage.stats();
+        Assert.assertEquals("dimensions", stats.get(0).tier);
+        Assert.assertEquals(3, stats.get(0).evaluated);
+        Assert.assertEquals(1, stats.get(0).rejected);
+        Assert.assertEquals("colors", stats.get(1).tier);
+        Assert.assertEquals(2, stats.get(1).evaluated);
+        Assert.assertEquals(1, stats.get(1).rejected);
+        Assert.assertEquals(0.5, stats.get(1).rejectRate(), 1e-9);
+        Assert.assertEquals("faceRouting", stats.get(3).tier);
+        Assert.assertEquals(1, stats.get(3).evaluated);
+        Assert.assertEquals(0, stats.get(3).rejected);
+    }
+
+    private static BufferedImage noise(int width, int height, Random random) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+}
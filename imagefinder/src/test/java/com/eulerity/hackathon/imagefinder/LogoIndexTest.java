@@ -0,0 +1,93 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LogoIndexTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void matchesNoisyDescriptorsToTheirLogo() {
+        Random random = new Random(1);
+        LogoIndex.Features acme = randomFeatures(random, 200);
+        LogoIndex.Features globex = randomFeatures(random, 200);
+        LogoIndex index = new LogoIndex(Arrays.asList(
+                new LogoIndex.Logo("acme", "acme.png", 1, acme),
+                new LogoIndex.Logo("globex", "globex.png", 1, globex)));
+
+        // 40 of acme's descriptors with 3 bits flipped each, plus 40 unrelated ones.
+        byte[] descriptors = new byte[80 * LogoIndex.DESCRIPTOR_BYTES];
+        for (int q = 0; q < 40; q++) {
+            System.arraycopy(acme.descriptors, q * 5 * LogoIndex.DESCRIPTOR_BYTES, descriptors,
+                    q * LogoIndex.DESCRIPTOR_BYTES, LogoIndex.DESCRIPTOR_BYTES);
+            for (int flip = 0; flip < 3; flip++) {
+                int bit = random.nextInt(LogoIndex.DESCRIPTOR_BYTES * 8);
+                descriptors[q * LogoIndex.DESCRIPTOR_BYTES + bit / 8] ^= 1 << (bit % 8);
+            }
+        }
+        byte[] noise = new byte[40 * LogoIndex.DESCRIPTOR_BYTES];
+        random.nextBytes(noise);
+        System.arraycopy(noise, 0, descriptors, 40 * LogoIndex.DESCRIPTOR_BYTES, noise.length);
+        LogoIndex.Features query = new LogoIndex.Features(new float[160], descriptors);
+
+        List<LogoIndex.Candidate> candidates = index.match(query, 10);
+
+        Assert.assertEquals(1, candidates.size());
+        LogoIndex.Candidate candidate = candidates.get(0);
+        Assert.assertEquals("acme", candidate.logo.brand);
+        Assert.assertTrue("only " + candidate.size() + " matches", candidate.size() >= 35);
+        for (int i = 0; i < candidate.size(); i++) {
+            Assert.assertEquals(candidate.queryPoints[i] * 5, candidate.logoPoints[i]);
+        }
+    }
+
+    @Test
+    public void indexesLibraryOnceAndPersistsIt() throws IOException {
+        File library = tmp.newFolder("logos");
+        File brandDir = new File(library, "initech");
+        brandDir.mkdirs();
+        Files.write(new File(library, "acme.png").toPath(), new byte[] {1});
+        Files.write(new File(brandDir, "wordmark.jpg").toPath(), new byte[] {2});
+        Files.write(new File(library, "notes.txt").toPath(), new byte[] {3});
+        File indexFile = new File(tmp.getRoot(), "logo-index.bin");
+        AtomicInteger extracted = new AtomicInteger();
+        Random random = new Random(2);
+        LogoIndex.FeatureExtractor extractor = file -> {
+            extracted.incrementAndGet();
+            return randomFeatures(random, 50);
+        };
+
+        LogoIndex first = LogoIndex.loadOrBuild(indexFile, Collections.singletonList(library), extractor);
+        LogoIndex second = LogoIndex.loadOrBuild(indexFile, Collections.singletonList(library), extractor);
+
+        Assert.assertEquals(2, extracted.get());
+        Assert.assertEquals(2, second.getLogos().size());
+        Assert.assertEquals("acme", second.getLogos().get(0).brand);
+        Assert.assertEquals("initech", second.getLogos().get(1).brand);
+        Assert.assertArrayEquals(first.getLogos().get(1).features.descriptors,
+                second.getLogos().get(1).features.descriptors);
+        Assert.assertEquals(100, second.descriptorCount());
+    }
+
+    private static LogoIndex.Features randomFeatures(Random random, int size) {
+        byte[] descriptors = new byte[size * LogoIndex.DESCRIPTOR_BYTES];
+        random.nextBytes(descriptors);
+        float[] points = new float[size * 2];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextFloat() * 300;
+        }
+        return new LogoIndex.Features(points, descriptors);
+    }
+}
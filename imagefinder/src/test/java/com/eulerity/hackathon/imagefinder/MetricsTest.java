@@ -0,0 +1,42 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @Test
+    public void writesCumulativeHistogramBuckets() {
+        Metrics.Histogram histogram = new Metrics.Histogram("test");
+        histogram.observeNanos(500_000L);        // 0.5 ms
+        histogram.observeNanos(20_000_000L);     // 20 ms
+        histogram.observeNanos(120_000_000_000L); // 2 minutes
+
+        StringBuilder out = new StringBuilder();
+        histogram.write(out, "h");
+        String text = out.toString();
+
+        Assert.assertTrue(text, text.contains("h_bucket{stage=\"test\",le=\"0.001\"} 1\n"));
+        Assert.assertTrue(text, text.contains("h_bucket{stage=\"test\",le=\"0.01\"} 1\n"));
+        Assert.assertTrue(text, text.contains("h_bucket{stage=\"test\",le=\"0.025\"} 2\n"));
+        Assert.assertTrue(text, text.contains("h_bucket{stage=\"test\",le=\"60.0\"} 2\n"));
+        Assert.assertTrue(text, text.contains("h_bucket{stage=\"test\",le=\"+Inf\"} 3\n"));
+        Assert.assertTrue(text, text.contains("h_sum{stage=\"test\"} 120.0205\n"));
+        Assert.assertTrue(text, text.contains("h_count{stage=\"test\"} 3\n"));
+        Assert.assertEquals(3, histogram.count());
+    }
+
+    @Test
+    public void writesCountersAndGauges() {
+        StringBuilder out = new StringBuilder();
+        Metrics.gauge(out, "queue", "Queued tasks.", 7);
+
+        Assert.assertEquals("# HELP queue Queued tasks.\n# TYPE queue gauge\nqueue 7\n", out.toString());
+
+        Metrics.PAGES.inc();
+        out.setLength(0);
+        Metrics.write(out);
+        Assert.assertTrue(out.toString().contains("# TYPE imagefinder_stage_seconds histogram\n"));
+        Assert.assertTrue(out.toString().contains("imagefinder_errors_total{source=\"page\"}"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NativeMemoryTest {
+
+    @Test
+    public void reservationsWaitForTheBudget() throws Exception {
+        NativeMemory memory = new NativeMemory(100);
+        NativeMemory.Reservation first = memory.reserve(60);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<NativeMemory.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            started.countDown();
+            try {
+                return memory.reserve(60);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        started.await();
+        try {
+            second.get(200, TimeUnit.MILLISECONDS);
+            Assert.fail("The second reservation should wait for the first.");
+        } catch (TimeoutException expected) {
+        }
+
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+
+        NativeMemory.Stats stats = memory.stats();
+        Assert.assertEquals(0, stats.reservedBytes);
+        Assert.assertEquals(1, stats.throttled);
+        Assert.assertTrue(stats.throttledNanos > 0);
+    }
+
+    @Test
+    public void grantsOversizedReservationsWhenNothingElseIsReserved() throws Exception {
+        NativeMemory memory = new NativeMemory(100);
+        try (NativeMemory.Reservation reservation = memory.reserve(500)) {
+            Assert.assertEquals(500, reservation.bytes);
+            Assert.assertEquals(500, memory.stats().reservedBytes);
+        }
+        Assert.assertEquals(0, memory.stats().reservedBytes);
+        Assert.assertEquals(0, memory.stats().throttled);
+    }
+
+    @Test
+    public void closingAReservationTwiceReturnsItOnce() throws Exception {
+        NativeMemory memory = new NativeMemory(100);
+        NativeMemory.Reservation held = memory.reserve(30);
+        NativeMemory.Reservation reservation = memory.reserve(50);
+        reservation.close();
+        reservation.close();
+        Assert.assertEquals(30, memory.stats().reservedBytes);
+        held.close();
+    }
+
+    @Test
+    public void tracksBytesInUsePeakAndPooled() {
+        NativeMemory memory = new NativeMemory(100);
+        memory.allocated(40);
+        memory.allocated(30);
+        memory.freed(30);
+        memory.pooled(30);
+        memory.allocated(10);
+
+        NativeMemory.Stats stats = memory.stats();
+        Assert.assertEquals(50, stats.inUseBytes);
+        Assert.assertEquals(70, stats.peakBytes);
+        Assert.assertEquals(30, stats.pooledBytes);
+        Assert.assertEquals(100, stats.budgetBytes);
+    }
+}
@@ -0,0 +1,50 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class NdjsonResponseStreamTest {
+
+    private AsyncContext asyncContext;
+    private ServletOutputStream out;
+    private NdjsonResponseStream stream;
+    private final AtomicInteger aborts = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        asyncContext = Mockito.mock(AsyncContext.class);
+        ServletResponse response = Mockito.mock(ServletResponse.class);
+        out = Mockito.mock(ServletOutputStream.class);
+        Mockito.when(asyncContext.getResponse()).thenReturn(response);
+        Mockito.when(response.getOutputStream()).thenReturn(out);
+        Mockito.when(out.isReady()).thenReturn(true);
+        stream = new NdjsonResponseStream(asyncContext);
+        stream.setOnAbort(aborts::incrementAndGet);
+    }
+
+    @Test
+    public void abortsOnceWhenTheClientGoesAway() {
+        stream.send("first");
+        stream.onError(new IOException("Broken pipe"));
+        stream.onTimeout(null);
+
+        Assert.assertEquals(1, aborts.get());
+        Mockito.verify(asyncContext).complete();
+    }
+
+    @Test
+    public void doesNotAbortAFinishedStream() {
+        stream.finish("done");
+        stream.onTimeout(null);
+
+        Assert.assertEquals(0, aborts.get());
+        Mockito.verify(asyncContext).complete();
+    }
+}
@@ -0,0 +1,86 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.sun.net.httpserver.HttpServer;
+
+public class PageCacheTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private File cacheDir;
+    private HttpFetcher fetcher;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void startFixtureServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // A directory-style page: /blog redirects to /blog/, which links relative to itself.
+        server.createContext("/blog", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requests.add(path);
+            if (path.equals("/blog")) {
+                exchange.getResponseHeaders().add("Location", "/blog/");
+                exchange.sendResponseHeaders(301, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = "<html><body><img src=\"a.png\"><a href=\"post\">post</a></body></html>"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        cacheDir = Files.createTempDirectory("page-cache-test").toFile();
+        fetcher = new HttpFetcher(2, 2, 100, false);
+    }
+
+    @After
+    public void stopFixtureServer() {
+        fetcher.shutdown();
+        server.stop(0);
+        for (File file : cacheDir.listFiles()) {
+            file.delete();
+        }
+        cacheDir.delete();
+    }
+
+    @Test
+    public void fetchesTrailingSlashPagesAsLinkedAndResolvesAgainstThem() throws IOException {
+        PageCache pages = new PageCache(new HttpCache(cacheDir, 1024 * 1024, fetcher));
+
+        PageCache.Page page = pages.get(baseUrl + "/blog/");
+
+        Assert.assertEquals(Collections.singletonList("/blog/"), requests);
+        Assert.assertEquals(baseUrl + "/blog/", page.url);
+        Assert.assertEquals(baseUrl + "/blog/a.png", page.document.selectFirst("img").absUrl("src"));
+        Assert.assertEquals(baseUrl + "/blog/post", page.document.selectFirst("a").absUrl("href"));
+        // Handed over pages are not retained.
+        Assert.assertEquals(0, pages.size());
+    }
+
+    @Test
+    public void resolvesAgainstTheUrlARedirectEndsAt() throws IOException {
+        PageCache pages = new PageCache(new HttpCache(cacheDir, 1024 * 1024, fetcher));
+
+        PageCache.Page page = pages.get(baseUrl + "/blog");
+
+        Assert.assertEquals(baseUrl + "/blog/", page.url);
+        Assert.assertEquals(baseUrl + "/blog/a.png", page.document.selectFirst("img").absUrl("src"));
+    }
+}
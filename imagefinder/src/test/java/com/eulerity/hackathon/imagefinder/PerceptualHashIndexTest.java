@@ -0,0 +1,76 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PerceptualHashIndexTest {
+
+    private File smallRendition;
+
+    @Before
+    public void writeSmallRendition() throws IOException {
+        // Same picture at a different size and JPEG quality, as a CDN would serve it.
+        BufferedImage face = ImageIO.read(new File("test_face.jpg"));
+        BufferedImage small = ResizeEngine.resize(face, new ResizeEngine.Spec(500, 500, ResizeEngine.Mode.FIT));
+        smallRendition = File.createTempFile("rendition-", ".jpg");
+        ResizeEngine.writeJpeg(small, smallRendition, 0.6f);
+    }
+
+    @After
+    public void deleteSmallRendition() {
+        smallRendition.delete();
+    }
+
+    @Test
+    public void findsRenditionsOfTheSamePictureButNotOtherPictures() throws IOException {
+        PerceptualHashIndex index = new PerceptualHashIndex(6, 100);
+        long original = PerceptualHashIndex.dHash(PerceptualHashIndex.readSample(new File("test_face.jpg")));
+        index.put(original, "/resizedImages/resized_face.jpg");
+
+        long rendition = PerceptualHashIndex.dHash(PerceptualHashIndex.readSample(smallRendition));
+        PerceptualHashIndex.Match match = index.findSimilar(rendition);
+        Assert.assertNotNull(match);
+        Assert.assertEquals("/resizedImages/resized_face.jpg", match.value);
+
+        long logo = PerceptualHashIndex.dHash(PerceptualHashIndex.readSample(
+                new File("src/main/resources/templates/logos/test_logo1.png")));
+        Assert.assertNull(index.findSimilar(logo));
+    }
+
+    @Test
+    public void matchesUpToMaxDistanceAcrossChunks() {
+        PerceptualHashIndex index = new PerceptualHashIndex(6, 100);
+        long stored = 0x0123456789ABCDEFL;
+        index.put(stored, "stored");
+
+        // Six differing bits spread over all four 16-bit chunks (2 + 2 + 1 + 1).
+        long withinDistance = stored ^ 0x0003_0001_0003_0001L;
+        Assert.assertEquals(6, PerceptualHashIndex.distance(stored, withinDistance));
+        Assert.assertEquals("stored", index.findSimilar(withinDistance).value);
+
+        long tooFar = withinDistance ^ 0x0000_0100_0000_0000L;
+        Assert.assertNull(index.findSimilar(tooFar));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntryWhenFull() {
+        PerceptualHashIndex index = new PerceptualHashIndex(0, 2);
+        index.put(1L, "first");
+        index.put(2L, "second");
+        Assert.assertEquals("first", index.findSimilar(1L).value);
+
+        index.put(3L, "third");
+
+        Assert.assertNull(index.findSimilar(2L));
+        Assert.assertEquals("first", index.findSimilar(1L).value);
+        Assert.assertEquals("third", index.findSimilar(3L).value);
+        Assert.assertEquals(2, index.stats().entries);
+        Assert.assertEquals(1, index.stats().evictions);
+    }
+}
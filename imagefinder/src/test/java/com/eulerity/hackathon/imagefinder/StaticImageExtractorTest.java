@@ -0,0 +1,98 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class StaticImageExtractorTest {
+
+    private static final String STATIC_PAGE = "<html><body>"
+            + "<img src='/img/plain.jpg'>"
+            + "<img src='/img/small.jpg' srcset='/img/srcset-1x.jpg 1x, /img/srcset-2x.jpg 2x'>"
+            + "<picture><source srcset='/img/picture.webp 500w, /img/picture-big.webp 1000w'><img src='/img/fallback.jpg'></picture>"
+            + "<div style=\"background-image: url('/img/background.png')\">hero</div>"
+            + "<img data-src='/img/lazy.jpg' src='data:image/gif;base64,R0lGODlhAQABAAAAACw='>"
+            + "<div class='lazy' data-bg='/img/lazy-bg.jpg'></div>"
+            + "<p>" + repeat("Plenty of server-rendered text. ", 20) + "</p>"
+            + "</body></html>";
+
+    private static final String SPA_SHELL = "<html><head>"
+            + "<script src='/js/runtime.js'></script><script src='/js/vendor.js'></script>"
+            + "<script src='/js/main.js'></script><script src='/js/polyfills.js'></script>"
+            + "<script src='/js/chunk.js'></script>"
+            + "</head><body><div id='root'></div>"
+            + "<noscript>You need to enable JavaScript to run this app.</noscript></body></html>";
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @Before
+    public void startFixtureServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/static.html", exchange -> serve(exchange, STATIC_PAGE));
+        server.createContext("/spa.html", exchange -> serve(exchange, SPA_SHELL));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopFixtureServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testExtractsAllStaticImageSources() throws IOException {
+        Document doc = Jsoup.connect(baseUrl + "/static.html").get();
+
+        Set<String> imageUrls = StaticImageExtractor.extractImageUrls(doc);
+
+        Assert.assertTrue(imageUrls.contains(baseUrl + "/img/plain.jpg"));
+        Assert.assertTrue(imageUrls.contains(baseUrl + "/img/srcset-1x.jpg"));
+        Assert.assertTrue(imageUrls.contains(baseUrl + "/img/picture.webp"));
+        Assert.assertTrue(imageUrls.contains(baseUrl + "/img/fallback.jpg"));
+        Assert.assertTrue(imageUrls.contains(baseUrl + "/img/background.png"));
+        Assert.assertTrue(imageUrls.contains(baseUrl + "/img/lazy.jpg"));
+        Assert.assertTrue(imageUrls.contains(baseUrl + "/img/lazy-bg.jpg"));
+        for (String imageUrl : imageUrls) {
+            Assert.assertFalse("Inline data URIs are not downloadable: " + imageUrl, imageUrl.startsWith("data:"));
+        }
+        Assert.assertFalse(StaticImageExtractor.needsBrowserRendering(doc, imageUrls.size()));
+    }
+
+    @Test
+    public void testEscalatesScriptRenderedShell() throws IOException {
+        Document doc = Jsoup.connect(baseUrl + "/spa.html").get();
+
+        Set<String> imageUrls = StaticImageExtractor.extractImageUrls(doc);
+
+        Assert.assertTrue(imageUrls.isEmpty());
+        Assert.assertTrue(StaticImageExtractor.needsBrowserRendering(doc, imageUrls.size()));
+    }
+
+    private static void serve(HttpExchange exchange, String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UrlCanonicalizerTest {
+
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(true, true, true, true,
+            Arrays.asList("utm_*", "gclid", "fbclid"));
+
+    @Test
+    public void equivalentSpellingsShareOneForm() {
+        String canonical = "http://x.com/index.htm";
+        UrlCanonicalizer keepIndex = new UrlCanonicalizer(true, true, true, false, Arrays.asList("utm_*"));
+        Assert.assertEquals(canonical, keepIndex.canonicalize("http://x.com/index.htm#"));
+        Assert.assertEquals(canonical, keepIndex.canonicalize("HTTP://X.com:80/a/../index.htm#top"));
+
+        Assert.assertEquals("http://x.com/", canonicalizer.canonicalize("http://x.com"));
+        Assert.assertEquals("http://x.com/", canonicalizer.canonicalize("http://x.com/index.html"));
+        Assert.assertEquals("https://x.com/shop", canonicalizer.canonicalize("https://X.COM:443/shop/"));
+        Assert.assertEquals("https://x.com:8443/shop", canonicalizer.canonicalize("https://x.com:8443/shop"));
+        Assert.assertEquals("http://x.com/p?a=1&b=2%2F",
+                canonicalizer.canonicalize("http://x.com/p?b=2%2f&utm_source=mail&a=1&gclid=abc"));
+        Assert.assertEquals("not a url", canonicalizer.canonicalize(" not a url "));
+    }
+
+    @Test
+    public void visitedSetsClaimEachFingerprintOnce() {
+        for (VisitedSet visited : Arrays.asList(new VisitedSet(1000, false), new VisitedSet(1000, true))) {
+            for (long i = 0; i < 5000; i++) {
+                Assert.assertTrue(visited.add(i * 0x9E3779B97F4A7C15L));
+            }
+            for (long i = 0; i < 5000; i++) {
+                Assert.assertTrue(visited.contains(i * 0x9E3779B97F4A7C15L));
+                Assert.assertFalse(visited.add(i * 0x9E3779B97F4A7C15L));
+            }
+            Assert.assertFalse(visited.contains(1));
+            Assert.assertEquals(5000, visited.size());
+        }
+        // 5000 fingerprints fit in an 8192-slot table.
+        LongHashSet set = new LongHashSet();
+        for (long i = 0; i < 5000; i++) {
+            set.add(i << 40);
+        }
+        Assert.assertEquals(8192L * Long.BYTES, set.memoryBytes());
+    }
+}